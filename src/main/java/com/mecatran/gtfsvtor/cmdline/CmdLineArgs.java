@@ -48,9 +48,19 @@ public class CmdLineArgs implements GtfsVtorOptions {
 	private int maxIssuesPerCategoryLimit = 100;
 
 	@Parameter(names = {
-			"--numThreads" }, description = "Number of threads for running DAO validators in parallel")
+			"--numThreads" }, description = "Number of threads for loading tables (pipelined parsing), packing stop times and shape points, building the linear geometry index, and running DAO validators and trip times validators in parallel")
 	private int numThreads = 1;
 
+	@Parameter(names = {
+			"--validatorStats" }, description = "File to record DAO validator durations, "
+					+ "used to start the longest validators first in multi-threaded mode")
+	private String validatorStatsFile = null;
+
+	@Parameter(names = { "--mmap" }, description = ""
+			+ "Memory-map table files when validating an unzipped GTFS directory. "
+			+ "Files are mapped once, for both loading and source info reloading.")
+	private boolean memoryMapped = false;
+
 	@Parameter(names = { "--maxStopTimesInterleaving" }, description = ""
 			+ "Max number of interleaved trips in stop_times.txt "
 			+ "(number of concurrent 'opened' trips) in PACKED stop time mode. "
@@ -70,15 +80,31 @@ public class CmdLineArgs implements GtfsVtorOptions {
 			+ "Stop times DAO implementation to use. "
 			+ "PACKED: Optimized for memory, but can be slower if stop_times.txt are not sorted by trip ID. "
 			+ "UNSORTED: Work best for stop_times.txt unsorted by trip ID, but uses more memory. "
-			+ "AUTO: Start in PACKED mode, then switch to UNSORTED mode if required. ")
+			+ "AUTO: Start in PACKED mode, then switch to UNSORTED mode if required. "
+			+ "OFF_HEAP: As PACKED, but store packed data off-heap, reducing heap usage and GC pauses. "
+			+ "DISK: As PACKED, but store packed data in a memory-mapped temporary file, for feeds larger than the heap. "
+			+ "EXTERNAL_SORT: Sort stop times on disk by trip ID then pack them, for large unsorted stop_times.txt. ")
 	private StopTimesDaoMode stopTimesDaoMode = StopTimesDaoMode.AUTO;
 
+	@Parameter(names = { "--repackStopTimes" }, description = ""
+			+ "In AUTO stop times mode, if we had to switch to UNSORTED mode, "
+			+ "repack the stop times back to PACKED mode once loaded. "
+			+ "This takes some loading time, but reduces memory used during validation.")
+	private boolean repackStopTimes = false;
+
 	@Parameter(names = { "--shapePointsMode" }, description = ""
 			+ "Shape points DAO implementation to use. "
 			+ "PACKED: Optimized for memory, but can be slower if shapes.txt are not sorted by shape ID. "
 			+ "SIMPLE: Work for all situations, but uses more memory. ")
 	private ShapePointsDaoMode shapePointsDaoMode = ShapePointsDaoMode.AUTO;
 
+	@Parameter(names = { "--csvParser" }, description = ""
+			+ "CSV parser implementation to use. "
+			+ "UNIVOCITY: Univocity parser (default). "
+			+ "UTF8: Fast parser working directly on UTF-8 bytes. "
+			+ "APACHE_COMMONS: Apache Commons CSV parser. ")
+	private CsvParser csvParser = CsvParser.UNIVOCITY;
+
 	@Parameter(names = { "--speedUnit" }, description = ""
 			+ "Speed unit to use in outputs. " //
 			+ "MPS: Meters per second. " //
@@ -136,6 +162,16 @@ public class CmdLineArgs implements GtfsVtorOptions {
 		return numThreads;
 	}
 
+	@Override
+	public Optional<String> getValidatorStatsFile() {
+		return Optional.ofNullable(validatorStatsFile);
+	}
+
+	@Override
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
 	@Override
 	public int getMaxStopTimeInterleaving() {
 		return maxStopTimesInterleaving;
@@ -151,11 +187,21 @@ public class CmdLineArgs implements GtfsVtorOptions {
 		return stopTimesDaoMode;
 	}
 
+	@Override
+	public boolean isRepackStopTimes() {
+		return repackStopTimes;
+	}
+
 	@Override
 	public ShapePointsDaoMode getShapePointsDaoMode() {
 		return shapePointsDaoMode;
 	}
 
+	@Override
+	public CsvParser getCsvParser() {
+		return csvParser;
+	}
+
 	@Override
 	public FormattingOptions getFormattingOptions() {
 		return new FormattingOptions(speedUnit);
@@ -26,6 +26,15 @@ import com.mecatran.gtfsvtor.model.GtfsTranslation;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.reporting.ReportSink;
 
+/**
+ * Objects of a given table are always appended by a single thread, in table
+ * order. However, objects of different tables may be appended concurrently by
+ * different threads, when independent tables are loaded in parallel.
+ * Implementations must thus not share non thread-safe structures between the
+ * append paths of different tables. A table is only loaded once the tables it
+ * depends on are completely loaded, so looking-up objects of those tables is
+ * safe.
+ */
 public interface AppendableDao {
 
 	public interface SourceContext {
@@ -14,6 +14,7 @@ import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsStopType;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.GtfsTripTimesPattern;
 
 /**
  * An indexed read-only DAO for GTFS data.
@@ -52,12 +53,58 @@ public interface IndexedReadOnlyDao extends ReadOnlyDao {
 	 */
 	public Stream<GtfsTripAndTimes> getTripsAndTimes();
 
+	/**
+	 * @param routeId
+	 * @return A stream of trip with their stop times, for the given route.
+	 */
+	public Stream<GtfsTripAndTimes> getTripsAndTimesOfRoute(
+			GtfsRoute.Id routeId);
+
 	public List<GtfsShapePoint> getPointsOfShape(GtfsShape.Id shapeId);
 
 	public Stream<GtfsTrip> getTripsOfRoute(GtfsRoute.Id routeId);
 
 	public Stream<GtfsTrip> getTripsOfCalendar(GtfsCalendar.Id calendarId);
 
+	public int getTripsCountOfCalendar(GtfsCalendar.Id calendarId);
+
+	/*
+	 * Int-based accessors. Routes have a dense index, from 0 to
+	 * getRoutesCount() - 1, in the same order as getRoutes(). Indexes are only
+	 * assigned once loading is done, so these accessors require a closed DAO:
+	 * they throw an IllegalStateException while loading (for example from a
+	 * streaming validator). Use the ID-based accessors there.
+	 */
+
+	/**
+	 * @return The number of routes, for the int-based accessors.
+	 * @throws IllegalStateException If the DAO is not closed yet.
+	 */
+	public int getRoutesCount();
+
+	/**
+	 * @throws IllegalStateException If the DAO is not closed yet.
+	 */
+	public GtfsRoute getRoute(int routeIndex);
+
+	/**
+	 * @return The trips of the given route, with their stop times.
+	 * @throws IllegalStateException If the DAO is not closed yet.
+	 */
+	public Stream<GtfsTripAndTimes> getTripsAndTimesOfRoute(int routeIndex);
+
+	/**
+	 * @return The trips of the given route, grouped by stop and time patterns
+	 *         (see GtfsTripTimesPattern). With packing stop times DAOs, patterns
+	 *         are interned, and trips sharing them are grouped together.
+	 * @throws IllegalStateException If the DAO is not closed yet.
+	 */
+	public default Stream<GtfsTripTimesPattern> getTripTimesPatternsOfRoute(
+			int routeIndex) {
+		return GtfsTripTimesPattern
+				.groupByPattern(getTripsAndTimesOfRoute(routeIndex));
+	}
+
 	public Stream<GtfsFrequency> getFrequenciesOfTrip(GtfsTrip.Id tripId);
 
 	public Stream<GtfsStop> getStopsOfArea(GtfsArea.Id areaId);
@@ -29,6 +29,24 @@ public interface LinearGeometryIndex {
 		 * @return The shape ID associated to this projection, if any.
 		 */
 		public Optional<GtfsShape.Id> getShapeId();
+
+		/**
+		 * @return The arc-length coordinates on shape, in meters, indexed by
+		 *         position of the stop time in the trip (the same position as
+		 *         StopTimeCursor.getPosition()). NaN for missing values, see
+		 *         ProjectedPoint.getArcLengthMeters(). The array is shared,
+		 *         and must not be modified.
+		 */
+		public double[] getArcLengthsMeters();
+
+		/**
+		 * @return The distances from the stops to the projected points on
+		 *         shape, in meters, indexed by position of the stop time in the
+		 *         trip. NaN for missing values, see
+		 *         ProjectedPoint.getDistanceToShapeMeters(). The array is
+		 *         shared, and must not be modified.
+		 */
+		public double[] getDistancesToShapeMeters();
 	}
 
 	public interface ProjectedPoint {
@@ -81,7 +99,28 @@ public interface LinearGeometryIndex {
 	 *         If the stop is missing or have invalid coordinates and there is
 	 *         no associated shape, return empty information.
 	 */
-	public Optional<ProjectedPoint> getProjectedPoint(GtfsStopTime stopTime);
+	public default Optional<ProjectedPoint> getProjectedPoint(
+			GtfsStopTime stopTime) {
+		return getProjectedPoint(stopTime.getTripId(),
+				stopTime.getStopSequence());
+	}
+
+	/**
+	 * @return The projected point information for the stop time of the given
+	 *         trip and stop sequence. Same as getProjectedPoint(stopTime), but
+	 *         usable with a stop time cursor.
+	 */
+	public Optional<ProjectedPoint> getProjectedPoint(GtfsTrip.Id tripId,
+			GtfsTripStopSequence stopSequence);
+
+	/**
+	 * @return The projected pattern of the given trip, if any. Resolve it once
+	 *         per trip, and read the primitive arrays indexed by stop time
+	 *         position, instead of calling getProjectedPoint() for each stop
+	 *         time.
+	 */
+	public Optional<? extends ProjectedShapePattern> getProjectedPattern(
+			GtfsTrip.Id tripId);
 
 	/**
 	 * @return The distance between two projected stop times.
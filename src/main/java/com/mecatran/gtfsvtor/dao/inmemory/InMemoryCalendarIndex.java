@@ -9,6 +9,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -33,7 +34,8 @@ public class InMemoryCalendarIndex implements CalendarIndex {
 	private SetMultimap<GtfsCalendar.Id, GtfsCalendarDate> effectiveCalendarDates = HashMultimap
 			.create();
 	private Map<GtfsLogicalDate, AtomicLong> tripCountPerDate = new HashMap<>();
-	private Map<List<GtfsCalendar.Id>, OverlappingCalendarInfo> calendarOverlapCache = new HashMap<>();
+	// Concurrent, as trip times validators can run in parallel
+	private Map<List<GtfsCalendar.Id>, OverlappingCalendarInfo> calendarOverlapCache = new ConcurrentHashMap<>();
 	private List<GtfsLogicalDate> allDatesSorted;
 
 	protected InMemoryCalendarIndex(IndexedReadOnlyDao dao) {
@@ -106,8 +108,8 @@ public class InMemoryCalendarIndex implements CalendarIndex {
 		for (Map.Entry<GtfsCalendar.Id, SortedSet<GtfsLogicalDate>> kv : datesPerCalendar
 				.entrySet()) {
 			GtfsCalendar.Id calendarId = kv.getKey();
-			long tripCountForCalendar = dao.getTripsOfCalendar(calendarId)
-					.count();
+			long tripCountForCalendar = dao
+					.getTripsCountOfCalendar(calendarId);
 			for (GtfsLogicalDate date : kv.getValue()) {
 				calendarsPerDate.put(date, calendarId);
 				tripCountPerDate.computeIfAbsent(date, d -> new AtomicLong(0))
@@ -1,6 +1,7 @@
 package com.mecatran.gtfsvtor.dao.inmemory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -9,6 +10,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import com.google.common.collect.ArrayListMultimap;
@@ -24,7 +26,10 @@ import com.mecatran.gtfsvtor.dao.shapepoints.AutoSwitchShapePointDao;
 import com.mecatran.gtfsvtor.dao.shapepoints.PackingShapePointsDao;
 import com.mecatran.gtfsvtor.dao.shapepoints.PackingUnsortedShapePointsDao;
 import com.mecatran.gtfsvtor.dao.shapepoints.ShapePointsDao;
+import com.mecatran.gtfsvtor.dao.stoptimes.ArenaStopTimesDao;
 import com.mecatran.gtfsvtor.dao.stoptimes.AutoSwitchStopTimesDao;
+import com.mecatran.gtfsvtor.dao.stoptimes.ExternalSortStopTimesDao;
+import com.mecatran.gtfsvtor.dao.stoptimes.MappedStopTimesDao;
 import com.mecatran.gtfsvtor.dao.stoptimes.PackingStopTimesDao;
 import com.mecatran.gtfsvtor.dao.stoptimes.PackingUnsortedStopTimesDao;
 import com.mecatran.gtfsvtor.dao.stoptimes.StopTimesDao;
@@ -121,9 +126,32 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 	private Multimap<GtfsArea.Id, GtfsStop.Id> stopsPerArea = ArrayListMultimap
 			.create();
 
+	/*
+	 * Dense int indexes and CSR adjacency arrays (offsets + values), built at
+	 * close() when the DAO becomes read-only. The trip and route maps and the
+	 * trips per route / calendar multimaps are released then.
+	 */
+	private boolean frozen = false;
+	private GtfsIdIndexer<String, GtfsRoute, GtfsRoute.Id> routeIndexer;
+	private GtfsIdIndexer<String, GtfsTrip, GtfsTrip.Id> tripIndexer;
+	private GtfsIdIndexer<String, GtfsCalendar, GtfsCalendar.Id> calendarIndexer;
+	private int nRoutes;
+	private GtfsRoute[] routesArray;
+	private GtfsTrip[] tripsArray;
+	private int[] tripsOfRouteOffsets;
+	private int[] tripsOfRoute;
+	private int[] tripsOfCalendarOffsets;
+	private int[] tripsOfCalendar;
+
 	private CalendarIndex calendarIndex = null;
 	private DaoSpatialIndex spatialIndex = null;
-	private LinearGeometryIndex linearGeometryIndex = null;
+	private volatile LinearGeometryIndex linearGeometryIndex = null;
+	/*
+	 * The linear geometry index is long to build: do not block callers of the
+	 * other lazy indexes meanwhile.
+	 */
+	private final Object linearGeometryIndexLock = new Object();
+	private int indexingThreads = 1;
 	private boolean verbose = false;
 
 	public InMemoryDao(StopTimesDaoMode stopTimesDaoMode,
@@ -141,6 +169,17 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 		case UNSORTED:
 			stopTimesDao = new PackingUnsortedStopTimesDao(stopIdIndexer);
 			break;
+		case OFF_HEAP:
+			stopTimesDao = new ArenaStopTimesDao(maxStopTimesInterleaving,
+					stopIdIndexer);
+			break;
+		case DISK:
+			stopTimesDao = new MappedStopTimesDao(maxStopTimesInterleaving,
+					stopIdIndexer);
+			break;
+		case EXTERNAL_SORT:
+			stopTimesDao = new ExternalSortStopTimesDao(stopIdIndexer);
+			break;
 		}
 		switch (shapePointsDaoMode) {
 		case AUTO:
@@ -164,6 +203,49 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 		return this;
 	}
 
+	/**
+	 * @param repackStopTimes True to repack stop times at close, if the AUTO
+	 *        stop times mode had to switch to the unsorted implementation.
+	 */
+	public InMemoryDao withRepackStopTimes(boolean repackStopTimes) {
+		if (stopTimesDao instanceof AutoSwitchStopTimesDao) {
+			((AutoSwitchStopTimesDao) stopTimesDao)
+					.withRepackOnClose(repackStopTimes);
+		}
+		return this;
+	}
+
+	/**
+	 * @param packingThreads Number of threads to pack stop times and shape
+	 *        points with, in PACKED or AUTO modes.
+	 */
+	public InMemoryDao withPackingThreads(int packingThreads) {
+		if (stopTimesDao instanceof AutoSwitchStopTimesDao) {
+			((AutoSwitchStopTimesDao) stopTimesDao)
+					.withPackingThreads(packingThreads);
+		} else if (stopTimesDao instanceof PackingStopTimesDao) {
+			((PackingStopTimesDao) stopTimesDao)
+					.withPackingThreads(packingThreads);
+		}
+		if (shapePointsDao instanceof AutoSwitchShapePointDao) {
+			((AutoSwitchShapePointDao) shapePointsDao)
+					.withPackingThreads(packingThreads);
+		} else if (shapePointsDao instanceof PackingShapePointsDao) {
+			((PackingShapePointsDao) shapePointsDao)
+					.withPackingThreads(packingThreads);
+		}
+		return this;
+	}
+
+	/**
+	 * @param indexingThreads Number of threads to build the linear geometry
+	 *        index with.
+	 */
+	public InMemoryDao withIndexingThreads(int indexingThreads) {
+		this.indexingThreads = indexingThreads;
+		return this;
+	}
+
 	@Override
 	public GtfsFeedInfo getFeedInfo() {
 		return feedInfo;
@@ -181,14 +263,30 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 
 	@Override
 	public Stream<GtfsRoute> getRoutes() {
+		if (frozen)
+			return Arrays.stream(routesArray, 1, nRoutes + 1);
 		return routes.values().stream();
 	}
 
 	@Override
 	public GtfsRoute getRoute(GtfsRoute.Id routeId) {
+		if (frozen)
+			return routesArray[routeIndexer.find(routeId)];
 		return routes.get(routeId);
 	}
 
+	@Override
+	public int getRoutesCount() {
+		checkFrozen();
+		return nRoutes;
+	}
+
+	@Override
+	public GtfsRoute getRoute(int routeIndex) {
+		checkFrozen();
+		return routesArray[routeIndex + 1];
+	}
+
 	@Override
 	public boolean hasNetworkId(GtfsNetwork.Id networkId) {
 		return networkIds.contains(networkId);
@@ -241,11 +339,15 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 
 	@Override
 	public Stream<GtfsTrip> getTrips() {
+		if (frozen)
+			return Arrays.stream(tripsArray, 1, tripsArray.length);
 		return trips.values().stream();
 	}
 
 	@Override
 	public GtfsTrip getTrip(GtfsTrip.Id tripId) {
+		if (frozen)
+			return tripsArray[tripIndexer.find(tripId)];
 		return trips.get(tripId);
 	}
 
@@ -470,14 +572,30 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 
 	@Override
 	public Stream<GtfsTrip> getTripsOfRoute(GtfsRoute.Id routeId) {
+		if (frozen)
+			return adjacentTrips(tripsOfRouteOffsets, tripsOfRoute,
+					routeIndexer.find(routeId));
 		return tripsPerRoute.get(routeId).stream();
 	}
 
 	@Override
 	public Stream<GtfsTrip> getTripsOfCalendar(GtfsCalendar.Id calendarId) {
+		if (frozen)
+			return adjacentTrips(tripsOfCalendarOffsets, tripsOfCalendar,
+					calendarIndexer.find(calendarId));
 		return tripsPerCalendar.get(calendarId).stream();
 	}
 
+	@Override
+	public int getTripsCountOfCalendar(GtfsCalendar.Id calendarId) {
+		if (frozen) {
+			int index = calendarIndexer.find(calendarId);
+			return tripsOfCalendarOffsets[index + 1]
+					- tripsOfCalendarOffsets[index];
+		}
+		return tripsPerCalendar.get(calendarId).size();
+	}
+
 	@Override
 	public Stream<GtfsFrequency> getFrequenciesOfTrip(GtfsTrip.Id tripId) {
 		return frequencies.get(tripId).stream();
@@ -490,10 +608,28 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 
 	@Override
 	public Stream<GtfsTripAndTimes> getTripsAndTimes() {
-		return getRoutes().flatMap(route -> getTripsOfRoute(route.getId())).map(
+		if (frozen)
+			return IntStream.range(0, nRoutes).boxed()
+					.flatMap(this::getTripsAndTimesOfRoute);
+		return getRoutes()
+				.flatMap(route -> getTripsAndTimesOfRoute(route.getId()));
+	}
+
+	@Override
+	public Stream<GtfsTripAndTimes> getTripsAndTimesOfRoute(
+			GtfsRoute.Id routeId) {
+		return getTripsOfRoute(routeId).map(
 				trip -> stopTimesDao.getStopTimesOfTrip(trip.getId(), trip));
 	}
 
+	@Override
+	public Stream<GtfsTripAndTimes> getTripsAndTimesOfRoute(int routeIndex) {
+		checkFrozen();
+		return adjacentTrips(tripsOfRouteOffsets, tripsOfRoute, routeIndex + 1)
+				.map(trip -> stopTimesDao.getStopTimesOfTrip(trip.getId(),
+						trip));
+	}
+
 	@Override
 	public List<GtfsShapePoint> getPointsOfShape(GtfsShape.Id shapeId) {
 		return shapePointsDao.getPointsOfShape(shapeId)
@@ -544,12 +680,16 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 	}
 
 	@Override
-	public synchronized LinearGeometryIndex getLinearGeometryIndex() {
+	public LinearGeometryIndex getLinearGeometryIndex() {
 		// Lazy create the index
 		if (linearGeometryIndex == null) {
-			InMemoryLinearGeometryIndex imlgi = new InMemoryLinearGeometryIndex(
-					this, verbose);
-			linearGeometryIndex = imlgi;
+			synchronized (linearGeometryIndexLock) {
+				if (linearGeometryIndex == null) {
+					InMemoryLinearGeometryIndex imlgi = new InMemoryLinearGeometryIndex(
+							this, verbose, indexingThreads);
+					linearGeometryIndex = imlgi;
+				}
+			}
 		}
 		return linearGeometryIndex;
 	}
@@ -579,6 +719,7 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 
 	@Override
 	public void addRoute(GtfsRoute route, SourceContext sourceContext) {
+		checkNotFrozen();
 		// Do not add route w/o ID or conflicting
 		if (!checkId(route.getId(), getRoute(route.getId()), sourceContext,
 				"route_id")) {
@@ -667,6 +808,7 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 
 	@Override
 	public void addTrip(GtfsTrip trip, SourceContext sourceContext) {
+		checkNotFrozen();
 		// Do not add trip w/o ID or conflicting
 		if (!checkId(trip.getId(), getTrip(trip.getId()), sourceContext,
 				"trip_id")) {
@@ -855,6 +997,86 @@ public class InMemoryDao implements IndexedReadOnlyDao, AppendableDao {
 	@Override
 	public void close() {
 		stopTimesDao.close();
+		shapePointsDao.close();
+		if (!frozen)
+			freeze();
+	}
+
+	private void freeze() {
+		long start = System.currentTimeMillis();
+		/*
+		 * Index routes first, in iteration order, so that route indexes are
+		 * the same as the getRoutes() order. Then the route IDs only
+		 * referenced by some trips, for getTripsOfRoute().
+		 */
+		routeIndexer = new GtfsIdIndexer<>();
+		routes.keySet().forEach(routeIndexer::index);
+		nRoutes = routeIndexer.size();
+		tripsPerRoute.keySet().forEach(routeIndexer::index);
+		routesArray = new GtfsRoute[routeIndexer.size() + 1];
+		routes.values().forEach(
+				route -> routesArray[routeIndexer.find(route.getId())] = route);
+		tripIndexer = new GtfsIdIndexer<>();
+		tripsArray = new GtfsTrip[trips.size() + 1];
+		trips.values().forEach(
+				trip -> tripsArray[tripIndexer.index(trip.getId())] = trip);
+		calendarIndexer = new GtfsIdIndexer<>();
+		tripsPerCalendar.keySet().forEach(calendarIndexer::index);
+		tripsOfRouteOffsets = new int[routeIndexer.size() + 2];
+		tripsOfRoute = buildAdjacency(tripsPerRoute, routeIndexer,
+				tripsOfRouteOffsets);
+		tripsOfCalendarOffsets = new int[calendarIndexer.size() + 2];
+		tripsOfCalendar = buildAdjacency(tripsPerCalendar, calendarIndexer,
+				tripsOfCalendarOffsets);
+		// Free memory
+		routes = null;
+		trips = null;
+		tripsPerRoute = null;
+		tripsPerCalendar = null;
+		frozen = true;
+		if (verbose) {
+			long end = System.currentTimeMillis();
+			System.out.println("Indexed " + nRoutes + " routes and "
+					+ (tripsArray.length - 1) + " trips in " + (end - start)
+					+ "ms");
+		}
+	}
+
+	/*
+	 * Build the CSR values for a multimap, filling the offsets. Values of key
+	 * index i (starting at 1) are in [offsets[i], offsets[i+1]). Index 0 (not
+	 * indexed key) has no values. Per-key insertion order is kept.
+	 */
+	private <T extends GtfsId<String, ?>> int[] buildAdjacency(
+			Multimap<T, GtfsTrip> multimap, GtfsIdIndexer<String, ?, T> indexer,
+			int[] offsets) {
+		int[] values = new int[multimap.size()];
+		int n = 0;
+		for (int i = 1; i <= indexer.size(); i++) {
+			offsets[i] = n;
+			for (GtfsTrip trip : multimap.get(indexer.unindex(i)))
+				values[n++] = tripIndexer.find(trip.getId());
+		}
+		offsets[indexer.size() + 1] = n;
+		return values;
+	}
+
+	private Stream<GtfsTrip> adjacentTrips(int[] offsets, int[] values,
+			int index) {
+		return IntStream.range(offsets[index], offsets[index + 1])
+				.mapToObj(i -> tripsArray[values[i]]);
+	}
+
+	private void checkFrozen() {
+		if (!frozen)
+			throw new IllegalStateException(
+					"Int-based accessors are only available once the DAO is closed, not while loading");
+	}
+
+	private void checkNotFrozen() {
+		if (frozen)
+			throw new IllegalStateException(
+					"Cannot add routes or trips to a closed DAO");
 	}
 
 	/* Check if ID is not null and existing object is null */
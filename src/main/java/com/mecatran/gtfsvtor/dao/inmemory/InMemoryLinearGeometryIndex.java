@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
@@ -11,6 +12,12 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -23,6 +30,7 @@ import com.mecatran.gtfsvtor.model.GtfsShapePoint;
 import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
+import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
 import com.mecatran.gtfsvtor.model.GtfsTripStopSequence;
 import com.mecatran.gtfsvtor.utils.AStar;
 import com.mecatran.gtfsvtor.utils.PathFinder;
@@ -92,11 +100,33 @@ public class InMemoryLinearGeometryIndex implements LinearGeometryIndex {
 		private GtfsShape.Id shapeId;
 		private SortedMap<GtfsTripStopSequence, ProjectedPointImpl> projections = new TreeMap<>();
 		private Set<GtfsTrip.Id> tripIds = new HashSet<>();
+		private double[] arcLengthsMeters;
+		private double[] distancesToShapeMeters;
 
 		private ProjectedShapePatternImpl(GtfsShape.Id shapeId) {
 			this.shapeId = shapeId;
 		}
 
+		/*
+		 * Flatten the projections in stop time order, for the primitive
+		 * accessors. Stop times sharing the same pattern key have the same stop
+		 * sequences at the same positions.
+		 */
+		private void indexPositions(List<GtfsStopTime> stopTimes) {
+			arcLengthsMeters = new double[stopTimes.size()];
+			distancesToShapeMeters = new double[stopTimes.size()];
+			for (int i = 0; i < stopTimes.size(); i++) {
+				GtfsTripStopSequence stopSequence = stopTimes.get(i)
+						.getStopSequence();
+				ProjectedPointImpl ppos = stopSequence == null ? null
+						: projections.get(stopSequence);
+				arcLengthsMeters[i] = ppos == null ? Double.NaN
+						: ppos.arcLengthMeters;
+				distancesToShapeMeters[i] = ppos == null ? Double.NaN
+						: ppos.distanceToShapeMeters;
+			}
+		}
+
 		@Override
 		public List<? extends ProjectedPoint> getProjectedPoints() {
 			return new ArrayList<>(projections.values());
@@ -111,57 +141,166 @@ public class InMemoryLinearGeometryIndex implements LinearGeometryIndex {
 		public Optional<GtfsShape.Id> getShapeId() {
 			return Optional.ofNullable(shapeId);
 		}
+
+		@Override
+		public double[] getArcLengthsMeters() {
+			return arcLengthsMeters;
+		}
+
+		@Override
+		public double[] getDistancesToShapeMeters() {
+			return distancesToShapeMeters;
+		}
 	}
 
-	private Map<GtfsTrip.Id, ProjectedShapePatternImpl> patternIndexByTrips = new HashMap<>();
-	private List<ProjectedShapePatternImpl> patternIndexes = new ArrayList<>();
+	/*
+	 * A distinct (shape, stop pattern) key, with a representative trip to
+	 * compute the projections from, and all the trips sharing it.
+	 */
+	private static class PatternTask {
+		private GtfsTripAndTimes tripTimes;
+		private List<GtfsTrip.Id> tripIds = new ArrayList<>();
+
+		private PatternTask(GtfsTripAndTimes tripTimes) {
+			this.tripTimes = tripTimes;
+		}
+	}
+
+	/* Concurrent, as it is filled by the indexing tasks */
+	private Map<GtfsTrip.Id, ProjectedShapePatternImpl> patternIndexByTrips = new ConcurrentHashMap<>();
+	/*
+	 * Segment indexes of the shapes being projected, shared by the patterns of
+	 * a shape. Released once all the patterns of the shape are indexed.
+	 */
+	private Map<GtfsShape.Id, ShapeSegmentIndex> shapeSegmentIndexes = new ConcurrentHashMap<>();
+	private List<ProjectedShapePatternImpl> patternIndexes;
 	private int nPatterns = 0;
 
 	public InMemoryLinearGeometryIndex(IndexedReadOnlyDao dao,
 			boolean verbose) {
+		this(dao, verbose, 1);
+	}
+
+	/**
+	 * Build the index in two passes. The first one collects the distinct
+	 * (shape, stop pattern) keys, which is cheap as it does not need any stop
+	 * time. The second one computes the projections of each distinct pattern,
+	 * using numThreads threads if more than one.
+	 */
+	public InMemoryLinearGeometryIndex(IndexedReadOnlyDao dao, boolean verbose,
+			int numThreads) {
 		long start = System.currentTimeMillis();
-		Map<Object, ProjectedShapePatternImpl> patternIndexesByPattern = new HashMap<>();
+		// Linked, to keep the patterns in trip order whatever the threads
+		Map<Object, PatternTask> patternTasksByPattern = new LinkedHashMap<>();
 		dao.getTripsAndTimes().forEach(tripTimes -> {
 			GtfsTrip trip = tripTimes.getTrip();
 			Object tripKey = computeTripKey(trip,
 					tripTimes.getStopPatternKey());
-			ProjectedShapePatternImpl patternIndex = patternIndexesByPattern
-					.get(tripKey);
-			if (patternIndex == null) {
-				List<GtfsStopTime> stopTimes = tripTimes.getStopTimes();
-				patternIndex = computePatternIndex(trip, stopTimes, dao);
-				patternIndexesByPattern.put(tripKey, patternIndex);
-				patternIndexes.add(patternIndex);
-				if (verbose && nPatterns % 500 == 0) {
-					System.out.print("Linear-indexing " + nPatterns + "...\r");
+			patternTasksByPattern
+					.computeIfAbsent(tripKey, k -> new PatternTask(tripTimes))
+					.tripIds.add(trip.getId());
+		});
+		List<PatternTask> patternTasks = new ArrayList<>(
+				patternTasksByPattern.values());
+		nPatterns = patternTasks.size();
+		Map<GtfsShape.Id, AtomicInteger> pendingPatternsPerShape = new HashMap<>();
+		for (PatternTask patternTask : patternTasks) {
+			GtfsShape.Id shapeId = patternTask.tripTimes.getTrip().getShapeId();
+			if (shapeId != null)
+				pendingPatternsPerShape
+						.computeIfAbsent(shapeId, id -> new AtomicInteger(0))
+						.incrementAndGet();
+		}
+
+		ProjectedShapePatternImpl[] patterns = new ProjectedShapePatternImpl[nPatterns];
+		AtomicInteger nIndexed = new AtomicInteger(0);
+		List<Callable<Boolean>> tasks = new ArrayList<>(nPatterns);
+		for (int i = 0; i < nPatterns; i++) {
+			final int patternIndex = i;
+			tasks.add(() -> {
+				patterns[patternIndex] = indexPattern(
+						patternTasks.get(patternIndex), dao);
+				GtfsShape.Id shapeId = patternTasks.get(patternIndex).tripTimes
+						.getTrip().getShapeId();
+				if (shapeId != null && pendingPatternsPerShape.get(shapeId)
+						.decrementAndGet() == 0)
+					shapeSegmentIndexes.remove(shapeId);
+				int n = nIndexed.getAndIncrement();
+				if (verbose && n % 500 == 0) {
+					System.out.print("Linear-indexing " + n + "...\r");
+				}
+				return true;
+			});
+		}
+		if (numThreads <= 1 || nPatterns <= 1) {
+			for (Callable<Boolean> task : tasks) {
+				try {
+					task.call();
+				} catch (Exception e) {
+					throw new RuntimeException(e);
 				}
-				nPatterns++;
 			}
-			patternIndexByTrips.put(trip.getId(), patternIndex);
-			patternIndex.tripIds.add(trip.getId());
-		});
+		} else {
+			ForkJoinPool pool = new ForkJoinPool(numThreads);
+			try {
+				for (Future<Boolean> result : pool.invokeAll(tasks)) {
+					result.get();
+				}
+			} catch (InterruptedException | ExecutionException e) {
+				throw new RuntimeException(e);
+			} finally {
+				pool.shutdown();
+			}
+		}
+		patternIndexes = Arrays.asList(patterns);
 		long end = System.currentTimeMillis();
 		if (verbose) {
 			System.out.println("Linear-indexed " + nPatterns
-					+ " shape.patterns in " + (end - start) + "ms");
+					+ " shape.patterns in " + (end - start) + "ms"
+					+ (numThreads > 1 ? " with " + numThreads + " threads"
+							: ""));
 		}
 	}
 
+	/*
+	 * Compute the projections of a pattern, and register all its trips. Can be
+	 * called concurrently for distinct patterns.
+	 */
+	private ProjectedShapePatternImpl indexPattern(PatternTask patternTask,
+			IndexedReadOnlyDao dao) {
+		GtfsTrip trip = patternTask.tripTimes.getTrip();
+		List<GtfsStopTime> stopTimes = patternTask.tripTimes.getStopTimes();
+		ProjectedShapePatternImpl patternIndex = computePatternIndex(trip,
+				stopTimes, dao);
+		patternIndex.indexPositions(stopTimes);
+		for (GtfsTrip.Id tripId : patternTask.tripIds) {
+			patternIndex.tripIds.add(tripId);
+			patternIndexByTrips.put(tripId, patternIndex);
+		}
+		return patternIndex;
+	}
+
 	int getPatternCount() {
 		return nPatterns;
 	}
 
 	@Override
-	public Optional<ProjectedPoint> getProjectedPoint(GtfsStopTime stopTime) {
+	public Optional<ProjectedPoint> getProjectedPoint(GtfsTrip.Id tripId,
+			GtfsTripStopSequence stopSequence) {
 		ProjectedShapePatternImpl linearIndex = patternIndexByTrips
-				.get(stopTime.getTripId());
+				.get(tripId);
 		if (linearIndex == null)
 			return Optional.empty();
-		ProjectedPointImpl ppos = linearIndex.projections
-				.get(stopTime.getStopSequence());
+		ProjectedPointImpl ppos = linearIndex.projections.get(stopSequence);
 		return Optional.ofNullable(ppos);
 	}
 
+	@Override
+	public Optional<? extends ProjectedShapePattern> getProjectedPattern(
+			GtfsTrip.Id tripId) {
+		return Optional.ofNullable(patternIndexByTrips.get(tripId));
+	}
+
 	@Override
 	public Optional<Double> getLinearDistance(GtfsStopTime stopTime1,
 			GtfsStopTime stopTime2) {
@@ -422,6 +561,10 @@ public class InMemoryLinearGeometryIndex implements LinearGeometryIndex {
 			linearDistanceMeters += Geodesics.fastDistanceMeters(pa, pb);
 		}
 
+		ShapeSegmentIndex shapeSegmentIndex = shapeSegmentIndexes
+				.computeIfAbsent(trip.getShapeId(),
+						id -> new ShapeSegmentIndex(shapePoints));
+
 		// Compute all local minima from each point to the shape
 		List<List<LocalMin>> localMinsPerStop = new ArrayList<>();
 		LocalMin start = new LocalMin(-1, 0, 0.0, 0.0, null);
@@ -431,7 +574,7 @@ public class InMemoryLinearGeometryIndex implements LinearGeometryIndex {
 			GtfsStopTime stopTime = stopTimes.get(i);
 			GtfsStop stop = dao.getStop(stopTime.getStopId());
 			List<LocalMin> localMinsForStop = computeLocalMins(i, stop,
-					shapePoints, lastMin);
+					shapeSegmentIndex, lastMin);
 			if (_debug) {
 				System.out.println("Local mins for " + stop);
 				localMinsForStop.forEach(lm -> System.out.println("   " + lm));
@@ -540,13 +683,17 @@ public class InMemoryLinearGeometryIndex implements LinearGeometryIndex {
 	private static double MAX_THRESHOLD_METERS = 50;
 
 	/**
-	 * Compute a list of local minimum from a stop to a shape. Using a spatial
-	 * index to speed things up is probably not faster than using a brute-force
-	 * approach of computing the distance to every segment of the shape, since
-	 * we are using a fast version of the distance function.
+	 * Compute a list of local minimum from a stop to a shape. Only the segments
+	 * near the stop are visited, using the shape segment index. Local minima
+	 * farther than the nearest one plus MIN_THRESHOLD_METERS are discarded
+	 * anyway. A kept local minimum is always closed before reaching a skipped
+	 * segment (farther than the nearest one plus both thresholds), as the next
+	 * segment starts at the end point of the current one: the result is the
+	 * same as visiting all segments.
 	 */
 	private List<LocalMin> computeLocalMins(int stopIndex, GtfsStop stop,
-			List<GtfsShapePoint> shapePoints, LocalMin lastMin) {
+			ShapeSegmentIndex shapeSegmentIndex, LocalMin lastMin) {
+		List<GtfsShapePoint> shapePoints = shapeSegmentIndex.getShapePoints();
 		List<LocalMin> ret = new ArrayList<>();
 		LocalMin min = null;
 		double bestMinDist = Double.MAX_VALUE;
@@ -559,7 +706,8 @@ public class InMemoryLinearGeometryIndex implements LinearGeometryIndex {
 		}
 		GeoCoordinates p = op.get();
 		double cosLat = Math.cos(Math.toRadians(p.getLat()));
-		for (int segIndex = 0; segIndex < shapePoints.size() - 1; segIndex++) {
+		for (int segIndex : shapeSegmentIndex.getSegmentsNear(p, cosLat,
+				MIN_THRESHOLD_METERS + MAX_THRESHOLD_METERS)) {
 			GtfsShapePoint a = shapePoints.get(segIndex);
 			GtfsShapePoint b = shapePoints.get(segIndex + 1);
 			GeoCoordinates pa = a.getCoordinates();
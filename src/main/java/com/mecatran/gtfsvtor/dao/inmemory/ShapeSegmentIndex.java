@@ -0,0 +1,126 @@
+package com.mecatran.gtfsvtor.dao.inmemory;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import com.mecatran.gtfsvtor.geospatial.GeoCoordinates;
+import com.mecatran.gtfsvtor.geospatial.Geodesics;
+import com.mecatran.gtfsvtor.model.GtfsShapePoint;
+
+/**
+ * A spatial index of the segments of a shape, to find the segments near a stop
+ * without scanning the whole shape. It is built once per shape and shared by
+ * all the patterns projected on it, so queries can be run concurrently.
+ *
+ * Distances are the approximated ones of Geodesics.fastDistanceMeters(), in an
+ * equi-rectangular projection centered on the queried point.
+ */
+class ShapeSegmentIndex {
+
+	/* Below this number of segments, scanning them all is as fast */
+	private static final int MIN_INDEXED_SEGMENTS = 32;
+	/* Initial search radius, doubled until a segment is found */
+	private static final double INITIAL_RADIUS_METERS = 100;
+	/* Margin for rounding errors, when converting meters to degrees */
+	private static final double ROUNDING_MARGIN_METERS = 1;
+
+	private List<GtfsShapePoint> shapePoints;
+	private int[] allSegments;
+	private Envelope shapeEnvelope = new Envelope();
+	private STRtree segmentTree = null;
+
+	/**
+	 * @param shapePoints The points of the shape, all of them with
+	 *        coordinates.
+	 */
+	ShapeSegmentIndex(List<GtfsShapePoint> shapePoints) {
+		this.shapePoints = shapePoints;
+		int nSegments = Math.max(0, shapePoints.size() - 1);
+		allSegments = new int[nSegments];
+		for (int i = 0; i < nSegments; i++)
+			allSegments[i] = i;
+		for (GtfsShapePoint shapePoint : shapePoints) {
+			GeoCoordinates p = shapePoint.getCoordinates();
+			shapeEnvelope.expandToInclude(p.getLon(), p.getLat());
+		}
+		if (nSegments >= MIN_INDEXED_SEGMENTS) {
+			segmentTree = new STRtree();
+			for (int i = 0; i < nSegments; i++) {
+				GeoCoordinates a = shapePoints.get(i).getCoordinates();
+				GeoCoordinates b = shapePoints.get(i + 1).getCoordinates();
+				segmentTree.insert(new Envelope(a.getLon(), b.getLon(),
+						a.getLat(), b.getLat()), i);
+			}
+			// Build now, concurrent queries will then only read the tree
+			segmentTree.build();
+		}
+	}
+
+	List<GtfsShapePoint> getShapePoints() {
+		return shapePoints;
+	}
+
+	/**
+	 * @param cosLat The cosine of the latitude of p, as used for the fast
+	 *        distance.
+	 * @return The sorted indexes of the segments to visit to get all segments
+	 *         whose distance to p is within marginMeters of the nearest one.
+	 *         This is a superset: all segments not returned are farther, but
+	 *         some returned segments can be farther too. The array must not be
+	 *         modified.
+	 */
+	int[] getSegmentsNear(GeoCoordinates p, double cosLat,
+			double marginMeters) {
+		if (segmentTree == null)
+			return allSegments;
+		double radius = INITIAL_RADIUS_METERS;
+		while (true) {
+			Envelope env = envelopeAround(p, radius);
+			if (env.covers(shapeEnvelope))
+				return allSegments;
+			int[] segments = query(env);
+			double minDist = Double.MAX_VALUE;
+			for (int segIndex : segments) {
+				double d = Geodesics.fastDistanceMeters(p,
+						shapePoints.get(segIndex).getCoordinates(),
+						shapePoints.get(segIndex + 1).getCoordinates(),
+						cosLat)[0];
+				if (d < minDist)
+					minDist = d;
+			}
+			/*
+			 * Segments outside the envelope are farther than the radius. If the
+			 * nearest one is within the radius, it is the nearest of all.
+			 */
+			if (minDist <= radius) {
+				double reach = minDist + marginMeters;
+				if (reach <= radius)
+					return segments;
+				env = envelopeAround(p, reach);
+				return env.covers(shapeEnvelope) ? allSegments : query(env);
+			}
+			radius *= 2;
+		}
+	}
+
+	private Envelope envelopeAround(GeoCoordinates p, double radiusMeters) {
+		double dLat = Geodesics
+				.deltaLat(radiusMeters + ROUNDING_MARGIN_METERS);
+		double dLon = Geodesics.deltaLon(
+				radiusMeters + ROUNDING_MARGIN_METERS, p.getLat());
+		return new Envelope(p.getLon() - dLon, p.getLon() + dLon,
+				p.getLat() - dLat, p.getLat() + dLat);
+	}
+
+	private int[] query(Envelope env) {
+		List<?> items = segmentTree.query(env);
+		int[] ret = new int[items.size()];
+		for (int i = 0; i < ret.length; i++)
+			ret[i] = (Integer) items.get(i);
+		Arrays.sort(ret);
+		return ret;
+	}
+}
@@ -0,0 +1,193 @@
+package com.mecatran.gtfsvtor.dao.packing;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An append-only store of byte records, kept off-heap in large direct byte
+ * buffers (chunks). A record is referenced by a single long, packing its offset
+ * and length, so that the caller does not need any object per record.
+ *
+ * Records can optionally be interned: identical records are stored only once,
+ * and get the same reference. The interning table only contains primitive
+ * values, and can be released with freeze() when no more records are added.
+ *
+ * Appending is not thread-safe. Reading is, once all records have been
+ * appended.
+ */
+public class ByteArena {
+
+	public static final int DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+
+	private static final int LENGTH_BITS = 24;
+	private static final long LENGTH_MASK = (1L << LENGTH_BITS) - 1;
+	private static final long NO_REF = -1L;
+
+	private final int chunkSize;
+	private ByteBuffer[] chunks = new ByteBuffer[0];
+	private ByteBuffer current = null;
+	private long usedBytes = 0;
+
+	/* Open-addressing interning table, null if frozen */
+	private long[] refs;
+	private int[] hashes;
+	private int internedCount = 0;
+
+	public ByteArena() {
+		this(DEFAULT_CHUNK_SIZE);
+	}
+
+	public ByteArena(int chunkSize) {
+		if (chunkSize > LENGTH_MASK + 1)
+			throw new IllegalArgumentException(
+					"Chunk size too large: " + chunkSize);
+		this.chunkSize = chunkSize;
+		this.refs = new long[1024];
+		this.hashes = new int[1024];
+		Arrays.fill(refs, NO_REF);
+	}
+
+	/**
+	 * @return The length of the record referenced by ref.
+	 */
+	public static int length(long ref) {
+		return (int) (ref & LENGTH_MASK);
+	}
+
+	/**
+	 * Append a new record, even if an identical one is already stored.
+	 *
+	 * @return The reference of the new record.
+	 */
+	public long append(byte[] data) {
+		int length = data.length;
+		// The length is packed in LENGTH_BITS, so a full chunk does not fit
+		int maxLength = (int) Math.min(chunkSize, LENGTH_MASK);
+		if (length > maxLength)
+			throw new IllegalArgumentException("Record too large for arena: "
+					+ length + " bytes, max " + maxLength);
+		if (current == null || current.remaining() < length) {
+			current = ByteBuffer.allocateDirect(chunkSize);
+			chunks = Arrays.copyOf(chunks, chunks.length + 1);
+			chunks[chunks.length - 1] = current;
+		}
+		long offset = (long) (chunks.length - 1) * chunkSize
+				+ current.position();
+		current.put(data);
+		usedBytes += length;
+		return (offset << LENGTH_BITS) | length;
+	}
+
+	/**
+	 * Append a record, or return the reference of an identical record already
+	 * stored.
+	 */
+	public long intern(byte[] data) {
+		if (refs == null)
+			throw new IllegalStateException(
+					"Cannot intern in a frozen arena");
+		int hash = Arrays.hashCode(data);
+		int mask = refs.length - 1;
+		int i = mix(hash) & mask;
+		while (refs[i] != NO_REF) {
+			if (hashes[i] == hash && contentEquals(refs[i], data))
+				return refs[i];
+			i = (i + 1) & mask;
+		}
+		long ref = append(data);
+		refs[i] = ref;
+		hashes[i] = hash;
+		internedCount++;
+		if (internedCount * 2 > refs.length)
+			rehash();
+		return ref;
+	}
+
+	/**
+	 * Release the interning table. Interning is not possible anymore, but
+	 * records can still be appended and read.
+	 */
+	public void freeze() {
+		refs = null;
+		hashes = null;
+	}
+
+	/**
+	 * @return A copy of the record data.
+	 */
+	public byte[] get(long ref) {
+		byte[] data = new byte[length(ref)];
+		long offset = ref >>> LENGTH_BITS;
+		// Duplicate to have our own position, for thread-safety
+		ByteBuffer chunk = chunks[(int) (offset / chunkSize)].duplicate();
+		chunk.position((int) (offset % chunkSize));
+		chunk.get(data);
+		return data;
+	}
+
+	/**
+	 * @return The number of bytes used by all records.
+	 */
+	public long getUsedBytes() {
+		return usedBytes;
+	}
+
+	/**
+	 * @return The number of bytes allocated off-heap.
+	 */
+	public long getAllocatedBytes() {
+		return (long) chunks.length * chunkSize;
+	}
+
+	/**
+	 * @return The number of distinct interned records.
+	 */
+	public int getInternedCount() {
+		return internedCount;
+	}
+
+	private boolean contentEquals(long ref, byte[] data) {
+		if (length(ref) != data.length)
+			return false;
+		long offset = ref >>> LENGTH_BITS;
+		ByteBuffer chunk = chunks[(int) (offset / chunkSize)];
+		int pos = (int) (offset % chunkSize);
+		for (int i = 0; i < data.length; i++) {
+			if (chunk.get(pos + i) != data[i])
+				return false;
+		}
+		return true;
+	}
+
+	private void rehash() {
+		long[] oldRefs = refs;
+		int[] oldHashes = hashes;
+		refs = new long[oldRefs.length * 2];
+		hashes = new int[oldRefs.length * 2];
+		Arrays.fill(refs, NO_REF);
+		int mask = refs.length - 1;
+		for (int j = 0; j < oldRefs.length; j++) {
+			if (oldRefs[j] == NO_REF)
+				continue;
+			int i = mix(oldHashes[j]) & mask;
+			while (refs[i] != NO_REF)
+				i = (i + 1) & mask;
+			refs[i] = oldRefs[j];
+			hashes[i] = oldHashes[j];
+		}
+	}
+
+	private static int mix(int hash) {
+		/*
+		 * Arrays.hashCode() of similar records are close to each other, and
+		 * would create large clusters with linear probing. Use the murmur3
+		 * finalizer to spread them.
+		 */
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
+	}
+}
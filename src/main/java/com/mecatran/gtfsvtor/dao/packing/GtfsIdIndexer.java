@@ -1,19 +1,35 @@
 package com.mecatran.gtfsvtor.dao.packing;
 
-import com.google.common.collect.BiMap;
-import com.google.common.collect.HashBiMap;
+import java.util.Arrays;
+
 import com.mecatran.gtfsvtor.model.GtfsId;
 import com.mecatran.gtfsvtor.model.GtfsObject;
 import com.mecatran.gtfsvtor.model.GtfsStop;
 
+/**
+ * Map GTFS IDs to small consecutive integers, and back.
+ *
+ * The ID to index direction is an open-addressing hash table (IDs and int
+ * indexes in two parallel arrays), the index to ID direction a plain array. So
+ * no boxing is needed, and unindexing (done for each unpacked stop time) is a
+ * simple array load.
+ *
+ * Indexing is thread-safe (synchronized), as stop times can be packed in
+ * parallel. Unindexing an index is thread-safe once it has been returned by
+ * index(). Lookup with find() is only thread-safe once all IDs are indexed.
+ */
 public class GtfsIdIndexer<U, V extends GtfsObject<U>, T extends GtfsId<U, V>> {
 
-	private BiMap<T, Integer> indexes = HashBiMap.create();
-
 	// Keep 0 for special values if needed
 	// TODO Insert 0 for null
 	private int nextIndex = 1;
 
+	/* ID -> index table. Slot is free if key is null. */
+	private Object[] keys = new Object[256];
+	private int[] values = new int[256];
+	/* Index -> ID */
+	private volatile Object[] ids = new Object[64];
+
 	public GtfsIdIndexer() {
 	}
 
@@ -23,15 +39,94 @@ public class GtfsIdIndexer<U, V extends GtfsObject<U>, T extends GtfsId<U, V>> {
 
 	/**
 	 * Insert the value if not present, return the associated index
-	 * 
+	 *
 	 * @param id
 	 * @return
 	 */
-	public int index(T id) {
-		return indexes.computeIfAbsent(id, id2 -> nextIndex++);
+	public synchronized int index(T id) {
+		int mask = keys.length - 1;
+		int i = mix(id.hashCode()) & mask;
+		Object key;
+		while ((key = keys[i]) != null) {
+			if (key.equals(id))
+				return values[i];
+			i = (i + 1) & mask;
+		}
+		int index = nextIndex++;
+		keys[i] = id;
+		values[i] = index;
+		Object[] ids = this.ids;
+		if (index >= ids.length) {
+			ids = Arrays.copyOf(ids, ids.length * 2);
+			ids[index] = id;
+			// Publish after the copy
+			this.ids = ids;
+		} else {
+			ids[index] = id;
+		}
+		// Keep the load factor below 1/2
+		if ((index - 1) * 2 > keys.length)
+			rehash();
+		return index;
+	}
+
+	/**
+	 * Lookup only, never insert.
+	 *
+	 * @return The index of the ID, or 0 if it has not been indexed.
+	 */
+	public int find(T id) {
+		if (id == null)
+			return 0;
+		Object[] keys = this.keys;
+		int mask = keys.length - 1;
+		int i = mix(id.hashCode()) & mask;
+		Object key;
+		while ((key = keys[i]) != null) {
+			if (key.equals(id))
+				return values[i];
+			i = (i + 1) & mask;
+		}
+		return 0;
 	}
 
+	@SuppressWarnings("unchecked")
 	public T unindex(int index) {
-		return indexes.inverse().get(index);
+		Object[] ids = this.ids;
+		return index >= 0 && index < ids.length ? (T) ids[index] : null;
+	}
+
+	/**
+	 * @return The number of indexed IDs.
+	 */
+	public int size() {
+		return nextIndex - 1;
+	}
+
+	private void rehash() {
+		Object[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new Object[oldKeys.length * 2];
+		values = new int[oldKeys.length * 2];
+		int mask = keys.length - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			if (oldKeys[j] == null)
+				continue;
+			int i = mix(oldKeys[j].hashCode()) & mask;
+			while (keys[i] != null)
+				i = (i + 1) & mask;
+			keys[i] = oldKeys[j];
+			values[i] = oldValues[j];
+		}
+	}
+
+	private static int mix(int hash) {
+		// Same finalizer as ByteArena, IDs often have close hash codes
+		hash ^= hash >>> 16;
+		hash *= 0x85ebca6b;
+		hash ^= hash >>> 13;
+		hash *= 0xc2b2ae35;
+		hash ^= hash >>> 16;
+		return hash;
 	}
 }
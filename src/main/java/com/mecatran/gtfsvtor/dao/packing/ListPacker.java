@@ -1,34 +1,79 @@
 package com.mecatran.gtfsvtor.dao.packing;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.stream.Stream;
 
+/**
+ * Group elements per ID into lists, packing each list as soon as it is not
+ * needed anymore. Only the last maxOpened items are kept opened (unpacked).
+ *
+ * When an element arrives for an item already packed (interleaving), the item
+ * is not unpacked. Instead the new elements are collected in a small delta
+ * chunk, packed separately when evicted. Chunks are merged to the main packed
+ * item lazily, on first read or at close(). If an item accumulates too many
+ * chunks, they are merged immediately and this counts as an interleaving
+ * overflow, reported through the callback.
+ *
+ * Optionally, if the packer is thread-safe, items are packed by a small pool
+ * of worker threads while the caller keeps pushing elements. The queue of
+ * pending items is bounded: when it is full, the caller packs by itself.
+ * Pending items are waited for on first read or at close().
+ */
 public class ListPacker<U, V, W> {
 
+	public static final int DEFAULT_MAX_DELTA_CHUNKS = 4;
+
 	public interface PackerUnpacker<U, V, W> {
 
 		public W pack(U id, List<V> elems);
 
 		public List<V> unpack(U id, W w);
+
+		/**
+		 * @return True if pack() can be called concurrently from several
+		 *         threads, enabling parallel packing.
+		 */
+		public default boolean isThreadSafe() {
+			return false;
+		}
 	}
 
 	private static class OpenedItem<V> {
-		private OpenedItem(List<V> list) {
+		private OpenedItem(List<V> list, boolean delta) {
 			this.list = list;
+			this.delta = delta;
 		}
 
 		private List<V> list;
+		/* True if the item is already packed, and this is a delta chunk */
+		private boolean delta;
 	}
 
 	private int initialListSize = 100;
 	private LinkedHashMap<U, OpenedItem<V>> openedItems;
 	private Map<U, W> packedItems = new HashMap<>();
+	private Map<U, List<W>> deltaChunks = new HashMap<>();
+	private int packingThreads = 1;
+	private ThreadPoolExecutor packingExecutor = null;
+	private Map<U, Future<W>> pendingPacks = new HashMap<>();
+	/* Pending IDs in submission order, for draining completed packs */
+	private Deque<U> pendingIds = new ArrayDeque<>();
+	private int maxDeltaChunks = DEFAULT_MAX_DELTA_CHUNKS;
+	private int nDeltaChunks = 0;
 	private int nInterleave = 0;
+	private boolean overflowPending = false;
 	private PackerUnpacker<U, V, W> packerUnpacker;
 	private int elemSize = 0;
 	private Function<Integer, Boolean> interleavingOverflowCallback;
@@ -43,10 +88,8 @@ public class ListPacker<U, V, W> {
 			protected boolean removeEldestEntry(
 					Map.Entry<U, OpenedItem<V>> eldest) {
 				boolean remove = size() > maxOpened;
-				if (remove) {
-					packedItems.put(eldest.getKey(), packerUnpacker
-							.pack(eldest.getKey(), eldest.getValue().list));
-				}
+				if (remove)
+					packItem(eldest.getKey(), eldest.getValue());
 				return remove;
 			}
 		};
@@ -63,36 +106,64 @@ public class ListPacker<U, V, W> {
 		return this;
 	}
 
+	/**
+	 * @param maxDeltaChunks The maximum number of pending delta chunks per
+	 *        item. 0 to disable delta chunks altogether, and always unpack and
+	 *        repack an item on interleaving.
+	 */
+	public ListPacker<U, V, W> withMaxDeltaChunks(int maxDeltaChunks) {
+		this.maxDeltaChunks = maxDeltaChunks;
+		return this;
+	}
+
+	/**
+	 * @param packingThreads The number of worker threads to pack items with.
+	 *        1 (the default) to pack items synchronously in the caller thread.
+	 *        Ignored if the packer is not thread-safe.
+	 */
+	public ListPacker<U, V, W> withPackingThreads(int packingThreads) {
+		this.packingThreads = packingThreads;
+		return this;
+	}
+
 	public void push(U id, V e) {
-		boolean callCallback = false;
 		OpenedItem<V> opened = openedItems.get(id);
 		if (opened == null) {
-			W closed = packedItems.remove(id);
-			if (closed != null) {
-				opened = new OpenedItem<>(packerUnpacker.unpack(id, closed));
-				openedItems.put(id, opened);
-				if (nInterleave == 0) {
-					// Only call the overflow callback once
-					callCallback = true;
-				}
-				nInterleave++;
+			if (!packedItems.containsKey(id)
+					&& !pendingPacks.containsKey(id)) {
+				opened = new OpenedItem<>(new ArrayList<>(initialListSize),
+						false);
+			} else if (maxDeltaChunks > 0) {
+				// Do not unpack, start a new delta chunk
+				opened = new OpenedItem<>(new ArrayList<>(), true);
 			} else {
-				opened = openedItems.computeIfAbsent(id,
-						id2 -> new OpenedItem<>(
-								new ArrayList<>(initialListSize)));
+				resolvePending(id);
+				opened = new OpenedItem<>(
+						packerUnpacker.unpack(id, packedItems.remove(id)),
+						false);
+				overflow();
 			}
+			openedItems.put(id, opened);
 		}
 		opened.list.add(e);
 		elemSize++;
-		if (callCallback && interleavingOverflowCallback != null)
-			interleavingOverflowCallback.apply(0);
-
+		if (overflowPending) {
+			// Call outside of any map update, the callback may close us
+			overflowPending = false;
+			if (interleavingOverflowCallback != null)
+				interleavingOverflowCallback.apply(0);
+		}
 	}
 
 	public void close() {
-		openedItems.forEach((id, opened) -> packedItems.put(id,
-				packerUnpacker.pack(id, opened.list)));
+		openedItems.forEach(this::packItem);
 		openedItems.clear();
+		resolveAllPending();
+		if (packingExecutor != null) {
+			packingExecutor.shutdown();
+			packingExecutor = null;
+		}
+		new ArrayList<>(deltaChunks.keySet()).forEach(this::mergeChunks);
 		if (nInterleave > 0 && interleavingOverflowCallback == null) {
 			System.out.println("Warning: " + nInterleave
 					+ " interleaved items have been seen.\n"
@@ -106,14 +177,120 @@ public class ListPacker<U, V, W> {
 	}
 
 	public int groupCount() {
-		return packedItems.size();
+		return packedItems.size() + pendingPacks.size();
+	}
+
+	/**
+	 * @return The number of delta chunks created so far, merged or not.
+	 */
+	public int deltaChunksCount() {
+		return nDeltaChunks;
 	}
 
 	public W get(U id) {
+		resolvePending(id);
+		if (deltaChunks.containsKey(id))
+			mergeChunks(id);
 		return packedItems.get(id);
 	}
 
 	public Stream<Map.Entry<U, W>> entries() {
+		resolveAllPending();
+		new ArrayList<>(deltaChunks.keySet()).forEach(this::mergeChunks);
 		return packedItems.entrySet().stream();
 	}
+
+	private void packItem(U id, OpenedItem<V> opened) {
+		if (!opened.delta && packingThreads > 1
+				&& packerUnpacker.isThreadSafe()) {
+			List<V> list = opened.list;
+			pendingPacks.put(id, getPackingExecutor()
+					.submit(() -> packerUnpacker.pack(id, list)));
+			pendingIds.add(id);
+			drainCompletedPacks();
+			return;
+		}
+		W w = packerUnpacker.pack(id, opened.list);
+		if (!opened.delta) {
+			packedItems.put(id, w);
+			return;
+		}
+		List<W> chunks = deltaChunks.computeIfAbsent(id,
+				id2 -> new ArrayList<>(maxDeltaChunks));
+		chunks.add(w);
+		nDeltaChunks++;
+		if (chunks.size() > maxDeltaChunks) {
+			// Too much interleaving for this item
+			mergeChunks(id);
+			overflow();
+		}
+	}
+
+	private void mergeChunks(U id) {
+		List<W> chunks = deltaChunks.remove(id);
+		if (chunks == null)
+			return;
+		resolvePending(id);
+		List<V> list = new ArrayList<>(
+				packerUnpacker.unpack(id, packedItems.get(id)));
+		for (W chunk : chunks)
+			list.addAll(packerUnpacker.unpack(id, chunk));
+		packedItems.put(id, packerUnpacker.pack(id, list));
+	}
+
+	private ThreadPoolExecutor getPackingExecutor() {
+		if (packingExecutor == null) {
+			/*
+			 * Bounded queue: when all workers are busy and the queue is full,
+			 * the caller packs by itself. This bounds the memory used by the
+			 * unpacked pending lists.
+			 */
+			packingExecutor = new ThreadPoolExecutor(packingThreads,
+					packingThreads, 0L, TimeUnit.MILLISECONDS,
+					new ArrayBlockingQueue<>(packingThreads * 4), r -> {
+						Thread thread = new Thread(r, "list-packer");
+						thread.setDaemon(true);
+						return thread;
+					}, new ThreadPoolExecutor.CallerRunsPolicy());
+		}
+		return packingExecutor;
+	}
+
+	private void drainCompletedPacks() {
+		while (!pendingIds.isEmpty()) {
+			Future<W> future = pendingPacks.get(pendingIds.peekFirst());
+			if (future != null && !future.isDone())
+				break;
+			resolvePending(pendingIds.pollFirst());
+		}
+	}
+
+	private void resolvePending(U id) {
+		Future<W> future = pendingPacks.remove(id);
+		if (future == null)
+			return;
+		try {
+			packedItems.put(id, future.get());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrupted while packing " + id, e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new RuntimeException("Cannot pack " + id, e.getCause());
+		}
+	}
+
+	private void resolveAllPending() {
+		while (!pendingIds.isEmpty())
+			resolvePending(pendingIds.pollFirst());
+	}
+
+	private void overflow() {
+		if (nInterleave == 0) {
+			// Only call the overflow callback once
+			overflowPending = true;
+		}
+		nInterleave++;
+	}
 }
@@ -24,11 +24,22 @@ public class AutoSwitchShapePointDao implements ShapePointsDao {
 		currentDao = pspDao;
 	}
 
+	public AutoSwitchShapePointDao withPackingThreads(int packingThreads) {
+		if (pspDao != null)
+			pspDao.withPackingThreads(packingThreads);
+		return this;
+	}
+
 	@Override
 	public void addShapePoint(GtfsShapePoint shapePoint) {
 		currentDao.addShapePoint(shapePoint);
 	}
 
+	@Override
+	public void close() {
+		currentDao.close();
+	}
+
 	@Override
 	public int getShapePointsCount() {
 		return currentDao.getShapePointsCount();
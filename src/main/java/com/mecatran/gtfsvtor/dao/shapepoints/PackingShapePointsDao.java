@@ -27,7 +27,8 @@ public class PackingShapePointsDao implements ShapePointsDao,
 	private DefaultContext context = new DefaultContext();
 	private static AssertListener assertListener = null;
 	private boolean verbose = false;
-	private boolean closed = false;
+	/* Volatile, as the first read can come from any thread */
+	private volatile boolean closed = false;
 
 	public PackingShapePointsDao(int maxInterleaving) {
 		this.listPacker = new ListPacker<>(this, maxInterleaving);
@@ -38,6 +39,15 @@ public class PackingShapePointsDao implements ShapePointsDao,
 		return this;
 	}
 
+	/**
+	 * @param packingThreads Number of threads to pack shapes with, 1 to pack
+	 *        them in the loading thread.
+	 */
+	public PackingShapePointsDao withPackingThreads(int packingThreads) {
+		this.listPacker.withPackingThreads(packingThreads);
+		return this;
+	}
+
 	public PackingShapePointsDao withInterleavingOverflowCallback(
 			Function<Integer, Boolean> callback) {
 		this.listPacker.withInterleavingOverflowCallback(callback);
@@ -100,6 +110,12 @@ public class PackingShapePointsDao implements ShapePointsDao,
 		return w.getShapePoints(shapeId, context);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		// Packing shape points does not use any shared state
+		return true;
+	}
+
 	/**
 	 * @param enable True to enable assert mode: that is check if the
 	 *        packed/unpacked shape points are the same as the original ones
@@ -111,6 +127,12 @@ public class PackingShapePointsDao implements ShapePointsDao,
 	}
 
 	private void closeIfNeeded() {
+		if (!closed)
+			close();
+	}
+
+	@Override
+	public synchronized void close() {
 		if (closed)
 			return;
 		listPacker.close();
@@ -20,7 +20,8 @@ public class PackingUnsortedShapePointsDao implements ShapePointsDao {
 	private DefaultContext context = new DefaultContext();
 	private int nShapePoints = 0;
 	private boolean verbose = false;
-	private boolean closed = false;
+	/* Volatile, as the first read can come from any thread */
+	private volatile boolean closed = false;
 
 	public PackingUnsortedShapePointsDao() {
 	}
@@ -71,6 +72,12 @@ public class PackingUnsortedShapePointsDao implements ShapePointsDao {
 	}
 
 	private void closeIfNeeded() {
+		if (!closed)
+			close();
+	}
+
+	@Override
+	public synchronized void close() {
 		if (closed)
 			return;
 		shapePoints.values().forEach(st -> st.sort(context));
@@ -11,6 +11,12 @@ public interface ShapePointsDao {
 
 	public void addShapePoint(GtfsShapePoint shapePoint);
 
+	/**
+	 * Close the DAO once all shape points are added. Reading a DAO not closed
+	 * yet closes it first.
+	 */
+	public void close();
+
 	public int getShapePointsCount();
 
 	public Stream<GtfsShape.Id> getShapeIds();
@@ -0,0 +1,218 @@
+package com.mecatran.gtfsvtor.dao.stoptimes;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.mecatran.gtfsvtor.dao.packing.ByteArena;
+import com.mecatran.gtfsvtor.dao.packing.GtfsIdIndexer;
+import com.mecatran.gtfsvtor.dao.packing.ListPacker;
+import com.mecatran.gtfsvtor.model.GtfsStopTime;
+import com.mecatran.gtfsvtor.model.GtfsTrip;
+import com.mecatran.gtfsvtor.model.GtfsTrip.Id;
+import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
+
+/**
+ * A variant of PackingStopTimesDao storing the packed time and stop patterns
+ * off-heap, in large byte arenas, instead of in many small interned on-heap
+ * objects. Each trip only keeps a base time and two arena references on-heap.
+ *
+ * The encoding is the same as the one of PackedStopTimes. Stop headsigns are
+ * stored alongside the stop pattern data, in UTF-8.
+ */
+public class ArenaStopTimesDao implements StopTimesDao,
+		ListPacker.PackerUnpacker<GtfsTrip.Id, GtfsStopTime, ArenaStopTimesDao.ArenaStopTimes> {
+
+	static final class ArenaStopTimes {
+		private final int baseTime;
+		private final long timeRef;
+		private final long stopRef;
+
+		private ArenaStopTimes(int baseTime, long timeRef, long stopRef) {
+			this.baseTime = baseTime;
+			this.timeRef = timeRef;
+			this.stopRef = stopRef;
+		}
+	}
+
+	private ListPacker<GtfsTrip.Id, GtfsStopTime, ArenaStopTimes> listPacker;
+	private PackedStopTimes.Context context;
+	private ByteArena timeArena = new ByteArena();
+	private ByteArena stopArena = new ByteArena();
+	private boolean verbose = false;
+	private boolean closed = false;
+
+	public ArenaStopTimesDao(int maxInterleaving,
+			GtfsIdIndexer.GtfsStopIdIndexer stopIdIndexer) {
+		this.listPacker = new ListPacker<>(this, maxInterleaving);
+		// We only use the stop ID indexing part of the context
+		this.context = new PackingStopTimesDao.DefaultContext(stopIdIndexer);
+	}
+
+	@Override
+	public ArenaStopTimesDao withVerbose(boolean verbose) {
+		this.verbose = verbose;
+		return this;
+	}
+
+	@Override
+	public void addStopTime(GtfsStopTime stopTime) {
+		if (closed)
+			throw new RuntimeException(
+					"Cannot re-open a closed ArenaStopTimesDao. Implement this if needed.");
+		listPacker.push(stopTime.getTripId(), stopTime);
+	}
+
+	@Override
+	public void close() {
+		closeIfNeeded();
+	}
+
+	@Override
+	public int getStopTimesCount() {
+		closeIfNeeded();
+		return listPacker.itemsCount();
+	}
+
+	@Override
+	public GtfsTripAndTimes getStopTimesOfTrip(Id tripId, GtfsTrip trip) {
+		closeIfNeeded();
+		ArenaStopTimes ast = listPacker.get(tripId);
+		return new DeferredGtfsTripAndTimes(trip) {
+			@Override
+			public List<GtfsStopTime> loadStopTimes() {
+				return ast == null ? Collections.emptyList()
+						: unpack(tripId, ast);
+			}
+
+			@Override
+			public Object loadStopPatternKey() {
+				// Stop patterns are interned, same pattern means same ref
+				return ast == null ? null : Long.valueOf(ast.stopRef);
+			}
+
+			@Override
+			public Object getTimePatternKey() {
+				// Time patterns are interned too
+				return ast == null ? null : Long.valueOf(ast.timeRef);
+			}
+
+			@Override
+			public int getBaseTime() {
+				return ast == null ? StopTimeCursor.NO_VALUE
+						: PackedStopTimes.toBaseTime(ast.baseTime);
+			}
+
+			@Override
+			public StopTimeCursor loadStopTimeCursor() {
+				return ast == null ? StopTimeCursor.of(Collections.emptyList())
+						: cursor(tripId, ast);
+			}
+		};
+	}
+
+	@Override
+	public ArenaStopTimes pack(GtfsTrip.Id tripId,
+			List<GtfsStopTime> stopTimes) {
+		Collections.sort(stopTimes, GtfsStopTime.STOP_SEQ_COMPARATOR);
+		PackedStopTimes.Encoded encoded = PackedStopTimes.encode(context,
+				stopTimes);
+		long timeRef = timeArena.intern(encoded.tdata);
+		long stopRef = stopArena
+				.intern(encodeStopData(encoded.sdata, encoded.headsigns));
+		return new ArenaStopTimes(encoded.baseTime, timeRef, stopRef);
+	}
+
+	@Override
+	public List<GtfsStopTime> unpack(GtfsTrip.Id tripId, ArenaStopTimes ast) {
+		return PackedStopTimes.decode(cursor(tripId, ast));
+	}
+
+	private StopTimeCursor cursor(GtfsTrip.Id tripId, ArenaStopTimes ast) {
+		byte[] tdata = timeArena.get(ast.timeRef);
+		byte[] sdata = stopArena.get(ast.stopRef);
+		ByteBuffer buffer = ByteBuffer.wrap(sdata);
+		int nHeadsigns = buffer.getInt();
+		List<String> headsigns = nHeadsigns == 0 ? null
+				: new ArrayList<>(nHeadsigns);
+		for (int i = 0; i < nHeadsigns; i++) {
+			int len = buffer.getInt();
+			headsigns.add(new String(sdata, buffer.position(), len,
+					StandardCharsets.UTF_8));
+			buffer.position(buffer.position() + len);
+		}
+		return new PackedStopTimesCursor(tripId, context, ast.baseTime, tdata,
+				sdata, buffer.position(), headsigns);
+	}
+
+	/**
+	 * Prefix the stop pattern data with the headsigns, so that the pair can be
+	 * interned as a whole.
+	 */
+	private byte[] encodeStopData(byte[] sdata, List<String> headsigns) {
+		List<byte[]> headsignsBytes = new ArrayList<>();
+		int size = 4 + sdata.length;
+		if (headsigns != null) {
+			for (String headsign : headsigns) {
+				byte[] bytes = headsign.getBytes(StandardCharsets.UTF_8);
+				headsignsBytes.add(bytes);
+				size += 4 + bytes.length;
+			}
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(size);
+		buffer.putInt(headsignsBytes.size());
+		for (byte[] bytes : headsignsBytes) {
+			buffer.putInt(bytes.length);
+			buffer.put(bytes);
+		}
+		buffer.put(sdata);
+		return buffer.array();
+	}
+
+	private void closeIfNeeded() {
+		if (closed)
+			return;
+		listPacker.close();
+		// Release the interning tables, we won't pack anymore
+		timeArena.freeze();
+		stopArena.freeze();
+		if (verbose) {
+			long nStopTimes = listPacker.itemsCount();
+			long nTrips = listPacker.groupCount();
+			long tripBytes = nTrips * (8 + 4 + 8 + 8); // Pointer, int, 2 long
+			long tDataBytes = timeArena.getUsedBytes();
+			long sDataBytes = stopArena.getUsedBytes();
+			long offHeapBytes = timeArena.getAllocatedBytes()
+					+ stopArena.getAllocatedBytes();
+
+			System.out.println(
+					"------[ Arena stop times crude memory stats ]--------------");
+			System.out.println(
+					"       What          |    Count   | Total (kB) | Per item  ");
+			System.out.println(
+					"---------------------+------------+------------+-----------");
+			System.out.println(String.format(Locale.US,
+					"%20s | %10d | %10d | %10.2f", "Trips (heap)", nTrips,
+					tripBytes / 1024, tripBytes * 1. / nTrips));
+			System.out.println(String.format(Locale.US,
+					"%20s | %10d | %10d | %10.2f", "Time patterns",
+					timeArena.getInternedCount(), tDataBytes / 1024,
+					tDataBytes * 1. / timeArena.getInternedCount()));
+			System.out.println(String.format(Locale.US,
+					"%20s | %10d | %10d | %10.2f", "Stop patterns",
+					stopArena.getInternedCount(), sDataBytes / 1024,
+					sDataBytes * 1. / stopArena.getInternedCount()));
+			System.out.println(String.format(Locale.US,
+					"%20s | %10d | %10d | %10.2f", "Off-heap (alloc)",
+					nStopTimes, offHeapBytes / 1024,
+					offHeapBytes * 1. / nStopTimes));
+			System.out.println(
+					"---------------------+------------+------------+-----------");
+		}
+		closed = true;
+	}
+}
@@ -12,25 +12,52 @@ import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
  * the most efficient packing DAO, which rely on (almost) sorted stop times. If
  * an interleaving overflow is detected (stop times are really in random order),
  * we automatically switch to the other implementation, more memory intensive
- * but faster for unsorted data.
+ * but faster for unsorted data. Optionally, we switch back to the packing
+ * implementation at close, repacking all data trip by trip.
  */
 public class AutoSwitchStopTimesDao implements StopTimesDao {
 
 	private GtfsIdIndexer.GtfsStopIdIndexer stopIdIndexer;
+	private int maxInterleaving;
 	private PackingStopTimesDao pstDao;
 	private PackingUnsortedStopTimesDao pustDao;
 	private StopTimesDao currentDao;
+	private boolean repackOnClose = false;
+	private int packingThreads = 1;
 	private boolean verbose = false;
 
 	public AutoSwitchStopTimesDao(int maxInterleaving,
 			GtfsIdIndexer.GtfsStopIdIndexer stopIdIndexer) {
 		this.stopIdIndexer = stopIdIndexer;
+		this.maxInterleaving = maxInterleaving;
 		pstDao = new PackingStopTimesDao(maxInterleaving, stopIdIndexer)
 				.withInterleavingOverflowCallback(this::handleOverflow);
 		pustDao = null;
 		currentDao = pstDao;
 	}
 
+	/**
+	 * @param repackOnClose True to revert back to the most efficient packed
+	 *        DAO implementation at close, if we switched to the unsorted one
+	 *        while loading. This takes a bit of CPU time, but saves memory for
+	 *        the whole validation phase.
+	 */
+	public AutoSwitchStopTimesDao withRepackOnClose(boolean repackOnClose) {
+		this.repackOnClose = repackOnClose;
+		return this;
+	}
+
+	/**
+	 * @param packingThreads Number of threads to pack trips with, in packed
+	 *        mode.
+	 */
+	public AutoSwitchStopTimesDao withPackingThreads(int packingThreads) {
+		this.packingThreads = packingThreads;
+		if (pstDao != null)
+			pstDao.withPackingThreads(packingThreads);
+		return this;
+	}
+
 	@Override
 	public void addStopTime(GtfsStopTime stopTime) {
 		currentDao.addStopTime(stopTime);
@@ -39,13 +66,8 @@ public class AutoSwitchStopTimesDao implements StopTimesDao {
 	@Override
 	public void close() {
 		currentDao.close();
-		/*
-		 * TODO At this stage, we could revert back to the most efficient packed
-		 * DAO implementation. This would take a bit of CPU time, but would save
-		 * memory (as long as we do not end-up having two full DAO in memory at
-		 * the same time, thus a probable need of an "evicting" stream).
-		 * Implement this if needed.
-		 */
+		if (repackOnClose && pustDao != null)
+			repack();
 	}
 
 	@Override
@@ -65,6 +87,34 @@ public class AutoSwitchStopTimesDao implements StopTimesDao {
 		return this;
 	}
 
+	private void repack() {
+		long start = System.currentTimeMillis();
+		long unsortedBytes = pustDao.estimateMemoryBytes();
+		int nStopTimes = pustDao.getStopTimesCount();
+		/*
+		 * Stop times are given one trip at a time, so we won't have any
+		 * interleaving. Trips are removed from the unsorted DAO as they are
+		 * repacked, so both are never fully in memory at the same time.
+		 */
+		PackingStopTimesDao repackedDao = new PackingStopTimesDao(
+				maxInterleaving, stopIdIndexer).withVerbose(verbose)
+						.withPackingThreads(packingThreads);
+		pustDao.drainTrips((tripId, stopTimes) -> stopTimes
+				.forEach(repackedDao::addStopTime));
+		repackedDao.close();
+		long packedBytes = repackedDao.estimateMemoryBytes();
+		pustDao = null;
+		currentDao = repackedDao;
+		if (verbose) {
+			long end = System.currentTimeMillis();
+			System.out.println("Repacked " + nStopTimes + " stop times in "
+					+ (end - start) + "ms, saved ~"
+					+ (unsortedBytes - packedBytes) / 1024 + "kB (~"
+					+ unsortedBytes / 1024 + "kB unsorted, ~"
+					+ packedBytes / 1024 + "kB packed).");
+		}
+	}
+
 	private boolean handleOverflow(int n) {
 		System.out.println(
 				"Interleaving stop times overflow detected. Switching to relevant DAO implementation to better handle this.\nThis will increase memory consumption, though.");
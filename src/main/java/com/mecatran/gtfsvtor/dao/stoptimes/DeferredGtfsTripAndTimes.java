@@ -5,6 +5,7 @@ import java.util.List;
 import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 
 /**
  * Defer the loading of stop times and stop pattern key in abstract method each
@@ -34,6 +35,14 @@ public abstract class DeferredGtfsTripAndTimes implements GtfsTripAndTimes {
 		return stopTimes;
 	}
 
+	@Override
+	public StopTimeCursor getStopTimeCursor() {
+		// No need to decode again if the stop times are already loaded
+		if (stopTimes != null)
+			return StopTimeCursor.of(stopTimes);
+		return loadStopTimeCursor();
+	}
+
 	@Override
 	public Object getStopPatternKey() {
 		if (stopPatternKey == null) {
@@ -45,4 +54,12 @@ public abstract class DeferredGtfsTripAndTimes implements GtfsTripAndTimes {
 	abstract List<GtfsStopTime> loadStopTimes();
 
 	abstract Object loadStopPatternKey();
+
+	/**
+	 * Override this to iterate directly over the packed data. The cursor is
+	 * not cached, as it is cheap to create and not thread-safe.
+	 */
+	StopTimeCursor loadStopTimeCursor() {
+		return StopTimeCursor.of(getStopTimes());
+	}
 }
@@ -0,0 +1,295 @@
+package com.mecatran.gtfsvtor.dao.stoptimes;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.mecatran.gtfsvtor.dao.packing.GtfsIdIndexer;
+import com.mecatran.gtfsvtor.model.GtfsDropoffType;
+import com.mecatran.gtfsvtor.model.GtfsLogicalTime;
+import com.mecatran.gtfsvtor.model.GtfsPickupType;
+import com.mecatran.gtfsvtor.model.GtfsStop;
+import com.mecatran.gtfsvtor.model.GtfsStopTime;
+import com.mecatran.gtfsvtor.model.GtfsTimepoint;
+import com.mecatran.gtfsvtor.model.GtfsTrip;
+import com.mecatran.gtfsvtor.model.GtfsTrip.Id;
+import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.GtfsTripStopSequence;
+import com.mecatran.gtfsvtor.model.impl.SimpleGtfsStopTime;
+
+/**
+ * A StopTimesDao for stop times in any order, using an external sort. Incoming
+ * stop times are buffered in memory; when the buffer is full, it is sorted by
+ * trip ID and stop sequence and spilled to a run file on disk. At close, all
+ * runs are k-way merged straight into a PackingStopTimesDao. As merged stop
+ * times are sorted by trip, the packing DAO never sees any interleaving.
+ *
+ * This keeps memory bounded during loading, and the efficiency of the sorted
+ * packing whatever the input order. Run files are created in the default
+ * temporary directory (java.io.tmpdir), and deleted after the merge.
+ */
+public class ExternalSortStopTimesDao implements StopTimesDao {
+
+	public static final int DEFAULT_RUN_SIZE = 1000000;
+
+	private static final Comparator<GtfsStopTime> TRIP_SEQ_COMPARATOR = Comparator
+			.comparing((GtfsStopTime st) -> st.getTripId().getInternalId())
+			.thenComparing(GtfsStopTime.STOP_SEQ_COMPARATOR);
+
+	private GtfsIdIndexer.GtfsStopIdIndexer stopIdIndexer;
+	private int runSize = DEFAULT_RUN_SIZE;
+	private List<GtfsStopTime> buffer = new ArrayList<>();
+	private List<File> runFiles = new ArrayList<>();
+	private PackingStopTimesDao packedDao = null;
+	private boolean verbose = false;
+
+	public ExternalSortStopTimesDao(
+			GtfsIdIndexer.GtfsStopIdIndexer stopIdIndexer) {
+		this.stopIdIndexer = stopIdIndexer;
+	}
+
+	/**
+	 * @param runSize The maximum number of stop times to buffer in memory
+	 *        before spilling them to disk.
+	 */
+	public ExternalSortStopTimesDao withRunSize(int runSize) {
+		this.runSize = runSize;
+		return this;
+	}
+
+	@Override
+	public ExternalSortStopTimesDao withVerbose(boolean verbose) {
+		this.verbose = verbose;
+		return this;
+	}
+
+	@Override
+	public void addStopTime(GtfsStopTime stopTime) {
+		if (packedDao != null)
+			throw new RuntimeException(
+					"Cannot re-open a closed ExternalSortStopTimesDao. Implement this if needed.");
+		buffer.add(stopTime);
+		if (buffer.size() >= runSize)
+			spill();
+	}
+
+	@Override
+	public void close() {
+		closeIfNeeded();
+	}
+
+	@Override
+	public int getStopTimesCount() {
+		closeIfNeeded();
+		return packedDao.getStopTimesCount();
+	}
+
+	@Override
+	public GtfsTripAndTimes getStopTimesOfTrip(Id tripId, GtfsTrip trip) {
+		closeIfNeeded();
+		return packedDao.getStopTimesOfTrip(tripId, trip);
+	}
+
+	private void spill() {
+		buffer.sort(TRIP_SEQ_COMPARATOR);
+		try {
+			File file = File.createTempFile("gtfsvtor-stoptimes-run", ".bin");
+			file.deleteOnExit();
+			try (DataOutputStream output = new DataOutputStream(
+					new BufferedOutputStream(new FileOutputStream(file),
+							64 * 1024))) {
+				for (GtfsStopTime stopTime : buffer)
+					writeStopTime(output, stopTime);
+			}
+			runFiles.add(file);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot spill stop times to disk", e);
+		}
+		if (verbose) {
+			System.out.println("Spilled run #" + runFiles.size() + " of "
+					+ buffer.size() + " stop times to disk");
+		}
+		buffer = new ArrayList<>();
+	}
+
+	private static class Run {
+		private DataInputStream input;
+		private GtfsStopTime head;
+		private int index;
+
+		private Run(DataInputStream input, int index) throws IOException {
+			this.input = input;
+			this.index = index;
+			next();
+		}
+
+		private void next() throws IOException {
+			head = readStopTime(input);
+		}
+	}
+
+	private void closeIfNeeded() {
+		if (packedDao != null)
+			return;
+		long start = System.currentTimeMillis();
+		// Each trip is merged as a whole, a single opened trip is enough
+		PackingStopTimesDao dao = new PackingStopTimesDao(1, stopIdIndexer)
+				.withVerbose(verbose);
+		if (runFiles.isEmpty()) {
+			// Everything fits in memory, no need to go to disk
+			buffer.sort(TRIP_SEQ_COMPARATOR);
+			buffer.forEach(dao::addStopTime);
+		} else {
+			if (!buffer.isEmpty())
+				spill();
+			merge(dao);
+		}
+		buffer = null;
+		dao.close();
+		packedDao = dao;
+		if (verbose) {
+			long end = System.currentTimeMillis();
+			System.out.println("Merged " + runFiles.size() + " runs of "
+					+ dao.getStopTimesCount() + " stop times in "
+					+ (end - start) + "ms");
+		}
+	}
+
+	private void merge(PackingStopTimesDao dao) {
+		// Ties (duplicated sequences) are kept in input order
+		PriorityQueue<Run> queue = new PriorityQueue<>(runFiles.size(),
+				Comparator.comparing((Run run) -> run.head, TRIP_SEQ_COMPARATOR)
+						.thenComparingInt(run -> run.index));
+		List<DataInputStream> inputs = new ArrayList<>();
+		try {
+			for (File file : runFiles) {
+				DataInputStream input = new DataInputStream(
+						new BufferedInputStream(new FileInputStream(file),
+								64 * 1024));
+				inputs.add(input);
+				Run run = new Run(input, inputs.size());
+				if (run.head != null)
+					queue.add(run);
+			}
+			while (!queue.isEmpty()) {
+				Run run = queue.poll();
+				dao.addStopTime(run.head);
+				run.next();
+				if (run.head != null)
+					queue.add(run);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot merge stop times runs", e);
+		} finally {
+			for (DataInputStream input : inputs) {
+				try {
+					input.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}
+			runFiles.forEach(File::delete);
+		}
+	}
+
+	private static void writeStopTime(DataOutputStream output,
+			GtfsStopTime stopTime) throws IOException {
+		writeString(output, stopTime.getTripId().getInternalId());
+		writeString(output, stopTime.getStopId() == null ? null
+				: stopTime.getStopId().getInternalId());
+		output.writeInt(stopTime.getStopSequence().getSequence());
+		writeTime(output, stopTime.getArrivalTime());
+		writeTime(output, stopTime.getDepartureTime());
+		output.writeByte(stopTime.getPickupType()
+				.map(GtfsPickupType::getValue).orElse(-1));
+		output.writeByte(stopTime.getDropoffType()
+				.map(GtfsDropoffType::getValue).orElse(-1));
+		output.writeByte(stopTime.getTimepoint().map(GtfsTimepoint::getValue)
+				.orElse(-1));
+		writeString(output, stopTime.getStopHeadsign());
+		Double shapeDist = stopTime.getShapeDistTraveled();
+		output.writeBoolean(shapeDist != null);
+		if (shapeDist != null)
+			output.writeDouble(shapeDist);
+	}
+
+	/**
+	 * @return The next stop time, or null at the end of the run.
+	 */
+	private static GtfsStopTime readStopTime(DataInputStream input)
+			throws IOException {
+		String tripId;
+		try {
+			tripId = readString(input);
+		} catch (EOFException e) {
+			return null;
+		}
+		GtfsStopTime.Builder builder = new SimpleGtfsStopTime.Builder()
+				.withTripId(GtfsTrip.id(tripId));
+		String stopId = readString(input);
+		if (stopId != null)
+			builder.withStopId(GtfsStop.id(stopId));
+		builder.withStopSequence(
+				GtfsTripStopSequence.fromSequence(input.readInt()));
+		builder.withArrivalTime(readTime(input));
+		builder.withDepartureTime(readTime(input));
+		int pickup = input.readByte();
+		if (pickup >= 0)
+			builder.withPickupType(GtfsPickupType.fromValue(pickup));
+		int dropoff = input.readByte();
+		if (dropoff >= 0)
+			builder.withDropoffType(GtfsDropoffType.fromValue(dropoff));
+		int timepoint = input.readByte();
+		if (timepoint >= 0)
+			builder.withTimepoint(GtfsTimepoint.fromValue(timepoint));
+		builder.withStopHeadsign(readString(input));
+		if (input.readBoolean())
+			builder.withShapeDistTraveled(input.readDouble());
+		return builder.build();
+	}
+
+	private static void writeTime(DataOutputStream output,
+			GtfsLogicalTime time) throws IOException {
+		output.writeBoolean(time != null);
+		if (time != null)
+			output.writeInt(time.getSecondSinceMidnight());
+	}
+
+	private static GtfsLogicalTime readTime(DataInputStream input)
+			throws IOException {
+		return input.readBoolean() ? GtfsLogicalTime.getTime(input.readInt())
+				: null;
+	}
+
+	private static void writeString(DataOutputStream output, String str)
+			throws IOException {
+		if (str == null) {
+			output.writeInt(-1);
+		} else {
+			byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+			output.writeInt(bytes.length);
+			output.write(bytes);
+		}
+	}
+
+	private static String readString(DataInputStream input)
+			throws IOException {
+		int len = input.readInt();
+		if (len < 0)
+			return null;
+		byte[] bytes = new byte[len];
+		input.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
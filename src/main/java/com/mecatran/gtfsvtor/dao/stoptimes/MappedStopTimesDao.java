@@ -0,0 +1,262 @@
+package com.mecatran.gtfsvtor.dao.stoptimes;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import com.mecatran.gtfsvtor.dao.packing.GtfsIdIndexer;
+import com.mecatran.gtfsvtor.dao.packing.ListPacker;
+import com.mecatran.gtfsvtor.loader.impl.MappedFile;
+import com.mecatran.gtfsvtor.model.GtfsStopTime;
+import com.mecatran.gtfsvtor.model.GtfsTrip;
+import com.mecatran.gtfsvtor.model.GtfsTrip.Id;
+import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
+
+/**
+ * A disk-backed StopTimesDao, for feeds whose stop times do not fit in the
+ * heap. Stop times of each trip are packed (using the same encoding as
+ * PackedStopTimes) and written to a temporary file while loading. Only the
+ * trip ID to file offset index is kept in memory. At close, the file is
+ * memory-mapped, and stop times are read from the mapping on demand.
+ *
+ * The temporary file is created in the default temporary directory
+ * (java.io.tmpdir), and deleted as soon as it is mapped.
+ */
+public class MappedStopTimesDao implements StopTimesDao,
+		ListPacker.PackerUnpacker<GtfsTrip.Id, GtfsStopTime, Long> {
+
+	private ListPacker<GtfsTrip.Id, GtfsStopTime, Long> listPacker;
+	private PackedStopTimes.Context context;
+	private File file;
+	private DataOutputStream output;
+	private long fileSize = 0;
+	private RandomAccessFile loadingReader = null;
+	private MappedFile mappedFile = null;
+	private boolean verbose = false;
+	private boolean closed = false;
+
+	public MappedStopTimesDao(int maxInterleaving,
+			GtfsIdIndexer.GtfsStopIdIndexer stopIdIndexer) {
+		this.listPacker = new ListPacker<>(this, maxInterleaving);
+		// We only use the stop ID indexing part of the context
+		this.context = new PackingStopTimesDao.DefaultContext(stopIdIndexer);
+		try {
+			file = File.createTempFile("gtfsvtor-stoptimes", ".bin");
+			file.deleteOnExit();
+			output = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(file), 64 * 1024));
+		} catch (IOException e) {
+			throw new RuntimeException(
+					"Cannot create stop times temporary file", e);
+		}
+	}
+
+	@Override
+	public MappedStopTimesDao withVerbose(boolean verbose) {
+		this.verbose = verbose;
+		return this;
+	}
+
+	@Override
+	public void addStopTime(GtfsStopTime stopTime) {
+		if (closed)
+			throw new RuntimeException(
+					"Cannot re-open a closed MappedStopTimesDao. Implement this if needed.");
+		listPacker.push(stopTime.getTripId(), stopTime);
+	}
+
+	@Override
+	public void close() {
+		closeIfNeeded();
+	}
+
+	@Override
+	public int getStopTimesCount() {
+		closeIfNeeded();
+		return listPacker.itemsCount();
+	}
+
+	@Override
+	public GtfsTripAndTimes getStopTimesOfTrip(Id tripId, GtfsTrip trip) {
+		closeIfNeeded();
+		Long offset = listPacker.get(tripId);
+		return new DeferredGtfsTripAndTimes(trip) {
+			// Read once, reused by all pattern keys and stop times
+			private Record record = null;
+
+			private Record getRecord() {
+				if (record == null)
+					record = readRecord(offset);
+				return record;
+			}
+
+			@Override
+			public List<GtfsStopTime> loadStopTimes() {
+				return offset == null ? Collections.emptyList()
+						: PackedStopTimes.decode(cursor(tripId, getRecord()));
+			}
+
+			@Override
+			public Object loadStopPatternKey() {
+				if (offset == null)
+					return null;
+				// Stop patterns are not interned, rely on value equality
+				return new PackedStopPattern(getRecord().sdata,
+						getRecord().headsigns);
+			}
+
+			@Override
+			public Object getTimePatternKey() {
+				if (offset == null)
+					return null;
+				// Time patterns are not interned, rely on value equality
+				return new PackedTimePattern(getRecord().tdata);
+			}
+
+			@Override
+			public int getBaseTime() {
+				return offset == null ? StopTimeCursor.NO_VALUE
+						: PackedStopTimes.toBaseTime(getRecord().baseTime);
+			}
+
+			@Override
+			public StopTimeCursor loadStopTimeCursor() {
+				return offset == null
+						? StopTimeCursor.of(Collections.emptyList())
+						: cursor(tripId, getRecord());
+			}
+		};
+	}
+
+	private static class Record {
+		private int baseTime;
+		private byte[] tdata;
+		private byte[] sdata;
+		private List<String> headsigns;
+	}
+
+	@Override
+	public Long pack(GtfsTrip.Id tripId, List<GtfsStopTime> stopTimes) {
+		Collections.sort(stopTimes, GtfsStopTime.STOP_SEQ_COMPARATOR);
+		PackedStopTimes.Encoded encoded = PackedStopTimes.encode(context,
+				stopTimes);
+		// Build the record in memory first, to know its size
+		ByteArrayOutputStream record = new ByteArrayOutputStream(
+				16 + encoded.tdata.length + encoded.sdata.length);
+		try (DataOutputStream out = new DataOutputStream(record)) {
+			out.writeInt(encoded.baseTime);
+			out.writeInt(encoded.tdata.length);
+			out.write(encoded.tdata);
+			out.writeInt(encoded.sdata.length);
+			out.write(encoded.sdata);
+			List<String> headsigns = encoded.headsigns == null
+					? Collections.emptyList()
+					: encoded.headsigns;
+			out.writeInt(headsigns.size());
+			for (String headsign : headsigns) {
+				byte[] bytes = headsign.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot encode stop times", e);
+		}
+		long offset = fileSize;
+		try {
+			record.writeTo(output);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot write stop times", e);
+		}
+		fileSize += record.size();
+		return offset;
+	}
+
+	@Override
+	public List<GtfsStopTime> unpack(GtfsTrip.Id tripId, Long offset) {
+		return PackedStopTimes.decode(cursor(tripId, readRecord(offset)));
+	}
+
+	private StopTimeCursor cursor(GtfsTrip.Id tripId, Record record) {
+		return new PackedStopTimesCursor(tripId, context, record.baseTime,
+				record.tdata, record.sdata, 0, record.headsigns);
+	}
+
+	private Record readRecord(long offset) {
+		try {
+			if (mappedFile != null) {
+				try (DataInputStream input = new DataInputStream(
+						mappedFile.getInputStream(offset))) {
+					return readRecord(input);
+				}
+			}
+			/*
+			 * Reading back a record while loading (interleaved trips): flush
+			 * and read the file directly. This is slow, but rare.
+			 */
+			output.flush();
+			if (loadingReader == null)
+				loadingReader = new RandomAccessFile(file, "r");
+			loadingReader.seek(offset);
+			return readRecord(loadingReader);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot read stop times", e);
+		}
+	}
+
+	private Record readRecord(DataInput input) throws IOException {
+		Record record = new Record();
+		record.baseTime = input.readInt();
+		record.tdata = new byte[input.readInt()];
+		input.readFully(record.tdata);
+		record.sdata = new byte[input.readInt()];
+		input.readFully(record.sdata);
+		int nHeadsigns = input.readInt();
+		if (nHeadsigns > 0) {
+			record.headsigns = new ArrayList<>(nHeadsigns);
+			for (int i = 0; i < nHeadsigns; i++) {
+				byte[] bytes = new byte[input.readInt()];
+				input.readFully(bytes);
+				record.headsigns.add(new String(bytes, StandardCharsets.UTF_8));
+			}
+		}
+		return record;
+	}
+
+	private void closeIfNeeded() {
+		if (closed)
+			return;
+		listPacker.close();
+		try {
+			output.close();
+			if (loadingReader != null)
+				loadingReader.close();
+			mappedFile = new MappedFile(file);
+		} catch (IOException e) {
+			throw new RuntimeException("Cannot map stop times file", e);
+		}
+		// The mapping stays valid once the file is deleted (except on Windows)
+		if (!file.delete())
+			file.deleteOnExit();
+		if (verbose) {
+			long nStopTimes = listPacker.itemsCount();
+			long nTrips = listPacker.groupCount();
+			System.out.println(String.format(Locale.US,
+					"Mapped %d stop times of %d trips, %d kB on disk (%.2f bytes per stop time)",
+					nStopTimes, nTrips, fileSize / 1024,
+					fileSize * 1. / nStopTimes));
+		}
+		closed = true;
+	}
+}
@@ -4,19 +4,21 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
+import com.mecatran.gtfsvtor.utils.GenericInterner;
+
 public class PackedStopPattern {
 
 	private byte[] sdata;
 	private List<String> headsigns;
-	private int hashcode;
+	private long hash64;
 
 	public PackedStopPattern(byte[] sdata, List<String> headsigns) {
 		this.sdata = sdata;
 		this.headsigns = headsigns == null || headsigns.isEmpty() ? null
 				: headsigns;
-		this.hashcode = Arrays.hashCode(sdata);
+		this.hash64 = GenericInterner.hash64(sdata);
 		if (this.headsigns != null)
-			this.hashcode += 31 * headsigns.hashCode();
+			this.hash64 += 31 * headsigns.hashCode();
 	}
 
 	public byte[] getSData() {
@@ -33,7 +35,7 @@ public class PackedStopPattern {
 
 	@Override
 	public int hashCode() {
-		return hashcode;
+		return (int) (hash64 ^ (hash64 >>> 32));
 	}
 
 	@Override
@@ -45,7 +47,7 @@ public class PackedStopPattern {
 		if (!(another instanceof PackedStopPattern))
 			return false;
 		PackedStopPattern other = (PackedStopPattern) another;
-		return Arrays.equals(sdata, other.sdata)
+		return hash64 == other.hash64 && Arrays.equals(sdata, other.sdata)
 				&& Objects.equals(headsigns, other.headsigns);
 	}
 }
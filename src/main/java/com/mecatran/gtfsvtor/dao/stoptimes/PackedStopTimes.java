@@ -12,8 +12,7 @@ import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTimepoint;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
-import com.mecatran.gtfsvtor.model.GtfsTripStopSequence;
-import com.mecatran.gtfsvtor.model.impl.SimpleGtfsStopTime;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 
 /**
  * A list of stop times packed into two dedicated structures (times delta and
@@ -44,7 +43,25 @@ public class PackedStopTimes {
 	// TODO Remove
 	private static final boolean _DEBUG = false;
 
+	/**
+	 * The encoded (but not interned) data of a list of stop times.
+	 */
+	static class Encoded {
+		int baseTime;
+		byte[] tdata;
+		byte[] sdata;
+		List<String> headsigns;
+	}
+
 	public PackedStopTimes(Context context, List<GtfsStopTime> stopTimes) {
+		Encoded encoded = encode(context, stopTimes);
+		this.baseTime = encoded.baseTime;
+		this.timeData = context.intern(new PackedTimePattern(encoded.tdata));
+		this.stopData = context.intern(
+				new PackedStopPattern(encoded.sdata, encoded.headsigns));
+	}
+
+	static Encoded encode(Context context, List<GtfsStopTime> stopTimes) {
 		if (stopTimes.isEmpty())
 			throw new IllegalArgumentException("Cannot encode an empty list");
 
@@ -54,7 +71,7 @@ public class PackedStopTimes {
 		byte[] sdata = new byte[n * (1 + 1 + 3 + 4 + 2 + 4) + 3];
 		Map<String, Integer> stopHeadsignIndexes = new HashMap<>();
 		List<String> headsigns = new ArrayList<>();
-		baseTime = Integer.MAX_VALUE; // ie, null
+		int baseTime = Integer.MAX_VALUE; // ie, null
 		int lastTime = 0;
 		int lastStopIndex = 0;
 		int lastStopSeq = 0;
@@ -469,408 +486,62 @@ public class PackedStopTimes {
 				headsigns.set(i, headsigns.get(i).intern());
 			}
 		}
-		this.timeData = context.intern(new PackedTimePattern(tdata2));
-		this.stopData = context
-				.intern(new PackedStopPattern(sdata2, headsigns));
+		Encoded encoded = new Encoded();
+		encoded.baseTime = baseTime;
+		encoded.tdata = tdata2;
+		encoded.sdata = sdata2;
+		encoded.headsigns = headsigns;
+		return encoded;
 	}
 
 	public List<GtfsStopTime> getStopTimes(GtfsTrip.Id tripId,
 			Context context) {
+		return decode(tripId, context, baseTime, timeData.getTData(),
+				stopData.getSData(), 0, stopData.getHeadsigns());
+	}
 
-		byte[] tdata = timeData.getTData();
-		byte[] sdata = stopData.getSData();
-		List<String> headsigns = stopData.getHeadsigns();
-		int ti = 0, si = 0;
-
-		int n = (sdata[si++] & 0xFF);
-		if (n == 0) {
-			n = ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
-		}
-
-		List<GtfsStopTime> stopTimes = new ArrayList<>(n);
-		int time = baseTime;
-		int stopIndex = 0;
-		int stopSeq = 0;
-		int headsignIndex = Integer.MAX_VALUE;
-
-		if (_DEBUG) {
-			System.out.println(String.format("Unpacking: n=%d %02x %02x", n,
-					tdata[0], tdata[1]));
-		}
-
-		for (int i = 0; i < n; i++) {
-			GtfsStopTime.Builder builder = new SimpleGtfsStopTime.Builder()
-					.withTripId(tripId);
-
-			// Load T data (time deltas)
-			int firstTByte = (tdata[ti++] & 0xFF);
-			int arvFlag = (firstTByte & 0b1111);
-			int dptFlag = (firstTByte >>> 4) & 0b111;
-			if (_DEBUG) {
-				System.out.println(
-						String.format("%03d: First T byte: %02x arv=%d dpt=%d",
-								i, firstTByte, arvFlag, dptFlag));
-			}
-
-			// Load arrival
-			int arvBytes = 0;
-			int arvOff = 0;
-			int arvMult = 1;
-			int arvVal = 0;
-			switch (arvFlag) {
-			case 0:
-				// Null
-				break;
-			case 1:
-				// Zero
-				arvVal = 0;
-				break;
-			case 2:
-				// Negative values
-				arvBytes = 3;
-				arvMult = -1;
-				break;
-			case 3:
-			case 4:
-			case 5:
-			case 6:
-			case 7:
-			case 8:
-			case 9:
-			case 10:
-				// Minutes constant
-				arvVal = arvFlag;
-				arvOff = -2;
-				arvMult = 60;
-				break;
-			case 11:
-				// Minutes on 1 byte
-				arvBytes = 1;
-				arvOff = 9;
-				arvMult = 60;
-				break;
-			case 12:
-				// Minutes on 2 bytes
-				arvBytes = 2;
-				arvOff = 256 + 9;
-				arvMult = 60;
-				break;
-			case 13:
-				// Seconds on 1 byte
-				arvBytes = 1;
-				arvOff = 1;
-				break;
-			case 14:
-				// Seconds on 2 bytes
-				arvBytes = 2;
-				arvOff = 256 + 1;
-				break;
-			case 15:
-				// Seconds on 3 bytes
-				arvBytes = 3;
-				arvOff = 65536 + 256 + 1;
-				break;
-			default:
-				throw new RuntimeException("Invalid arvFlag: " + arvFlag);
-			}
-			switch (arvBytes) {
-			case 0:
-				break;
-			case 1:
-				arvVal = (tdata[ti++] & 0xFF);
-				break;
-			case 2:
-				arvVal = ((tdata[ti++] & 0xFF) << 8) | (tdata[ti++] & 0xFF);
-				break;
-			case 3:
-				arvVal = ((tdata[ti++] & 0xFF) << 16)
-						| ((tdata[ti++] & 0xFF) << 8) | (tdata[ti++] & 0xFF);
-				break;
-			default:
-				throw new RuntimeException("Invalid arvBytes: " + arvBytes);
-			}
-			arvVal += arvOff;
-			arvVal *= arvMult;
-			if (arvFlag != 0) {
-				time += arvVal;
-				builder.withArrivalTime(GtfsLogicalTime.getTime(time));
-			}
-
-			// Load departure
-			int dptBytes = 0;
-			int dptOff = 0;
-			int dptMult = 1;
-			int dptVal = 0;
-			switch (dptFlag) {
-			case 0:
-				// Null
-				break;
-			case 1:
-				// Zero
-				break;
-			case 2:
-				// Negative values
-				dptBytes = 3;
-				dptMult = -1;
-				break;
-			case 3:
-				// Minutes on 1 byte
-				dptBytes = 1;
-				dptOff = 1;
-				dptMult = 60;
-				break;
-			case 4:
-				// Minutes on 2 bytes
-				dptBytes = 2;
-				dptOff = 256 + 1;
-				dptMult = 60;
-				break;
-			case 5:
-				// Seconds on 1 byte
-				dptBytes = 1;
-				dptOff = 1;
-				break;
-			case 6:
-				// Seconds on 2 bytes
-				dptBytes = 2;
-				dptOff = 256 + 1;
-				break;
-			case 7:
-				// Seconds on 3 bytes
-				dptBytes = 3;
-				dptOff = 65536 + 256 + 1;
-				break;
-			default:
-				throw new RuntimeException("Invalid dptFlag: " + dptFlag);
-			}
-			switch (dptBytes) {
-			case 0:
-				// Keep depVal as it is
-				break;
-			case 1:
-				dptVal = (tdata[ti++] & 0xFF);
-				break;
-			case 2:
-				dptVal = ((tdata[ti++] & 0xFF) << 8) | (tdata[ti++] & 0xFF);
-				break;
-			case 3:
-				dptVal = ((tdata[ti++] & 0xFF) << 16)
-						| ((tdata[ti++] & 0xFF) << 8) | (tdata[ti++] & 0xFF);
-				break;
-			default:
-				throw new RuntimeException("Invalid dptBytes: " + dptBytes);
-			}
-			dptVal += dptOff;
-			dptVal *= dptMult;
-			if (dptFlag != 0) {
-				time += dptVal;
-				builder.withDepartureTime(GtfsLogicalTime.getTime(time));
-			}
-
-			// Load SDATA (stop pattern)
-
-			// First byte - pickup/dropoff/timepoint/shapedist
-			// b0-b2: dropoff
-			// b3-b5: pickup
-			// b6-b7: timepoint
-			int firstSByte = sdata[si++] & 0xFF;
-			int drpVal = (firstSByte & 0b111);
-			int pckVal = (firstSByte >> 3) & 0b111;
-			int tptVal = (firstSByte >> 6) & 0b11;
-			if (_DEBUG) {
-				System.out.println(String.format(
-						"%3d: First S byte: %02x drp=%d pck=%d tpt=%d", i,
-						firstSByte, drpVal, pckVal, tptVal));
-			}
-			if (drpVal != 0b111)
-				builder.withDropoffType(GtfsDropoffType.fromValue(drpVal));
-			if (pckVal != 0b111)
-				builder.withPickupType(GtfsPickupType.fromValue(pckVal));
-			if (tptVal != 0b11)
-				builder.withTimepoint(GtfsTimepoint.fromValue(tptVal));
-
-			// Second byte - stop ID index/seq delta/headsign index
-			// b0-b2: stop index delta flag (0..7)
-			// b3-b4: stop sequence delta flag (0..3)
-			// b5-b6: stop headsign index flag (0..3)
-			// b7: shape dist flag
-			int secondSByte = sdata[si++] & 0xFF;
-			int stopFlag = (secondSByte & 0b111);
-			int seqFlag = (secondSByte >> 3) & 0b11;
-			int sthFlag = (secondSByte >> 5) & 0b11;
-			int sdtFlag = (secondSByte >> 7) & 0b1;
-
-			// Stop flag
-			int stopBytes = 0;
-			int stopVal = 0;
-			int stopOff = 0;
-			switch (stopFlag) {
-			case 0:
-				// Null
-				break;
-			case 1:
-				// 0
-				break;
-			case 2:
-				// 1
-				stopVal = 1;
-				break;
-			case 3:
-				// 2
-				stopVal = 2;
-				break;
-			case 4:
-				// -1
-				stopVal = -1;
-				break;
-			case 5:
-				// 1 byte
-				stopBytes = 1;
-				stopOff = -128;
-				break;
-			case 6:
-				// 2 bytes
-				stopBytes = 2;
-				stopOff = -32768;
-				break;
-			case 7:
-				// 3 bytes
-				stopBytes = 3;
-				stopOff = -8388608;
-				break;
-			default:
-				throw new RuntimeException("Invalid stopFlag: " + stopFlag);
-			}
-			switch (stopBytes) {
-			case 0:
-				// Keep stopVal as it is
-				break;
-			case 1:
-				stopVal = (sdata[si++] & 0xFF);
-				break;
-			case 2:
-				stopVal = ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
-				break;
-			case 3:
-				stopVal = ((sdata[si++] & 0xFF) << 16)
-						| ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
-				break;
-			default:
-				throw new RuntimeException("Invalid stopBytes: " + stopBytes);
-			}
-			if (stopFlag == 0) {
-				// Stop is null
-			} else {
-				stopVal += stopOff;
-				stopIndex += stopVal;
-				GtfsStop.Id stopId = context.getStopIdIndex(stopIndex);
-				builder.withStopId(stopId);
-			}
-
-			// Seq flag
-			int seqVal = 0;
-			int seqBytes = 0;
-			int seqOff = 0;
-			switch (seqFlag) {
-			case 0:
-				seqVal = 1;
-				break;
-			case 1:
-				seqBytes = 1;
-				break;
-			case 2:
-				seqBytes = 2;
-				seqOff = 256;
-				break;
-			case 3:
-				seqBytes = 4;
-				break;
-			default:
-				throw new RuntimeException("Invalid seqFlag: " + seqFlag);
-			}
-			switch (seqBytes) {
-			case 0:
-				// Keep seqVal as it is
-				break;
-			case 1:
-				seqVal = (sdata[si++] & 0xFF);
-				break;
-			case 2:
-				seqVal = ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
-				break;
-			case 4:
-				seqVal = ((sdata[si++] & 0xFF) << 24)
-						| ((sdata[si++] & 0xFF) << 16)
-						| ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
-				break;
-			default:
-				throw new RuntimeException("Invalid seqBytes: " + seqBytes);
-			}
-			seqVal += seqOff;
-			stopSeq += seqVal;
-			builder.withStopSequence(
-					GtfsTripStopSequence.fromSequence(stopSeq));
-
-			// Stop headsign
-			int sthVal = 0;
-			int sthBytes = 0;
-			int sthOff = 0;
-			switch (sthFlag) {
-			case 0:
-				// Null
-				break;
-			case 1:
-				// Same as last
-				sthVal = headsignIndex;
-				break;
-			case 2:
-				// 1 byte
-				sthBytes = 1;
-				break;
-			case 3:
-				// 2 bytes
-				sthBytes = 2;
-				sthOff = 256;
-				break;
-			default:
-				throw new RuntimeException("Invalid sthFlag: " + sthFlag);
-			}
-			switch (sthBytes) {
-			case 0:
-				break;
-			case 1:
-				sthVal = (sdata[si++] & 0xFF);
-				break;
-			case 2:
-				sthVal = ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
-				break;
-			default:
-				throw new RuntimeException("Invalid sthBytes: " + sthBytes);
-			}
-			sthVal += sthOff;
-			if (sthFlag != 0) {
-				headsignIndex = sthVal;
-				builder.withStopHeadsign(headsigns.get(sthVal));
-			}
-
-			// Load shape dist
-			if (sdtFlag == 1) {
-				int sdtRaw = ((sdata[si++] & 0xFF) << 24)
-						| ((sdata[si++] & 0xFF) << 16)
-						| ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
-				float sdt = Float.intBitsToFloat(sdtRaw);
-				builder.withShapeDistTraveled((double) sdt);
-			}
+	public StopTimeCursor getCursor(GtfsTrip.Id tripId, Context context) {
+		return new PackedStopTimesCursor(tripId, context, baseTime,
+				timeData.getTData(), stopData.getSData(), 0,
+				stopData.getHeadsigns());
+	}
 
-			// Build and add stop time
-			GtfsStopTime stopTime = builder.build();
-			stopTimes.add(stopTime);
-		}
+	/**
+	 * @param sdataStart The start index of the stop data in sdata, which can
+	 *        be stored after some other data.
+	 */
+	static List<GtfsStopTime> decode(GtfsTrip.Id tripId, Context context,
+			int baseTime, byte[] tdata, byte[] sdata, int sdataStart,
+			List<String> headsigns) {
+		return decode(new PackedStopTimesCursor(tripId, context, baseTime,
+				tdata, sdata, sdataStart, headsigns));
+	}
 
+	static List<GtfsStopTime> decode(StopTimeCursor cursor) {
+		List<GtfsStopTime> stopTimes = new ArrayList<>(cursor.size());
+		while (cursor.next())
+			stopTimes.add(cursor.getStopTime());
 		return stopTimes;
 	}
 
 	public Object getStopPatternKey() {
 		return stopData;
 	}
+
+	public Object getTimePatternKey() {
+		return timeData;
+	}
+
+	/**
+	 * @return The first defined time, or StopTimeCursor.NO_VALUE if none.
+	 */
+	public int getBaseTime() {
+		return toBaseTime(baseTime);
+	}
+
+	static int toBaseTime(int encodedBaseTime) {
+		// Encoded as MAX_VALUE if there is no time at all
+		return encodedBaseTime == Integer.MAX_VALUE ? StopTimeCursor.NO_VALUE
+				: encodedBaseTime;
+	}
 }
@@ -0,0 +1,531 @@
+package com.mecatran.gtfsvtor.dao.stoptimes;
+
+import java.util.List;
+
+import com.mecatran.gtfsvtor.model.GtfsDropoffType;
+import com.mecatran.gtfsvtor.model.GtfsLogicalTime;
+import com.mecatran.gtfsvtor.model.GtfsPickupType;
+import com.mecatran.gtfsvtor.model.GtfsStop;
+import com.mecatran.gtfsvtor.model.GtfsStopTime;
+import com.mecatran.gtfsvtor.model.GtfsTimepoint;
+import com.mecatran.gtfsvtor.model.GtfsTrip;
+import com.mecatran.gtfsvtor.model.GtfsTripStopSequence;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
+import com.mecatran.gtfsvtor.model.impl.SimpleGtfsStopTime;
+
+/**
+ * A cursor decoding packed stop times (see PackedStopTimes for the encoding)
+ * one row at a time, in place. This is the only decoder of the packed format:
+ * PackedStopTimes.decode() builds stop time objects from it.
+ */
+class PackedStopTimesCursor implements StopTimeCursor {
+
+	private GtfsTrip.Id tripId;
+	private PackedStopTimes.Context context;
+	private int baseTime;
+	private byte[] tdata;
+	private byte[] sdata;
+	private int sdataStart;
+	private List<String> headsigns;
+	private int n;
+
+	/* Decoding state */
+	private int ti, si;
+	private int position;
+	private int time;
+	private int stopIndex;
+	private int stopSeq;
+	private int headsignIndex;
+
+	/* Current row */
+	private int arrival;
+	private int departure;
+	private boolean hasStop;
+	private int dropoff;
+	private int pickup;
+	private int timepoint;
+	private boolean hasHeadsign;
+	private boolean hasShapeDist;
+	private float shapeDist;
+
+	/**
+	 * @param sdataStart The start index of the stop data in sdata, which can
+	 *        be stored after some other data.
+	 */
+	PackedStopTimesCursor(GtfsTrip.Id tripId, PackedStopTimes.Context context,
+			int baseTime, byte[] tdata, byte[] sdata, int sdataStart,
+			List<String> headsigns) {
+		this.tripId = tripId;
+		this.context = context;
+		this.baseTime = baseTime;
+		this.tdata = tdata;
+		this.sdata = sdata;
+		this.sdataStart = sdataStart;
+		this.headsigns = headsigns;
+		reset();
+	}
+
+	@Override
+	public int size() {
+		return n;
+	}
+
+	@Override
+	public void reset() {
+		ti = 0;
+		si = sdataStart;
+		n = (sdata[si++] & 0xFF);
+		if (n == 0) {
+			n = ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
+		}
+		position = -1;
+		time = baseTime;
+		stopIndex = 0;
+		stopSeq = 0;
+		headsignIndex = Integer.MAX_VALUE;
+	}
+
+	@Override
+	public int getPosition() {
+		return position;
+	}
+
+	@Override
+	public boolean next() {
+		if (position + 1 >= n) {
+			position = n;
+			return false;
+		}
+		position++;
+		decodeTimes();
+		decodeStop();
+		return true;
+	}
+
+	private void decodeTimes() {
+		// First byte
+		// b0-b3: arrival time delta flag (0..15)
+		// b4-b6: departure time delta flag (0..7)
+		int firstTByte = (tdata[ti++] & 0xFF);
+		int arvFlag = (firstTByte & 0b1111);
+		int dptFlag = (firstTByte >>> 4) & 0b111;
+
+		// Load arrival
+		int arvBytes = 0;
+		int arvOff = 0;
+		int arvMult = 1;
+		int arvVal = 0;
+		switch (arvFlag) {
+		case 0:
+			// Null
+			break;
+		case 1:
+			// Zero
+			arvVal = 0;
+			break;
+		case 2:
+			// Negative values
+			arvBytes = 3;
+			arvMult = -1;
+			break;
+		case 3:
+		case 4:
+		case 5:
+		case 6:
+		case 7:
+		case 8:
+		case 9:
+		case 10:
+			// Minutes constant
+			arvVal = arvFlag;
+			arvOff = -2;
+			arvMult = 60;
+			break;
+		case 11:
+			// Minutes on 1 byte
+			arvBytes = 1;
+			arvOff = 9;
+			arvMult = 60;
+			break;
+		case 12:
+			// Minutes on 2 bytes
+			arvBytes = 2;
+			arvOff = 256 + 9;
+			arvMult = 60;
+			break;
+		case 13:
+			// Seconds on 1 byte
+			arvBytes = 1;
+			arvOff = 1;
+			break;
+		case 14:
+			// Seconds on 2 bytes
+			arvBytes = 2;
+			arvOff = 256 + 1;
+			break;
+		case 15:
+			// Seconds on 3 bytes
+			arvBytes = 3;
+			arvOff = 65536 + 256 + 1;
+			break;
+		default:
+			throw new RuntimeException("Invalid arvFlag: " + arvFlag);
+		}
+		switch (arvBytes) {
+		case 0:
+			break;
+		case 1:
+			arvVal = (tdata[ti++] & 0xFF);
+			break;
+		case 2:
+			arvVal = ((tdata[ti++] & 0xFF) << 8) | (tdata[ti++] & 0xFF);
+			break;
+		case 3:
+			arvVal = ((tdata[ti++] & 0xFF) << 16) | ((tdata[ti++] & 0xFF) << 8)
+					| (tdata[ti++] & 0xFF);
+			break;
+		default:
+			throw new RuntimeException("Invalid arvBytes: " + arvBytes);
+		}
+		arvVal += arvOff;
+		arvVal *= arvMult;
+		if (arvFlag != 0) {
+			time += arvVal;
+			arrival = time;
+		} else {
+			arrival = NO_VALUE;
+		}
+
+		// Load departure
+		int dptBytes = 0;
+		int dptOff = 0;
+		int dptMult = 1;
+		int dptVal = 0;
+		switch (dptFlag) {
+		case 0:
+			// Null
+			break;
+		case 1:
+			// Zero
+			break;
+		case 2:
+			// Negative values
+			dptBytes = 3;
+			dptMult = -1;
+			break;
+		case 3:
+			// Minutes on 1 byte
+			dptBytes = 1;
+			dptOff = 1;
+			dptMult = 60;
+			break;
+		case 4:
+			// Minutes on 2 bytes
+			dptBytes = 2;
+			dptOff = 256 + 1;
+			dptMult = 60;
+			break;
+		case 5:
+			// Seconds on 1 byte
+			dptBytes = 1;
+			dptOff = 1;
+			break;
+		case 6:
+			// Seconds on 2 bytes
+			dptBytes = 2;
+			dptOff = 256 + 1;
+			break;
+		case 7:
+			// Seconds on 3 bytes
+			dptBytes = 3;
+			dptOff = 65536 + 256 + 1;
+			break;
+		default:
+			throw new RuntimeException("Invalid dptFlag: " + dptFlag);
+		}
+		switch (dptBytes) {
+		case 0:
+			// Keep depVal as it is
+			break;
+		case 1:
+			dptVal = (tdata[ti++] & 0xFF);
+			break;
+		case 2:
+			dptVal = ((tdata[ti++] & 0xFF) << 8) | (tdata[ti++] & 0xFF);
+			break;
+		case 3:
+			dptVal = ((tdata[ti++] & 0xFF) << 16) | ((tdata[ti++] & 0xFF) << 8)
+					| (tdata[ti++] & 0xFF);
+			break;
+		default:
+			throw new RuntimeException("Invalid dptBytes: " + dptBytes);
+		}
+		dptVal += dptOff;
+		dptVal *= dptMult;
+		if (dptFlag != 0) {
+			time += dptVal;
+			departure = time;
+		} else {
+			departure = NO_VALUE;
+		}
+	}
+
+	private void decodeStop() {
+		// First byte - pickup/dropoff/timepoint/shapedist
+		// b0-b2: dropoff
+		// b3-b5: pickup
+		// b6-b7: timepoint
+		int firstSByte = sdata[si++] & 0xFF;
+		int drpVal = (firstSByte & 0b111);
+		int pckVal = (firstSByte >> 3) & 0b111;
+		int tptVal = (firstSByte >> 6) & 0b11;
+		dropoff = drpVal == 0b111 ? -1 : drpVal;
+		pickup = pckVal == 0b111 ? -1 : pckVal;
+		timepoint = tptVal == 0b11 ? -1 : tptVal;
+
+		// Second byte - stop ID index/seq delta/headsign index
+		// b0-b2: stop index delta flag (0..7)
+		// b3-b4: stop sequence delta flag (0..3)
+		// b5-b6: stop headsign index flag (0..3)
+		// b7: shape dist flag
+		int secondSByte = sdata[si++] & 0xFF;
+		int stopFlag = (secondSByte & 0b111);
+		int seqFlag = (secondSByte >> 3) & 0b11;
+		int sthFlag = (secondSByte >> 5) & 0b11;
+		int sdtFlag = (secondSByte >> 7) & 0b1;
+
+		// Stop flag
+		int stopBytes = 0;
+		int stopVal = 0;
+		int stopOff = 0;
+		switch (stopFlag) {
+		case 0:
+			// Null
+			break;
+		case 1:
+			// 0
+			break;
+		case 2:
+			// 1
+			stopVal = 1;
+			break;
+		case 3:
+			// 2
+			stopVal = 2;
+			break;
+		case 4:
+			// -1
+			stopVal = -1;
+			break;
+		case 5:
+			// 1 byte
+			stopBytes = 1;
+			stopOff = -128;
+			break;
+		case 6:
+			// 2 bytes
+			stopBytes = 2;
+			stopOff = -32768;
+			break;
+		case 7:
+			// 3 bytes
+			stopBytes = 3;
+			stopOff = -8388608;
+			break;
+		default:
+			throw new RuntimeException("Invalid stopFlag: " + stopFlag);
+		}
+		switch (stopBytes) {
+		case 0:
+			// Keep stopVal as it is
+			break;
+		case 1:
+			stopVal = (sdata[si++] & 0xFF);
+			break;
+		case 2:
+			stopVal = ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
+			break;
+		case 3:
+			stopVal = ((sdata[si++] & 0xFF) << 16) | ((sdata[si++] & 0xFF) << 8)
+					| (sdata[si++] & 0xFF);
+			break;
+		default:
+			throw new RuntimeException("Invalid stopBytes: " + stopBytes);
+		}
+		hasStop = stopFlag != 0;
+		if (hasStop) {
+			stopVal += stopOff;
+			stopIndex += stopVal;
+		}
+
+		// Seq flag
+		int seqVal = 0;
+		int seqBytes = 0;
+		int seqOff = 0;
+		switch (seqFlag) {
+		case 0:
+			seqVal = 1;
+			break;
+		case 1:
+			seqBytes = 1;
+			break;
+		case 2:
+			seqBytes = 2;
+			seqOff = 256;
+			break;
+		case 3:
+			seqBytes = 4;
+			break;
+		default:
+			throw new RuntimeException("Invalid seqFlag: " + seqFlag);
+		}
+		switch (seqBytes) {
+		case 0:
+			// Keep seqVal as it is
+			break;
+		case 1:
+			seqVal = (sdata[si++] & 0xFF);
+			break;
+		case 2:
+			seqVal = ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
+			break;
+		case 4:
+			seqVal = ((sdata[si++] & 0xFF) << 24) | ((sdata[si++] & 0xFF) << 16)
+					| ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
+			break;
+		default:
+			throw new RuntimeException("Invalid seqBytes: " + seqBytes);
+		}
+		seqVal += seqOff;
+		stopSeq += seqVal;
+
+		// Stop headsign
+		int sthVal = 0;
+		int sthBytes = 0;
+		int sthOff = 0;
+		switch (sthFlag) {
+		case 0:
+			// Null
+			break;
+		case 1:
+			// Same as last
+			sthVal = headsignIndex;
+			break;
+		case 2:
+			// 1 byte
+			sthBytes = 1;
+			break;
+		case 3:
+			// 2 bytes
+			sthBytes = 2;
+			sthOff = 256;
+			break;
+		default:
+			throw new RuntimeException("Invalid sthFlag: " + sthFlag);
+		}
+		switch (sthBytes) {
+		case 0:
+			break;
+		case 1:
+			sthVal = (sdata[si++] & 0xFF);
+			break;
+		case 2:
+			sthVal = ((sdata[si++] & 0xFF) << 8) | (sdata[si++] & 0xFF);
+			break;
+		default:
+			throw new RuntimeException("Invalid sthBytes: " + sthBytes);
+		}
+		sthVal += sthOff;
+		hasHeadsign = sthFlag != 0;
+		if (hasHeadsign)
+			headsignIndex = sthVal;
+
+		// Load shape dist
+		hasShapeDist = sdtFlag == 1;
+		if (hasShapeDist) {
+			int sdtRaw = ((sdata[si++] & 0xFF) << 24)
+					| ((sdata[si++] & 0xFF) << 16) | ((sdata[si++] & 0xFF) << 8)
+					| (sdata[si++] & 0xFF);
+			shapeDist = Float.intBitsToFloat(sdtRaw);
+		}
+	}
+
+	@Override
+	public int getArrivalSecond() {
+		return arrival;
+	}
+
+	@Override
+	public int getDepartureSecond() {
+		return departure;
+	}
+
+	@Override
+	public GtfsStop.Id getStopId() {
+		return hasStop ? context.getStopIdIndex(stopIndex) : null;
+	}
+
+	@Override
+	public int getStopIndex() {
+		return hasStop ? stopIndex : 0;
+	}
+
+	@Override
+	public int getStopSequence() {
+		return stopSeq;
+	}
+
+	@Override
+	public String getStopHeadsign() {
+		return hasHeadsign ? headsigns.get(headsignIndex) : null;
+	}
+
+	@Override
+	public int getPickupTypeCode() {
+		return pickup;
+	}
+
+	@Override
+	public int getDropoffTypeCode() {
+		return dropoff;
+	}
+
+	@Override
+	public int getTimepointCode() {
+		return timepoint;
+	}
+
+	@Override
+	public boolean hasShapeDistTraveled() {
+		return hasShapeDist;
+	}
+
+	@Override
+	public double getShapeDistTraveled() {
+		return shapeDist;
+	}
+
+	@Override
+	public GtfsStopTime getStopTime() {
+		GtfsStopTime.Builder builder = new SimpleGtfsStopTime.Builder()
+				.withTripId(tripId);
+		if (arrival != NO_VALUE)
+			builder.withArrivalTime(GtfsLogicalTime.getTime(arrival));
+		if (departure != NO_VALUE)
+			builder.withDepartureTime(GtfsLogicalTime.getTime(departure));
+		if (dropoff >= 0)
+			builder.withDropoffType(GtfsDropoffType.fromValue(dropoff));
+		if (pickup >= 0)
+			builder.withPickupType(GtfsPickupType.fromValue(pickup));
+		if (timepoint >= 0)
+			builder.withTimepoint(GtfsTimepoint.fromValue(timepoint));
+		if (hasStop)
+			builder.withStopId(context.getStopIdIndex(stopIndex));
+		builder.withStopSequence(GtfsTripStopSequence.fromSequence(stopSeq));
+		if (hasHeadsign)
+			builder.withStopHeadsign(headsigns.get(headsignIndex));
+		if (hasShapeDist)
+			builder.withShapeDistTraveled((double) shapeDist);
+		return builder.build();
+	}
+}
@@ -2,14 +2,16 @@ package com.mecatran.gtfsvtor.dao.stoptimes;
 
 import java.util.Arrays;
 
+import com.mecatran.gtfsvtor.utils.GenericInterner;
+
 public class PackedTimePattern {
 
 	private byte[] tdata;
-	private int hashcode;
+	private long hash64;
 
 	public PackedTimePattern(byte[] tdata) {
 		this.tdata = tdata;
-		this.hashcode = Arrays.hashCode(tdata);
+		this.hash64 = GenericInterner.hash64(tdata);
 	}
 
 	public byte[] getTData() {
@@ -22,7 +24,7 @@ public class PackedTimePattern {
 
 	@Override
 	public int hashCode() {
-		return hashcode;
+		return (int) (hash64 ^ (hash64 >>> 32));
 	}
 
 	@Override
@@ -34,6 +36,6 @@ public class PackedTimePattern {
 		if (!(another instanceof PackedTimePattern))
 			return false;
 		PackedTimePattern other = (PackedTimePattern) another;
-		return Arrays.equals(tdata, other.tdata);
+		return hash64 == other.hash64 && Arrays.equals(tdata, other.tdata);
 	}
 }
@@ -13,6 +13,7 @@ import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.GtfsTrip.Id;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 import com.mecatran.gtfsvtor.utils.GenericInterner;
 
 public class PackingStopTimesDao implements StopTimesDao,
@@ -25,10 +26,8 @@ public class PackingStopTimesDao implements StopTimesDao,
 
 	public static class DefaultContext implements PackedStopTimes.Context {
 		private GtfsIdIndexer.GtfsStopIdIndexer stopIdIndexer;
-		private GenericInterner<PackedTimePattern> tDataInterner = new GenericInterner<>(
-				true);
-		private GenericInterner<PackedStopPattern> sDataInterner = new GenericInterner<>(
-				true);
+		private GenericInterner<PackedTimePattern> tDataInterner = new GenericInterner<>();
+		private GenericInterner<PackedStopPattern> sDataInterner = new GenericInterner<>();
 
 		public DefaultContext(GtfsIdIndexer.GtfsStopIdIndexer stopIdIndexer) {
 			this.stopIdIndexer = stopIdIndexer;
@@ -72,6 +71,15 @@ public class PackingStopTimesDao implements StopTimesDao,
 		return this;
 	}
 
+	/**
+	 * @param packingThreads Number of threads to pack trips with, 1 to pack
+	 *        them in the loading thread.
+	 */
+	public PackingStopTimesDao withPackingThreads(int packingThreads) {
+		this.listPacker.withPackingThreads(packingThreads);
+		return this;
+	}
+
 	public PackingStopTimesDao withInterleavingOverflowCallback(
 			Function<Integer, Boolean> callback) {
 		this.listPacker.withInterleavingOverflowCallback(callback);
@@ -113,9 +121,42 @@ public class PackingStopTimesDao implements StopTimesDao,
 			public Object loadStopPatternKey() {
 				return pst == null ? null : pst.getStopPatternKey();
 			}
+
+			@Override
+			public Object getTimePatternKey() {
+				return pst == null ? null : pst.getTimePatternKey();
+			}
+
+			@Override
+			public int getBaseTime() {
+				return pst == null ? StopTimeCursor.NO_VALUE
+						: pst.getBaseTime();
+			}
+
+			@Override
+			public StopTimeCursor loadStopTimeCursor() {
+				return pst == null ? StopTimeCursor.of(Collections.emptyList())
+						: pst.getCursor(tripId, context);
+			}
 		};
 	}
 
+	/**
+	 * @return The number of distinct time patterns of all trips.
+	 */
+	public int getTimePatternsCount() {
+		closeIfNeeded();
+		return context.tDataInterner.size();
+	}
+
+	/**
+	 * @return The number of distinct stop patterns of all trips.
+	 */
+	public int getStopPatternsCount() {
+		closeIfNeeded();
+		return context.sDataInterner.size();
+	}
+
 	public Stream<GtfsStopTime> getStopTimes() {
 		closeIfNeeded();
 		return listPacker.entries().flatMap(
@@ -139,6 +180,12 @@ public class PackingStopTimesDao implements StopTimesDao,
 		return w.getStopTimes(tripId, context);
 	}
 
+	@Override
+	public boolean isThreadSafe() {
+		// The stop ID indexer and the interners are thread-safe
+		return true;
+	}
+
 	/**
 	 * @param enable True to enable assert mode: that is check if the
 	 *        packed/unpacked stop times are the same as the original ones
@@ -149,10 +196,34 @@ public class PackingStopTimesDao implements StopTimesDao,
 		PackingStopTimesDao.assertListener = assertListener;
 	}
 
+	/**
+	 * @return A crude estimate of the memory used by the packed data.
+	 */
+	long estimateMemoryBytes() {
+		long tripBytes = listPacker.groupCount() * (3 * 8L);
+		long tDataBytes = context.tDataInterner.all()
+				.mapToInt(ptp -> ptp.getTDataSize()).sum();
+		long sDataBytes = context.sDataInterner.all()
+				.mapToInt(ptp -> ptp.getSDataSize()
+						+ (ptp.getHeadsigns() == null ? 0
+								: ptp.getHeadsigns().stream()
+										.mapToInt(s -> s.length()).sum()))
+				.sum();
+		return tripBytes + tDataBytes + sDataBytes;
+	}
+
 	private void closeIfNeeded() {
 		if (closed)
 			return;
 		listPacker.close();
+		/*
+		 * No more packing, lookups only. Merging delta chunks repacks trips,
+		 * so keep only the patterns of the final packed trips.
+		 */
+		context.tDataInterner.freeze(listPacker.entries()
+				.map(e -> (PackedTimePattern) e.getValue().getTimePatternKey()));
+		context.sDataInterner.freeze(listPacker.entries()
+				.map(e -> (PackedStopPattern) e.getValue().getStopPatternKey()));
 		if (verbose) {
 			long nStopTimes = listPacker.itemsCount();
 			long nTrips = listPacker.groupCount();
@@ -191,6 +262,16 @@ public class PackingStopTimesDao implements StopTimesDao,
 							sDataBytes * 1. / nStopPatterns));
 			System.out.println(
 					"---------------------+------------+------------+-----------");
+			System.out.println(String.format(Locale.US,
+					"Interned patterns: %d time hits / %d misses, %d stop hits / %d misses",
+					context.tDataInterner.getHits(),
+					context.tDataInterner.getMisses(),
+					context.sDataInterner.getHits(),
+					context.sDataInterner.getMisses()));
+			if (listPacker.deltaChunksCount() > 0) {
+				System.out.println("Merged " + listPacker.deltaChunksCount()
+						+ " delta chunks of interleaved stop times.");
+			}
 		}
 		closed = true;
 	}
@@ -2,9 +2,11 @@ package com.mecatran.gtfsvtor.dao.stoptimes;
 
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.function.BiConsumer;
 
 import com.mecatran.gtfsvtor.dao.packing.GtfsIdIndexer;
 import com.mecatran.gtfsvtor.dao.packing.GtfsIdIndexer.GtfsStopIdIndexer;
@@ -108,6 +110,40 @@ public class PackingUnsortedStopTimesDao implements StopTimesDao {
 		};
 	}
 
+	/**
+	 * Remove all trips one at a time, giving their stop times to the consumer
+	 * before removal. This allows another DAO to take over the content,
+	 * without having both DAO full in memory at the same time. The DAO is
+	 * empty afterwards.
+	 */
+	public void drainTrips(
+			BiConsumer<GtfsTrip.Id, List<GtfsStopTime>> consumer) {
+		closeIfNeeded();
+		Iterator<Map.Entry<GtfsTrip.Id, PackedUnsortedStopTimes>> iterator = stopTimes
+				.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<GtfsTrip.Id, PackedUnsortedStopTimes> kv = iterator
+					.next();
+			consumer.accept(kv.getKey(),
+					kv.getValue().getStopTimes(kv.getKey(), context));
+			iterator.remove();
+		}
+		nStopTimes = 0;
+	}
+
+	/**
+	 * @return A crude estimate of the memory used by the packed data.
+	 */
+	long estimateMemoryBytes() {
+		// 2 ints and 4 pointers, assume JVM does not pack 32 bits ints
+		long tripBytes = stopTimes.size() * (6 * 8L);
+		long tDataBytes = context.tDataInterner.all()
+				.mapToInt(psp -> psp.getDataSize()).sum();
+		long sDataBytes = context.sDataInterner.all()
+				.mapToInt(psp -> psp.getDataSize()).sum();
+		return tripBytes + tDataBytes + sDataBytes;
+	}
+
 	private void closeIfNeeded() {
 		if (closed)
 			return;
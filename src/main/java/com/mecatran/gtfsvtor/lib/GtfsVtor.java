@@ -9,14 +9,20 @@ import java.util.Optional;
 import com.mecatran.gtfsvtor.dao.AppendableDao;
 import com.mecatran.gtfsvtor.dao.IndexedReadOnlyDao;
 import com.mecatran.gtfsvtor.dao.inmemory.InMemoryDao;
+import com.mecatran.gtfsvtor.lib.GtfsVtorOptions.CsvParser;
 import com.mecatran.gtfsvtor.lib.GtfsVtorOptions.NamedDataIO;
+import com.mecatran.gtfsvtor.loader.DataTable;
 import com.mecatran.gtfsvtor.loader.NamedInputStreamSource;
 import com.mecatran.gtfsvtor.loader.NamedTabularDataSource;
+import com.mecatran.gtfsvtor.loader.impl.ApacheCommonsCsvDataTable;
 import com.mecatran.gtfsvtor.loader.impl.CsvDataSource;
 import com.mecatran.gtfsvtor.loader.impl.DefaultDataLoaderContext;
 import com.mecatran.gtfsvtor.loader.impl.GtfsDataLoader;
 import com.mecatran.gtfsvtor.loader.impl.SourceInfoDataReloader;
+import com.mecatran.gtfsvtor.loader.impl.UnivocityCsvDataTable;
+import com.mecatran.gtfsvtor.loader.impl.Utf8CsvDataTable;
 import com.mecatran.gtfsvtor.loader.schema.DefaultGtfsTableSchema;
+import com.mecatran.gtfsvtor.model.InterningContext;
 import com.mecatran.gtfsvtor.reporting.ReportFormatter;
 import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.ReviewReport;
@@ -24,9 +30,8 @@ import com.mecatran.gtfsvtor.reporting.html.HtmlReportFormatter;
 import com.mecatran.gtfsvtor.reporting.impl.InMemoryReportLog;
 import com.mecatran.gtfsvtor.reporting.json.JsonReportFormatter;
 import com.mecatran.gtfsvtor.validation.DaoValidator;
-import com.mecatran.gtfsvtor.validation.DefaultDaoValidator;
 import com.mecatran.gtfsvtor.validation.DefaultStreamingValidator;
-import com.mecatran.gtfsvtor.validation.DefaultTripTimesValidator;
+import com.mecatran.gtfsvtor.validation.DefaultValidationScheduler;
 import com.mecatran.gtfsvtor.validation.impl.DefaultDaoValidatorContext;
 import com.mecatran.gtfsvtor.validation.impl.DefaultValidatorConfig;
 
@@ -43,6 +48,14 @@ public class GtfsVtor {
 	}
 
 	public void validate() throws IOException {
+		// IDs and values are interned for the duration of the run only
+		try (InterningContext interningContext = InterningContext.open()) {
+			validate(interningContext);
+		}
+	}
+
+	private void validate(InterningContext interningContext)
+			throws IOException {
 
 		// TODO Properly configure all this
 
@@ -73,22 +86,28 @@ public class GtfsVtor {
 
 		// Create source
 		NamedInputStreamSource inputStreamSource = NamedInputStreamSource
-				.autoGuess(options.getGtfsFile(), reportSink);
+				.autoGuess(options.getGtfsFile(), reportSink,
+						options.isMemoryMapped());
 		if (inputStreamSource != null) {
 			NamedTabularDataSource dataSource = new CsvDataSource(
-					inputStreamSource);
+					inputStreamSource).setDataTableFactory(
+							getDataTableFactory(options.getCsvParser()));
 
 			// Register dataSource as source info factory
 			imReport.withSourceInfoFactory(
 					new SourceInfoDataReloader(dataSource)
-							.withVerbose(options.isVerbose()));
+							.withVerbose(options.isVerbose())
+							.withNumThreads(options.getNumThreads()));
 
 			// Create the DAO
 			InMemoryDao imDao = new InMemoryDao(options.getStopTimesDaoMode(),
 					options.getMaxStopTimeInterleaving(),
 					options.getShapePointsDaoMode(),
 					options.getMaxShapePointsInterleaving())
-							.withVerbose(options.isVerbose());
+							.withVerbose(options.isVerbose())
+							.withRepackStopTimes(options.isRepackStopTimes())
+							.withPackingThreads(options.getNumThreads())
+							.withIndexingThreads(options.getNumThreads());
 			this.woDao = imDao;
 			this.roDao = imDao;
 
@@ -96,7 +115,8 @@ public class GtfsVtor {
 			DefaultStreamingValidator defStreamingValidator = new DefaultStreamingValidator(
 					config);
 			DefaultGtfsTableSchema tableSchema = new DefaultGtfsTableSchema();
-			GtfsDataLoader loader = new GtfsDataLoader(dataSource, tableSchema);
+			GtfsDataLoader loader = new GtfsDataLoader(dataSource, tableSchema)
+					.withNumThreads(options.getNumThreads());
 
 			long start = System.currentTimeMillis();
 			loader.load(new DefaultDataLoaderContext(woDao, roDao, reportSink,
@@ -109,19 +129,18 @@ public class GtfsVtor {
 						+ (end - start) + "ms. Used memory: ~"
 						+ (runtime.totalMemory() - runtime.freeMemory())
 								/ (1024 * 1024)
-						+ "Mb");
+						+ "Mb, interned values: " + interningContext.size());
 			}
 
 			// Dao and trip time validate
 			DaoValidator.Context context = new DefaultDaoValidatorContext(imDao,
 					imReport, config);
-			DefaultDaoValidator daoValidator = new DefaultDaoValidator(config)
-					.withVerbose(options.isVerbose())
-					.withNumThreads(options.getNumThreads());
-			daoValidator.validate(context);
-			DefaultTripTimesValidator tripTimesValidator = new DefaultTripTimesValidator(
-					config).withVerbose(options.isVerbose());
-			tripTimesValidator.scanValidate(context);
+			DefaultValidationScheduler validationScheduler = new DefaultValidationScheduler(
+					config).withVerbose(options.isVerbose())
+							.withNumThreads(options.getNumThreads())
+							.withDurationStatsFile(
+									options.getValidatorStatsFile());
+			validationScheduler.validate(context);
 		}
 
 		// Generate report
@@ -130,6 +149,18 @@ public class GtfsVtor {
 		}
 	}
 
+	private DataTable.Factory getDataTableFactory(CsvParser csvParser) {
+		switch (csvParser) {
+		case UTF8:
+			return Utf8CsvDataTable.factory();
+		case APACHE_COMMONS:
+			return ApacheCommonsCsvDataTable.factory();
+		case UNIVOCITY:
+		default:
+			return UnivocityCsvDataTable.factory();
+		}
+	}
+
 	private List<ReportFormatter> buildReportFormatters() throws IOException {
 		List<ReportFormatter> formatters = new ArrayList<>();
 
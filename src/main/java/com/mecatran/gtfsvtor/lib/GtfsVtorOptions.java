@@ -20,13 +20,17 @@ public interface GtfsVtorOptions {
 	}
 
 	public enum StopTimesDaoMode {
-		AUTO, PACKED, UNSORTED
+		AUTO, PACKED, UNSORTED, OFF_HEAP, DISK, EXTERNAL_SORT
 	}
 
 	public enum ShapePointsDaoMode {
 		AUTO, PACKED, UNSORTED
 	}
 
+	public enum CsvParser {
+		UTF8, UNIVOCITY, APACHE_COMMONS
+	}
+
 	public default boolean isVerbose() {
 		return false;
 	}
@@ -55,6 +59,14 @@ public interface GtfsVtorOptions {
 		return 1;
 	}
 
+	public default Optional<String> getValidatorStatsFile() {
+		return Optional.empty();
+	}
+
+	public default boolean isMemoryMapped() {
+		return false;
+	}
+
 	public default int getMaxStopTimeInterleaving() {
 		return 100;
 	}
@@ -67,10 +79,18 @@ public interface GtfsVtorOptions {
 		return StopTimesDaoMode.AUTO;
 	}
 
+	public default boolean isRepackStopTimes() {
+		return false;
+	}
+
 	public default ShapePointsDaoMode getShapePointsDaoMode() {
 		return ShapePointsDaoMode.AUTO;
 	}
 
+	public default CsvParser getCsvParser() {
+		return CsvParser.UNIVOCITY;
+	}
+
 	public default FormattingOptions getFormattingOptions() {
 		return new FormattingOptions(SpeedUnit.MPS);
 	}
@@ -15,4 +15,16 @@ public interface DataRow {
 	public DataObjectSourceRef getSourceRef();
 
 	public int getRecordCount();
+
+	/**
+	 * @param field Field name of the value.
+	 * @param value The (non-null) value returned by getString(field).
+	 * @return True if the value contains replacement characters (malformed
+	 *         input) or NUL characters. Implementations can override this if
+	 *         they can detect this in a cheaper way.
+	 */
+	public default boolean hasInvalidEncoding(String field, String value) {
+		// value.contains("\uFFFD")
+		return value.chars().anyMatch(c -> c == 0xFFFD || c == 0);
+	}
 }
@@ -60,8 +60,7 @@ public class DataRowConverter {
 			Requiredness requiredness) {
 		String ret = row.getString(field);
 		if (ret != null) {
-			// ret.contains("\uFFFD")
-			if (ret.chars().anyMatch(c -> c == 0xFFFD || c == 0)) {
+			if (row.hasInvalidEncoding(field, ret)) {
 				reportSink.report(new InvalidEncodingError(row.getSourceRef(),
 						field, ret), row.getSourceInfo());
 			}
@@ -6,6 +6,7 @@ import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
 
 import com.mecatran.gtfsvtor.loader.impl.DataObjectSourceInfoImpl;
 import com.mecatran.gtfsvtor.model.DataObjectSourceRef;
@@ -44,4 +45,23 @@ public interface DataTable extends Closeable, Iterable<DataRow> {
 	public Charset getCharset();
 
 	public boolean isEmpty();
+
+	/**
+	 * @return The line index of this table, filled while iterating over the
+	 *         rows, if this table supports it.
+	 */
+	public default Optional<LineIndex> getLineIndex() {
+		return Optional.empty();
+	}
+
+	/**
+	 * Move forward to a checkpoint of the line index of a previous read of the
+	 * same input, the next row returned being the one starting at the
+	 * checkpoint. Only supported if getLineIndex() is supported. When
+	 * iterating, must be called between next() and the following hasNext().
+	 */
+	public default void seek(LineIndex.Checkpoint checkpoint)
+			throws IOException {
+		throw new UnsupportedOperationException("seek()");
+	}
 }
@@ -0,0 +1,87 @@
+package com.mecatran.gtfsvtor.loader;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * A sparse index of line numbers to byte offsets in a table input, built
+ * while reading the table for the first time. Each checkpoint is the start of
+ * a record, so parsing can be resumed from it later on, without having to
+ * parse the whole table from the start again.
+ *
+ * Checkpoints must be added in increasing line number order.
+ */
+public class LineIndex {
+
+	public static final int DEFAULT_INTERVAL = 4096;
+
+	public static class Checkpoint {
+		private long lineNumber;
+		private long byteOffset;
+
+		public Checkpoint(long lineNumber, long byteOffset) {
+			this.lineNumber = lineNumber;
+			this.byteOffset = byteOffset;
+		}
+
+		public long getLineNumber() {
+			return lineNumber;
+		}
+
+		public long getByteOffset() {
+			return byteOffset;
+		}
+
+		@Override
+		public String toString() {
+			return "Checkpoint{line=" + lineNumber + ",offset=" + byteOffset
+					+ "}";
+		}
+	}
+
+	private int interval;
+	private long[] lineNumbers = new long[16];
+	private long[] byteOffsets = new long[16];
+	private int size = 0;
+
+	public LineIndex() {
+		this(DEFAULT_INTERVAL);
+	}
+
+	public LineIndex(int interval) {
+		this.interval = interval;
+	}
+
+	/**
+	 * @return The minimum number of lines between two checkpoints.
+	 */
+	public int getInterval() {
+		return interval;
+	}
+
+	public synchronized void addCheckpoint(long lineNumber, long byteOffset) {
+		if (size == lineNumbers.length) {
+			lineNumbers = Arrays.copyOf(lineNumbers, size * 2);
+			byteOffsets = Arrays.copyOf(byteOffsets, size * 2);
+		}
+		lineNumbers[size] = lineNumber;
+		byteOffsets[size] = byteOffset;
+		size++;
+	}
+
+	/**
+	 * @return The last checkpoint at or before the given line number, if any.
+	 */
+	public synchronized Optional<Checkpoint> getCheckpoint(long lineNumber) {
+		int i = Arrays.binarySearch(lineNumbers, 0, size, lineNumber);
+		if (i < 0)
+			i = -i - 2; // Insertion point - 1
+		if (i < 0)
+			return Optional.empty();
+		return Optional.of(new Checkpoint(lineNumbers[i], byteOffsets[i]));
+	}
+
+	public synchronized int size() {
+		return size;
+	}
+}
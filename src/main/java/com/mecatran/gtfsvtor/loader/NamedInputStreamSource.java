@@ -18,6 +18,14 @@ public interface NamedInputStreamSource {
 
 	public static NamedInputStreamSource autoGuess(String path,
 			ReportSink reportSink) {
+		return autoGuess(path, reportSink, false);
+	}
+
+	/**
+	 * @param memoryMapped Memory-map the table files, for directories only.
+	 */
+	public static NamedInputStreamSource autoGuess(String path,
+			ReportSink reportSink, boolean memoryMapped) {
 		File file = new File(path);
 		if (!file.exists()) {
 			reportSink.report(
@@ -25,7 +33,8 @@ public interface NamedInputStreamSource {
 			return null;
 		}
 		if (file.isDirectory()) {
-			return new FileSystemDataSource(file);
+			return new FileSystemDataSource(file)
+					.withMemoryMapped(memoryMapped);
 		} else {
 			try {
 				return new ZippedInputStreamSource(file);
@@ -2,10 +2,20 @@ package com.mecatran.gtfsvtor.loader;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Optional;
 
 public interface NamedTabularDataSource {
 
 	public DataTable getDataTable(String tableName) throws IOException;
 
+	/**
+	 * @return The line index of a table already read, if any. This index can
+	 *         be used to seek directly to a given line of a table opened
+	 *         later on.
+	 */
+	public default Optional<LineIndex> getLineIndex(String tableName) {
+		return Optional.empty();
+	}
+
 	public Collection<String> getUnreadEntries();
 }
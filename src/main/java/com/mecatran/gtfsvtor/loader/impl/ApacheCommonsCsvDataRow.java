@@ -13,11 +13,13 @@ public class ApacheCommonsCsvDataRow implements DataRow {
 
 	private CSVRecord record;
 	private ApacheCommonsCsvDataTable csvDataTable;
+	private long lineNumber;
 
 	public ApacheCommonsCsvDataRow(ApacheCommonsCsvDataTable csvDataTable,
-			CSVRecord record) {
+			CSVRecord record, long lineNumber) {
 		this.csvDataTable = csvDataTable;
 		this.record = record;
+		this.lineNumber = lineNumber;
 	}
 
 	@Override
@@ -46,13 +48,13 @@ public class ApacheCommonsCsvDataRow implements DataRow {
 			}
 		}
 		return new DataObjectSourceInfoImpl(csvDataTable.getTableSourceInfo(),
-				fields, csvDataTable.getCurrentLineNumber());
+				fields, lineNumber);
 	}
 
 	@Override
 	public DataObjectSourceRef getSourceRef() {
 		return new DataObjectSourceRef(csvDataTable.getTableName(),
-				csvDataTable.getCurrentLineNumber());
+				lineNumber);
 	}
 
 	@Override
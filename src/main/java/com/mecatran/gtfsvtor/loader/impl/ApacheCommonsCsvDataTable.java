@@ -101,7 +101,8 @@ public class ApacheCommonsCsvDataTable implements DataTable {
 							csvParser.getHeaderMap().size()));
 				}
 				return new ApacheCommonsCsvDataRow(
-						ApacheCommonsCsvDataTable.this, record);
+						ApacheCommonsCsvDataTable.this, record,
+						csvParser.getCurrentLineNumber());
 			}
 
 			@Override
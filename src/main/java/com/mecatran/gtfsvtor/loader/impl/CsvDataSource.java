@@ -4,8 +4,12 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.mecatran.gtfsvtor.loader.DataTable;
+import com.mecatran.gtfsvtor.loader.LineIndex;
 import com.mecatran.gtfsvtor.loader.NamedInputStreamSource;
 import com.mecatran.gtfsvtor.loader.NamedTabularDataSource;
 
@@ -14,6 +18,7 @@ public class CsvDataSource implements NamedTabularDataSource {
 	private NamedInputStreamSource inputStreamSource;
 	private DataTable.Factory dataTableFactory = UnivocityCsvDataTable
 			.factory();
+	private Map<String, LineIndex> lineIndexes = new ConcurrentHashMap<>();
 
 	public CsvDataSource(NamedInputStreamSource inputStreamSource) {
 		this.inputStreamSource = inputStreamSource;
@@ -30,7 +35,19 @@ public class CsvDataSource implements NamedTabularDataSource {
 		if (inputStreamSource == null)
 			throw new IOException("Missing input");
 		InputStream in = inputStreamSource.getInputStream(tableName);
-		return dataTableFactory.createDataTable(tableName, in);
+		DataTable table = dataTableFactory.createDataTable(tableName, in);
+		/*
+		 * Keep the line index of the first read of each table (the complete
+		 * load), to be used by the subsequent reads.
+		 */
+		table.getLineIndex()
+				.ifPresent(index -> lineIndexes.putIfAbsent(tableName, index));
+		return table;
+	}
+
+	@Override
+	public Optional<LineIndex> getLineIndex(String tableName) {
+		return Optional.ofNullable(lineIndexes.get(tableName));
 	}
 
 	@Override
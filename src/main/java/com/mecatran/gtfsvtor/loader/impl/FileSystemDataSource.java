@@ -2,6 +2,7 @@ package com.mecatran.gtfsvtor.loader.impl;
 
 import java.io.File;
 import java.io.FileInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
@@ -9,26 +10,60 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.mecatran.gtfsvtor.loader.NamedInputStreamSource;
 
 public class FileSystemDataSource implements NamedInputStreamSource {
 
 	private File baseDir;
-	private Set<String> readTables = new HashSet<>();
+	private Set<String> readTables = Collections
+			.synchronizedSet(new HashSet<>());
+	private boolean memoryMapped = false;
+	private Map<String, MappedFile> mappedFiles = new ConcurrentHashMap<>();
 
 	public FileSystemDataSource(File baseDir) {
 		this.baseDir = baseDir;
 	}
 
+	/**
+	 * @param memoryMapped If true, map each table file in memory the first
+	 *        time it is read. The same mapping is then used for all subsequent
+	 *        reads (source info reloading), which do not need any more system
+	 *        calls nor copies.
+	 */
+	public FileSystemDataSource withMemoryMapped(boolean memoryMapped) {
+		this.memoryMapped = memoryMapped;
+		return this;
+	}
+
 	@Override
 	public InputStream getInputStream(String tableName) throws IOException {
 		readTables.add(tableName);
 		File tableFile = new File(baseDir, tableName);
+		if (memoryMapped) {
+			return getMappedFile(tableName, tableFile).getInputStream();
+		}
 		return new FileInputStream(tableFile);
 	}
 
+	private MappedFile getMappedFile(String tableName, File tableFile)
+			throws IOException {
+		MappedFile mappedFile = mappedFiles.get(tableName);
+		if (mappedFile == null) {
+			if (!tableFile.isFile())
+				throw new FileNotFoundException(tableFile.getPath());
+			mappedFile = new MappedFile(tableFile);
+			MappedFile previous = mappedFiles.putIfAbsent(tableName,
+					mappedFile);
+			if (previous != null)
+				mappedFile = previous;
+		}
+		return mappedFile;
+	}
+
 	@Override
 	public Collection<String> getUnreadEntries() {
 		List<String> ret = new ArrayList<>();
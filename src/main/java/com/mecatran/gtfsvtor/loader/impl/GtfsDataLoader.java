@@ -2,9 +2,18 @@ package com.mecatran.gtfsvtor.loader.impl;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import com.mecatran.gtfsvtor.dao.AppendableDao;
 import com.mecatran.gtfsvtor.dao.AppendableDao.SourceContext;
@@ -38,6 +47,7 @@ public class GtfsDataLoader implements DataLoader {
 
 	private NamedTabularDataSource dataSource;
 	private GtfsTableSchema tableSchema;
+	private int numThreads = 1;
 
 	public GtfsDataLoader(NamedTabularDataSource dataSource,
 			GtfsTableSchema tableSchema) {
@@ -45,19 +55,86 @@ public class GtfsDataLoader implements DataLoader {
 		this.tableSchema = tableSchema;
 	}
 
+	/**
+	 * @param numThreads If more than one, independent tables are loaded
+	 *        concurrently, and each table is loaded in pipelined mode: the CSV
+	 *        rows are tokenized in a separate thread while the loading thread
+	 *        converts, validates and stores them, in the same order.
+	 */
+	public GtfsDataLoader withNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+		return this;
+	}
+
 	@Override
 	public void load(DataLoader.Context context) {
 
-		Set<String> loadedTables = new HashSet<>();
-		for (GtfsTableDescriptor tableDescriptor : tableSchema
-				.getTableDescriptors()) {
-			loadTable(context, tableDescriptor, loadedTables);
+		Set<String> loadedTables = ConcurrentHashMap.newKeySet();
+		if (numThreads > 1) {
+			concurrentLoad(context, loadedTables);
+		} else {
+			for (GtfsTableDescriptor tableDescriptor : tableSchema
+					.getTableDescriptors()) {
+				loadTable(context, tableDescriptor, loadedTables);
+			}
 		}
 
 		reportUnreadTables(context.getReportSink());
 		context.getAppendableDao().close();
 	}
 
+	/*
+	 * Load each table as soon as all the tables it depends on are loaded, so
+	 * that independent tables (for example shapes and stops, or stop times and
+	 * pathways) are loaded concurrently. Each table is still loaded by a single
+	 * thread, in order.
+	 */
+	private void concurrentLoad(DataLoader.Context context,
+			Set<String> loadedTables) {
+		List<GtfsTableDescriptor> tableDescriptors = tableSchema
+				.getTableDescriptors();
+		Set<Class<? extends GtfsObject<?>>> schemaClasses = tableDescriptors
+				.stream().map(GtfsTableDescriptor::getObjectClass)
+				.collect(Collectors.toSet());
+		Map<Class<? extends GtfsObject<?>>, CompletableFuture<Void>> tableLoads = new HashMap<>();
+		ExecutorService exec = Executors.newFixedThreadPool(numThreads);
+		try {
+			for (GtfsTableDescriptor tableDescriptor : tableDescriptors) {
+				List<CompletableFuture<Void>> dependencies = new ArrayList<>();
+				for (Class<? extends GtfsObject<?>> dependency : tableDescriptor
+						.getDependencies()) {
+					CompletableFuture<Void> dependencyLoad = tableLoads
+							.get(dependency);
+					if (dependencyLoad != null) {
+						dependencies.add(dependencyLoad);
+					} else if (schemaClasses.contains(dependency)) {
+						throw new IllegalArgumentException("Table "
+								+ tableDescriptor.getTableName()
+								+ " depends on " + dependency.getSimpleName()
+								+ ", which should be listed before in the schema");
+					}
+					// Dependency not in schema: nothing to wait for
+				}
+				CompletableFuture<Void> tableLoad = CompletableFuture
+						.allOf(dependencies
+								.toArray(new CompletableFuture<?>[0]))
+						.thenRunAsync(() -> loadTable(context, tableDescriptor,
+								loadedTables), exec);
+				tableLoads.put(tableDescriptor.getObjectClass(), tableLoad);
+			}
+			CompletableFuture
+					.allOf(tableLoads.values()
+							.toArray(new CompletableFuture<?>[0]))
+					.join();
+		} catch (CompletionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw e;
+		} finally {
+			exec.shutdown();
+		}
+	}
+
 	private void loadTable(DataLoader.Context context,
 			GtfsTableDescriptor tableDescriptor, Set<String> loadedTables) {
 		String tableName = tableDescriptor.getTableName();
@@ -69,11 +146,34 @@ public class GtfsDataLoader implements DataLoader {
 		loadedTables.add(tableName); // This is a bit hackish
 
 		DataLoaderContext sourceContext = new DataLoaderContext(table, context);
+		PipelinedDataRowReader pipelinedReader = numThreads > 1
+				? new PipelinedDataRowReader(table)
+				: null;
+		Iterable<DataRow> rows = pipelinedReader != null ? pipelinedReader
+				: table;
+		int nObjects = 0;
+		try {
+			nObjects = loadRows(context, tableDescriptor, rows, sourceContext);
+		} finally {
+			if (pipelinedReader != null)
+				pipelinedReader.close();
+		}
+		System.out.println("Loaded  " + tableName + ": " + nObjects + " rows.");
+		checkColumns(context.getReportSink(), table,
+				tableDescriptor.getMandatoryColumns(nObjects),
+				tableDescriptor.getDeprecatedColumns(nObjects));
+		closeTable(table, context.getReportSink(),
+				tableDescriptor.getDeprecatedColumns(nObjects));
+	}
+
+	private int loadRows(DataLoader.Context context,
+			GtfsTableDescriptor tableDescriptor, Iterable<DataRow> rows,
+			DataLoaderContext sourceContext) {
+		String tableName = tableDescriptor.getTableName();
 		Class<? extends GtfsObject<?>> objClass = tableDescriptor
 				.getObjectClass();
-
 		int nObjects = 0;
-		for (DataRow row : table) {
+		for (DataRow row : rows) {
 			DataRowConverter erow = new DataRowConverter(row,
 					context.getReportSink());
 			sourceContext.setAndValidateRow(row);
@@ -86,12 +186,7 @@ public class GtfsDataLoader implements DataLoader {
 						"Loading " + tableName + ": " + nObjects + "...\r");
 			nObjects++;
 		}
-		System.out.println("Loaded  " + tableName + ": " + nObjects + " rows.");
-		checkColumns(context.getReportSink(), table,
-				tableDescriptor.getMandatoryColumns(nObjects),
-				tableDescriptor.getDeprecatedColumns(nObjects));
-		closeTable(table, context.getReportSink(),
-				tableDescriptor.getDeprecatedColumns(nObjects));
+		return nObjects;
 	}
 
 	private DataTable getDataTable(String tableName, boolean mandatory,
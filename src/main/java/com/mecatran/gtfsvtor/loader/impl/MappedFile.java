@@ -0,0 +1,118 @@
+package com.mecatran.gtfsvtor.loader.impl;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only memory mapping of a whole file. A single mapping is limited to
+ * 2GB, so larger files are mapped in several consecutive chunks.
+ *
+ * The mapping is done once; any number of independent input streams can then
+ * be opened on it, possibly concurrently.
+ */
+public class MappedFile {
+
+	private static final int DEFAULT_CHUNK_SIZE = 1 << 30;
+
+	private MappedByteBuffer[] chunks;
+	private long length;
+	private int chunkSize;
+
+	public MappedFile(File file) throws IOException {
+		this(file, DEFAULT_CHUNK_SIZE);
+	}
+
+	MappedFile(File file, int chunkSize) throws IOException {
+		this.chunkSize = chunkSize;
+		try (FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.READ)) {
+			length = channel.size();
+			int nChunks = (int) ((length + chunkSize - 1) / chunkSize);
+			chunks = new MappedByteBuffer[nChunks];
+			for (int i = 0; i < nChunks; i++) {
+				long offset = (long) i * chunkSize;
+				chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+						Math.min(chunkSize, length - offset));
+			}
+		}
+	}
+
+	public long length() {
+		return length;
+	}
+
+	public InputStream getInputStream() {
+		return getInputStream(0L);
+	}
+
+	/**
+	 * @param offset The byte offset to start reading from.
+	 */
+	public InputStream getInputStream(long offset) {
+		return new MappedInputStream(offset);
+	}
+
+	private class MappedInputStream extends InputStream {
+
+		private int chunkIndex;
+		private ByteBuffer current;
+
+		private MappedInputStream(long offset) {
+			chunkIndex = (int) (offset / chunkSize);
+			if (chunkIndex < chunks.length) {
+				// Duplicate to have our own position
+				current = chunks[chunkIndex].duplicate();
+				current.position((int) (offset % chunkSize));
+			}
+		}
+
+		private boolean nextChunk() {
+			while (current != null && !current.hasRemaining()) {
+				chunkIndex++;
+				current = chunkIndex < chunks.length
+						? chunks[chunkIndex].duplicate()
+						: null;
+			}
+			return current != null;
+		}
+
+		@Override
+		public int read() {
+			if (!nextChunk())
+				return -1;
+			return current.get() & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0)
+				return 0;
+			if (!nextChunk())
+				return -1;
+			int n = Math.min(len, current.remaining());
+			current.get(b, off, n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) {
+			long skipped = 0;
+			while (skipped < n && nextChunk()) {
+				int k = (int) Math.min(n - skipped, current.remaining());
+				current.position(current.position() + k);
+				skipped += k;
+			}
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return current == null ? 0 : current.remaining();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package com.mecatran.gtfsvtor.loader.impl;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import com.mecatran.gtfsvtor.loader.DataRow;
+import com.mecatran.gtfsvtor.loader.DataTable;
+
+/**
+ * Read rows of a data table in a separate thread, handing them over in bounded
+ * batches to the consuming thread. This allows the CSV tokenizing to run in
+ * parallel with the conversion, validation and storage of the rows.
+ *
+ * Rows are delivered in the same order as in the table. Each row captures its
+ * own line number when parsed, so the source references are the same as when
+ * iterating directly on the table.
+ */
+public class PipelinedDataRowReader implements Iterable<DataRow>, Closeable {
+
+	private static final int DEFAULT_BATCH_SIZE = 1000;
+	private static final int DEFAULT_MAX_PENDING_BATCHES = 16;
+
+	private static class Batch {
+		private List<DataRow> rows;
+		private RuntimeException error;
+
+		private Batch(List<DataRow> rows, RuntimeException error) {
+			this.rows = rows;
+			this.error = error;
+		}
+	}
+
+	// Marker of the end of the table (empty list)
+	private static final Batch END = new Batch(Collections.emptyList(), null);
+
+	private DataTable table;
+	private int batchSize;
+	private BlockingQueue<Batch> queue;
+	private Thread readerThread;
+	private volatile boolean closed = false;
+
+	public PipelinedDataRowReader(DataTable table) {
+		this(table, DEFAULT_BATCH_SIZE, DEFAULT_MAX_PENDING_BATCHES);
+	}
+
+	public PipelinedDataRowReader(DataTable table, int batchSize,
+			int maxPendingBatches) {
+		this.table = table;
+		this.batchSize = batchSize;
+		this.queue = new ArrayBlockingQueue<>(maxPendingBatches);
+	}
+
+	@Override
+	public Iterator<DataRow> iterator() {
+		if (readerThread != null)
+			throw new IllegalStateException(
+					"Pipelined rows can only be iterated once");
+		readerThread = new Thread(this::readRows,
+				"gtfsvtor-reader-" + table.getTableName());
+		readerThread.setDaemon(true);
+		readerThread.start();
+
+		return new Iterator<DataRow>() {
+
+			private Iterator<DataRow> current = Collections.emptyIterator();
+			private boolean ended = false;
+
+			@Override
+			public boolean hasNext() {
+				while (!current.hasNext() && !ended) {
+					Batch batch;
+					try {
+						batch = queue.take();
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+						throw new RuntimeException(e);
+					}
+					if (batch.error != null)
+						throw batch.error;
+					if (batch == END)
+						ended = true;
+					current = batch.rows.iterator();
+				}
+				return current.hasNext();
+			}
+
+			@Override
+			public DataRow next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return current.next();
+			}
+		};
+	}
+
+	private void readRows() {
+		try {
+			List<DataRow> rows = new ArrayList<>(batchSize);
+			for (DataRow row : table) {
+				if (closed)
+					return;
+				rows.add(row);
+				if (rows.size() >= batchSize) {
+					queue.put(new Batch(rows, null));
+					rows = new ArrayList<>(batchSize);
+				}
+			}
+			if (!rows.isEmpty())
+				queue.put(new Batch(rows, null));
+			queue.put(END);
+		} catch (InterruptedException e) {
+			// Closed while waiting for the consumer, stop here
+		} catch (RuntimeException | Error e) {
+			// Hand over the error, otherwise the consumer would wait forever
+			try {
+				queue.put(new Batch(null, e instanceof RuntimeException
+						? (RuntimeException) e
+						: new RuntimeException(e)));
+			} catch (InterruptedException e2) {
+				// Closed
+			}
+		}
+	}
+
+	/**
+	 * Wait for the reader thread to terminate, stopping it if the rows have
+	 * not all been consumed. The table itself is not closed, as it is still
+	 * needed afterwards (headers, unread columns...).
+	 */
+	@Override
+	public void close() {
+		if (readerThread == null)
+			return;
+		closed = true;
+		readerThread.interrupt();
+		try {
+			readerThread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
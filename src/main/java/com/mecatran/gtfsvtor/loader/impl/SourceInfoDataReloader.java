@@ -1,28 +1,62 @@
 package com.mecatran.gtfsvtor.loader.impl;
 
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import com.google.common.collect.HashMultimap;
 import com.google.common.collect.SetMultimap;
 import com.mecatran.gtfsvtor.loader.DataObjectSourceInfo;
 import com.mecatran.gtfsvtor.loader.DataRow;
 import com.mecatran.gtfsvtor.loader.DataTable;
+import com.mecatran.gtfsvtor.loader.LineIndex;
 import com.mecatran.gtfsvtor.loader.NamedTabularDataSource;
 import com.mecatran.gtfsvtor.model.DataObjectSourceRef;
 import com.mecatran.gtfsvtor.reporting.SourceInfoFactory;
 
+/**
+ * Source info factory reloading source info from the data source when
+ * needed. Source info are only kept for the source refs in use, and the
+ * number of source info kept in memory is bounded: evicted ones are reloaded
+ * again if needed later on.
+ *
+ * Prefetched refs are loaded in chunks no larger than this bound, in the order
+ * they are given, the next chunk being loaded when the first ref missing from
+ * memory is requested. Each table is thus scanned once per chunk, and not once
+ * per ref, even if there are more refs than the bound.
+ */
 public class SourceInfoDataReloader implements SourceInfoFactory {
 
+	private static final int DEFAULT_MAX_SOURCE_INFOS = 1000000;
+
 	private NamedTabularDataSource dataSource;
 	private boolean verbose = false;
+	private int numThreads = 1;
+	private int maxSourceInfos = DEFAULT_MAX_SOURCE_INFOS;
 
-	private Map<DataObjectSourceRef, DataObjectSourceInfo> sourceInfos = new HashMap<>();
+	private Map<DataObjectSourceRef, DataObjectSourceInfo> sourceInfos = newSourceInfoMap(
+			DEFAULT_MAX_SOURCE_INFOS);
+	/* Prefetched refs not requested yet, in the expected request order */
+	private Deque<DataObjectSourceRef> prefetchQueue = new ArrayDeque<>();
+	private Set<DataObjectSourceRef> prefetchQueued = new HashSet<>();
+	private Set<DataObjectSourceRef> knownSourceRefs = new HashSet<>();
 	private SetMultimap<String, DataObjectSourceRef> sourceRefsToLoad = HashMultimap
 			.create();
 
@@ -35,67 +69,217 @@ public class SourceInfoDataReloader implements SourceInfoFactory {
 		return this;
 	}
 
+	/**
+	 * @param numThreads Max number of tables to reload concurrently, when
+	 *        prefetching.
+	 */
+	public SourceInfoDataReloader withNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+		return this;
+	}
+
+	/**
+	 * @param maxSourceInfos Max number of source info to keep in memory. The
+	 *        least recently used ones are evicted first.
+	 */
+	public synchronized SourceInfoDataReloader withMaxSourceInfos(
+			int maxSourceInfos) {
+		Map<DataObjectSourceRef, DataObjectSourceInfo> newSourceInfos = newSourceInfoMap(
+				maxSourceInfos);
+		newSourceInfos.putAll(sourceInfos);
+		sourceInfos = newSourceInfos;
+		this.maxSourceInfos = maxSourceInfos;
+		return this;
+	}
+
+	private static Map<DataObjectSourceRef, DataObjectSourceInfo> newSourceInfoMap(
+			int maxSize) {
+		return new LinkedHashMap<DataObjectSourceRef, DataObjectSourceInfo>(
+				16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(
+					Map.Entry<DataObjectSourceRef, DataObjectSourceInfo> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/*
+	 * Issues can be reported from several threads at once (concurrent loading
+	 * or validation), hence the synchronization.
+	 */
 	@Override
-	public Optional<DataObjectSourceInfo> getSourceInfo(
+	public synchronized Optional<DataObjectSourceInfo> getSourceInfo(
 			DataObjectSourceRef ref) {
-		if (!sourceRefsToLoad.get(ref.getTableName()).isEmpty()) {
-			reloadSourceInfos(ref.getTableName());
-		}
 		DataObjectSourceInfo info = sourceInfos.get(ref);
+		if (info == null && knownSourceRefs.contains(ref)) {
+			// Not loaded yet, or evicted
+			if (prefetchQueued.contains(ref)) {
+				// Refs before this one have been requested already
+				while (!prefetchQueue.peekFirst().equals(ref))
+					prefetchQueued.remove(prefetchQueue.pollFirst());
+				loadNextPrefetchChunk();
+			} else {
+				// Load all pending refs of the table at once
+				sourceRefsToLoad.put(ref.getTableName(), ref);
+				loadTables(Collections.singletonList(ref.getTableName()));
+			}
+			info = sourceInfos.get(ref);
+		}
 		return Optional.ofNullable(info);
 	}
 
 	@Override
-	public void registerSourceInfo(DataObjectSourceRef ref,
+	public synchronized void registerSourceInfo(DataObjectSourceRef ref,
 			DataObjectSourceInfo sourceInfo) {
+		knownSourceRefs.add(ref);
 		sourceInfos.put(ref, sourceInfo);
 		sourceRefsToLoad.get(ref.getTableName()).remove(ref);
 	}
 
 	@Override
-	public void registerSourceRef(DataObjectSourceRef ref) {
+	public synchronized void registerSourceRef(DataObjectSourceRef ref) {
+		knownSourceRefs.add(ref);
 		if (!sourceInfos.containsKey(ref))
 			sourceRefsToLoad.put(ref.getTableName(), ref);
 	}
 
-	private void reloadSourceInfos(String tableName) {
-		List<DataObjectSourceRef> refs = new ArrayList<>(
-				sourceRefsToLoad.get(tableName));
-		Collections.sort(refs);
-		sourceRefsToLoad.removeAll(tableName);
+	/**
+	 * Reload the given refs, if needed, in the order they will be requested.
+	 * Each table is scanned once per chunk of refs, and several tables can be
+	 * reloaded concurrently.
+	 */
+	@Override
+	public synchronized void prefetchSourceInfos(
+			Collection<DataObjectSourceRef> refs) {
+		prefetchQueue.clear();
+		prefetchQueued.clear();
+		for (DataObjectSourceRef ref : refs) {
+			if (knownSourceRefs.contains(ref) && prefetchQueued.add(ref))
+				prefetchQueue.add(ref);
+		}
+		loadNextPrefetchChunk();
+	}
+
+	/*
+	 * Load the first refs of the prefetch queue, no more than what can be kept
+	 * in memory.
+	 */
+	private void loadNextPrefetchChunk() {
+		Map<String, List<DataObjectSourceRef>> refsPerTable = new TreeMap<>();
+		Iterator<DataObjectSourceRef> refs = prefetchQueue.iterator();
+		for (int i = 0; i < maxSourceInfos && refs.hasNext(); i++) {
+			DataObjectSourceRef ref = refs.next();
+			// Mark as recently used the ones kept, to not evict them
+			if (sourceInfos.get(ref) == null) {
+				sourceRefsToLoad.remove(ref.getTableName(), ref);
+				refsPerTable
+						.computeIfAbsent(ref.getTableName(),
+								tableName -> new ArrayList<>())
+						.add(ref);
+			}
+		}
+		loadRefs(refsPerTable);
+	}
+
+	/*
+	 * Load all pending refs of the given tables.
+	 */
+	private void loadTables(Collection<String> tableNames) {
+		Map<String, List<DataObjectSourceRef>> refsPerTable = new TreeMap<>();
+		for (String tableName : tableNames) {
+			refsPerTable.put(tableName,
+					new ArrayList<>(sourceRefsToLoad.removeAll(tableName)));
+		}
+		loadRefs(refsPerTable);
+	}
+
+	/*
+	 * Load the given refs, with one worker per table if we have more than one
+	 * thread.
+	 */
+	private void loadRefs(Map<String, List<DataObjectSourceRef>> refsPerTable) {
+		List<Callable<Map<DataObjectSourceRef, DataObjectSourceInfo>>> tasks = new ArrayList<>();
+		for (Map.Entry<String, List<DataObjectSourceRef>> kv : refsPerTable
+				.entrySet()) {
+			String tableName = kv.getKey();
+			List<DataObjectSourceRef> refs = kv.getValue();
+			if (refs.isEmpty())
+				continue;
+			Collections.sort(refs);
+			tasks.add(() -> reloadSourceInfos(tableName, refs));
+		}
+		if (numThreads <= 1 || tasks.size() <= 1) {
+			for (Callable<Map<DataObjectSourceRef, DataObjectSourceInfo>> task : tasks) {
+				try {
+					sourceInfos.putAll(task.call());
+				} catch (Exception e) {
+					throw new RuntimeException(e);
+				}
+			}
+			return;
+		}
+		ExecutorService exec = Executors
+				.newFixedThreadPool(Math.min(numThreads, tasks.size()));
+		try {
+			for (Future<Map<DataObjectSourceRef, DataObjectSourceInfo>> result : exec
+					.invokeAll(tasks)) {
+				sourceInfos.putAll(result.get());
+			}
+		} catch (InterruptedException | ExecutionException e) {
+			throw new RuntimeException(e);
+		} finally {
+			exec.shutdown();
+		}
+	}
+
+	/*
+	 * Reload source info of the given (sorted) refs of a table. This does not
+	 * touch any shared state, and can be called concurrently.
+	 */
+	private Map<DataObjectSourceRef, DataObjectSourceInfo> reloadSourceInfos(
+			String tableName, List<DataObjectSourceRef> refs) {
+		Map<DataObjectSourceRef, DataObjectSourceInfo> ret = new HashMap<>();
 		if (verbose) {
 			System.out
 					.println(String.format("Reloading %d source infos from %s",
 							refs.size(), tableName));
 		}
 		try {
+			Optional<LineIndex> lineIndex = dataSource.getLineIndex(tableName);
 			DataTable dataTable = dataSource.getDataTable(tableName);
-			int refIndex = 0;
-			DataObjectSourceRef nextRef = refs.get(refIndex);
-			if (nextRef.getLineNumber() == 1L) {
-				// Special treatment for CSV header
-				sourceInfos.put(nextRef, dataTable.getSourceInfo());
-				refIndex++;
-				if (refIndex < refs.size()) {
-					nextRef = refs.get(refIndex);
-				} else {
-					// Here only the header is to be post-loaded
-					nextRef = null;
+			if (!dataTable.getLineIndex().isPresent())
+				lineIndex = Optional.empty(); // Seek not supported
+			Iterator<DataRow> rows = dataTable.iterator();
+			for (DataObjectSourceRef ref : refs) {
+				long lineNumber = ref.getLineNumber();
+				if (lineNumber == 1L) {
+					// Special treatment for CSV header
+					ret.put(ref, dataTable.getSourceInfo());
+					continue;
 				}
-			}
-			if (nextRef != null) {
-				for (DataRow row : dataTable) {
-					if (dataTable.getCurrentLineNumber() == nextRef
-							.getLineNumber()) {
-						sourceInfos.put(nextRef, row.getSourceInfo());
-						refIndex++;
-						if (refIndex >= refs.size())
-							break;
-						nextRef = refs.get(refIndex);
+				/*
+				 * Skip directly to the closest record start before the line, if
+				 * it is further than what we have read so far.
+				 */
+				Optional<LineIndex.Checkpoint> checkpoint = lineIndex
+						.flatMap(index -> index.getCheckpoint(lineNumber));
+				if (checkpoint.isPresent() && checkpoint.get()
+						.getLineNumber() > dataTable.getCurrentLineNumber()) {
+					dataTable.seek(checkpoint.get());
+				}
+				while (dataTable.getCurrentLineNumber() < lineNumber
+						&& rows.hasNext()) {
+					DataRow row = rows.next();
+					if (dataTable.getCurrentLineNumber() == lineNumber) {
+						ret.put(ref, row.getSourceInfo());
 					}
 				}
 			}
 			dataTable.close();
+			return ret;
 		} catch (IOException e) {
 			// This would be strange, as we already managed to load some
 			// data once. Break badly anyway
@@ -12,16 +12,22 @@ public class UnivocityCsvDataRow implements DataRow {
 
 	private String[] record;
 	private UnivocityCsvDataTable csvDataTable;
+	/*
+	 * Line number captured when parsing, as rows can be consumed after the
+	 * parser has moved on (pipelined loading).
+	 */
+	private long lineNumber;
 
 	public UnivocityCsvDataRow(UnivocityCsvDataTable csvDataTable,
-			String[] record) {
+			String[] record, long lineNumber) {
 		this.csvDataTable = csvDataTable;
 		this.record = record;
+		this.lineNumber = lineNumber;
 	}
 
 	@Override
 	public String getString(String field) {
-		int index = csvDataTable.fieldIndex(field);
+		int index = csvDataTable.fieldIndex(field, lineNumber);
 		if (index < 0 || index >= record.length)
 			return null;
 		String ret = record[index];
@@ -41,13 +47,13 @@ public class UnivocityCsvDataRow implements DataRow {
 			fields.add(field == null ? null : field.intern());
 		}
 		return new DataObjectSourceInfoImpl(tableSourceInfo, fields,
-				csvDataTable.getCurrentLineNumber());
+				lineNumber);
 	}
 
 	@Override
 	public DataObjectSourceRef getSourceRef() {
 		return new DataObjectSourceRef(csvDataTable.getTableName(),
-				csvDataTable.getCurrentLineNumber());
+				lineNumber);
 	}
 
 	@Override
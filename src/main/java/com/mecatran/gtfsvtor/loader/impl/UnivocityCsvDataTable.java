@@ -2,9 +2,11 @@ package com.mecatran.gtfsvtor.loader.impl;
 
 import java.io.BufferedReader;
 import java.io.Closeable;
+import java.io.FilterReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CodingErrorAction;
@@ -12,25 +14,147 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedDeque;
 
 import org.apache.commons.io.ByteOrderMark;
 import org.apache.commons.io.input.BOMInputStream;
+import org.apache.commons.io.input.CountingInputStream;
 
 import com.mecatran.gtfsvtor.loader.DataRow;
 import com.mecatran.gtfsvtor.loader.DataTable;
+import com.mecatran.gtfsvtor.loader.LineIndex;
 import com.mecatran.gtfsvtor.loader.TableSourceInfo;
 import com.univocity.parsers.csv.CsvParser;
 import com.univocity.parsers.csv.CsvParserSettings;
 
 public class UnivocityCsvDataTable implements DataTable, Closeable {
 
+	/**
+	 * A reader keeping track of the byte offsets in the UTF-8 input of the
+	 * chars it delivers. Every interval lines, the position following a
+	 * newline is recorded as a candidate checkpoint, to be kept if a record
+	 * starts there. Offsets are unknown after a malformed input (decoded as
+	 * U+FFFD), so no candidate is recorded past it. The parser may read
+	 * ahead in a separate thread, so candidates are shared through a
+	 * concurrent queue, and reads are synchronized for seek() to detach the
+	 * reader from the input.
+	 */
+	private static class IndexingReader extends FilterReader {
+
+		private final int interval;
+		private long charOffset = 0;
+		private long byteOffset;
+		private long lineNumber;
+		private long nextCandidateLine;
+		private boolean valid = true;
+		private boolean detached = false;
+		/* Line number, char offset and byte offset of each candidate */
+		private Deque<long[]> candidates = new ConcurrentLinkedDeque<>();
+
+		private IndexingReader(Reader in, long byteOffset, long lineNumber,
+				int interval) {
+			super(in);
+			this.byteOffset = byteOffset;
+			this.lineNumber = lineNumber;
+			this.nextCandidateLine = lineNumber;
+			this.interval = interval;
+		}
+
+		@Override
+		public synchronized int read() throws IOException {
+			if (detached)
+				return -1;
+			int c = in.read();
+			if (c >= 0)
+				count(new char[] { (char) c }, 0, 1);
+			return c;
+		}
+
+		@Override
+		public synchronized int read(char[] cbuf, int off, int len)
+				throws IOException {
+			if (detached)
+				return -1;
+			int n = in.read(cbuf, off, len);
+			if (n > 0)
+				count(cbuf, off, n);
+			return n;
+		}
+
+		@Override
+		public long skip(long n) throws IOException {
+			// Read instead, to count the skipped chars
+			char[] buf = new char[(int) Math.min(n, 8192)];
+			long skipped = 0;
+			while (skipped < n) {
+				int m = read(buf, 0, (int) Math.min(n - skipped, buf.length));
+				if (m < 0)
+					break;
+				skipped += m;
+			}
+			return skipped;
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			// A detached reader does not own the input anymore
+			if (!detached)
+				super.close();
+		}
+
+		private void count(char[] cbuf, int off, int n) {
+			long bytes = byteOffset;
+			for (int i = off; i < off + n; i++) {
+				char c = cbuf[i];
+				if (c < 0x80) {
+					bytes++;
+					if (c == '\n') {
+						lineNumber++;
+						if (valid && lineNumber >= nextCandidateLine) {
+							candidates.add(new long[] { lineNumber,
+									charOffset + i - off + 1, bytes });
+							nextCandidateLine = lineNumber + interval;
+						}
+					}
+				} else if (c < 0x800) {
+					bytes += 2;
+				} else if (Character.isHighSurrogate(c)) {
+					bytes += 4;
+				} else if (!Character.isLowSurrogate(c)) {
+					if (c == '\uFFFD')
+						valid = false;
+					bytes += 3;
+				}
+			}
+			byteOffset = bytes;
+			charOffset += n;
+		}
+
+		/**
+		 * @return The candidate starting at the given char offset, if any.
+		 *         Candidates before it are dropped, as they are not record
+		 *         starts.
+		 */
+		private long[] pollCandidate(long offset) {
+			long[] candidate;
+			while ((candidate = candidates.peekFirst()) != null
+					&& candidate[1] < offset)
+				candidates.pollFirst();
+			if (candidate != null && candidate[1] == offset)
+				return candidates.pollFirst();
+			return null;
+		}
+	}
+
 	private String tableName;
 	private CsvParser csvParser;
 	private Set<String> readFields = new HashSet<>();
@@ -41,6 +165,18 @@ public class UnivocityCsvDataTable implements DataTable, Closeable {
 	private boolean checkRecordConsistent = false;
 	private boolean emptyFile = false;
 	private TableSourceInfo tableSourceInfo = null;
+	private String[] headers;
+	private String[] parsedHeaders;
+
+	// Null if not supported (non UTF-8 input)
+	private LineIndex lineIndex = null;
+	private CountingInputStream countingInputStream;
+	private long bomLength = 0;
+	private IndexingReader indexingReader;
+	// Lines before the start of the current parser input
+	private long lineOffset = 0;
+	// Skip records before this line, after a seek within buffered input
+	private long skipUntilLine = 0;
 
 	public static DataTable.Factory factory() {
 		return (tableName, inputStream) -> new UnivocityCsvDataTable(tableName,
@@ -76,23 +212,18 @@ public class UnivocityCsvDataTable implements DataTable, Closeable {
 			// supported");
 		}
 
-		CharsetDecoder decoder = charset.newDecoder().replaceWith("\uFFFD")
-				.onMalformedInput(CodingErrorAction.REPLACE);
-		final BufferedReader br = new BufferedReader(
-				new InputStreamReader(bomIn, decoder));
-
-		CsvParserSettings settings = new CsvParserSettings();
-		settings.getFormat().setLineSeparator("\n");
-		settings.getFormat().setDelimiter(',');
-		settings.setHeaderExtractionEnabled(true);
-		settings.setNullValue(null);
-		settings.setIgnoreLeadingWhitespaces(true);
-		settings.setIgnoreTrailingWhitespaces(true);
-		csvParser = new CsvParser(settings);
-
-		csvParser.beginParsing(br);
+		if (charset.equals(StandardCharsets.UTF_8)) {
+			countingInputStream = new CountingInputStream(bomIn);
+			bomLength = bomIn.hasBOM() ? bomIn.getBOM().length() : 0;
+			lineIndex = new LineIndex();
+			beginParsing(newIndexingReader(bomLength, 1L), true);
+		} else {
+			beginParsing(new BufferedReader(
+					new InputStreamReader(bomIn, newDecoder())), true);
+		}
 
-		String[] headers = csvParser.getContext().headers();
+		headers = csvParser.getContext().headers();
+		parsedHeaders = csvParser.getContext().parsedHeaders();
 		if (headers == null) {
 			emptyFile = true;
 		} else {
@@ -104,6 +235,41 @@ public class UnivocityCsvDataTable implements DataTable, Closeable {
 		}
 	}
 
+	private CharsetDecoder newDecoder() {
+		return charset.newDecoder().replaceWith("\uFFFD")
+				.onMalformedInput(CodingErrorAction.REPLACE);
+	}
+
+	private Reader newIndexingReader(long byteOffset, long lineNumber) {
+		indexingReader = new IndexingReader(
+				new InputStreamReader(countingInputStream, newDecoder()),
+				byteOffset, lineNumber, lineIndex.getInterval());
+		return indexingReader;
+	}
+
+	private void beginParsing(Reader reader, boolean extractHeaders) {
+		CsvParserSettings settings = new CsvParserSettings();
+		settings.getFormat().setLineSeparator("\n");
+		settings.getFormat().setDelimiter(',');
+		settings.setHeaderExtractionEnabled(extractHeaders);
+		settings.setNullValue(null);
+		settings.setIgnoreLeadingWhitespaces(true);
+		settings.setIgnoreTrailingWhitespaces(true);
+		csvParser = new CsvParser(settings);
+		csvParser.beginParsing(reader);
+	}
+
+	/*
+	 * Called at a record boundary: record a checkpoint if a candidate starts
+	 * there.
+	 */
+	private void checkpoint() {
+		long[] candidate = indexingReader
+				.pollCandidate(csvParser.getContext().currentChar());
+		if (candidate != null)
+			lineIndex.addCheckpoint(candidate[0], candidate[2]);
+	}
+
 	@Override
 	public Iterator<DataRow> iterator() {
 		return new Iterator<DataRow>() {
@@ -112,7 +278,13 @@ public class UnivocityCsvDataTable implements DataTable, Closeable {
 
 			@Override
 			public boolean hasNext() {
+				if (lineIndex != null)
+					checkpoint();
 				record = csvParser.parseNext();
+				while (record != null
+						&& getCurrentLineNumber() < skipUntilLine)
+					record = csvParser.parseNext();
+				skipUntilLine = 0;
 				return record != null;
 			}
 
@@ -127,7 +299,7 @@ public class UnivocityCsvDataTable implements DataTable, Closeable {
 							record.length, headerSize));
 				}
 				return new UnivocityCsvDataRow(UnivocityCsvDataTable.this,
-						record);
+						record, getCurrentLineNumber());
 			}
 
 			@Override
@@ -137,15 +309,15 @@ public class UnivocityCsvDataTable implements DataTable, Closeable {
 		};
 	}
 
-	int fieldIndex(String fieldName) {
-		if (getCurrentLineNumber() <= 2)
+	int fieldIndex(String fieldName, long lineNumber) {
+		if (lineNumber <= 2)
 			readFields.add(fieldName);
 		return headerIndex.getOrDefault(fieldName, -1);
 	}
 
 	@Override
 	public long getCurrentLineNumber() {
-		return csvParser.getContext().currentLine();
+		return lineOffset + csvParser.getContext().currentLine();
 	}
 
 	@Override
@@ -187,7 +359,6 @@ public class UnivocityCsvDataTable implements DataTable, Closeable {
 	@Override
 	public List<String> getColumnHeaders() {
 		List<String> ret = new ArrayList<>();
-		String[] headers = csvParser.getContext().headers();
 		if (headers != null) {
 			for (String header : headers) {
 				ret.add(header);
@@ -199,9 +370,8 @@ public class UnivocityCsvDataTable implements DataTable, Closeable {
 	@Override
 	public List<String> getRawColumnHeaders() {
 		List<String> ret = new ArrayList<>();
-		String[] headers = csvParser.getContext().parsedHeaders();
-		if (headers != null) {
-			for (String header : headers) {
+		if (parsedHeaders != null) {
+			for (String header : parsedHeaders) {
 				ret.add(header);
 			}
 		}
@@ -217,4 +387,47 @@ public class UnivocityCsvDataTable implements DataTable, Closeable {
 	public boolean isEmpty() {
 		return emptyFile;
 	}
+
+	@Override
+	public Optional<LineIndex> getLineIndex() {
+		return Optional.ofNullable(lineIndex);
+	}
+
+	@Override
+	public void seek(LineIndex.Checkpoint checkpoint) throws IOException {
+		if (lineIndex == null)
+			throw new UnsupportedOperationException("seek()");
+		if (checkpoint.getLineNumber() <= getCurrentLineNumber())
+			throw new IllegalArgumentException(
+					"Can't seek backward to " + checkpoint);
+		long toSkip;
+		synchronized (indexingReader) {
+			toSkip = checkpoint.getByteOffset()
+					- (bomLength + countingInputStream.getByteCount());
+			if (toSkip < 0) {
+				// Already read ahead by the decoder or the parser, parse up to
+				// it
+				skipUntilLine = checkpoint.getLineNumber();
+				return;
+			}
+			// From now on the current parser can't read the input anymore
+			indexingReader.detached = true;
+		}
+		// Drop the current parser, but keep the input opened
+		csvParser.stopParsing();
+		while (toSkip > 0) {
+			long n = countingInputStream.skip(toSkip);
+			if (n <= 0) {
+				// Some streams can't skip, read instead
+				if (countingInputStream.read() < 0)
+					throw new IOException(
+							"Unexpected end of input, seeking to " + checkpoint);
+				n = 1;
+			}
+			toSkip -= n;
+		}
+		lineOffset = checkpoint.getLineNumber() - 1;
+		beginParsing(newIndexingReader(checkpoint.getByteOffset(),
+				checkpoint.getLineNumber()), false);
+	}
 }
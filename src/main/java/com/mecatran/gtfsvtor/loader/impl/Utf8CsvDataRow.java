@@ -0,0 +1,81 @@
+package com.mecatran.gtfsvtor.loader.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.mecatran.gtfsvtor.loader.DataObjectSourceInfo;
+import com.mecatran.gtfsvtor.loader.DataRow;
+import com.mecatran.gtfsvtor.loader.TableSourceInfo;
+import com.mecatran.gtfsvtor.model.DataObjectSourceRef;
+
+public class Utf8CsvDataRow implements DataRow {
+
+	private Utf8CsvDataTable csvDataTable;
+	/*
+	 * Field i is stored in data, from base + offsets[i] (inclusive) to base +
+	 * offsets[i + 1] (exclusive). The data chunk is shared with other rows.
+	 */
+	private byte[] data;
+	private int base;
+	private int[] offsets;
+	private long invalidMask;
+	private long lineNumber;
+
+	Utf8CsvDataRow(Utf8CsvDataTable csvDataTable, byte[] data, int base,
+			int[] offsets, long invalidMask, long lineNumber) {
+		this.csvDataTable = csvDataTable;
+		this.data = data;
+		this.base = base;
+		this.offsets = offsets;
+		this.invalidMask = invalidMask;
+		this.lineNumber = lineNumber;
+	}
+
+	@Override
+	public String getString(String field) {
+		int index = csvDataTable.fieldIndex(field, lineNumber);
+		if (index < 0 || index >= offsets.length - 1)
+			return null;
+		return getString(index);
+	}
+
+	private String getString(int index) {
+		int start = offsets[index];
+		int len = offsets[index + 1] - start;
+		if (len == 0)
+			return null;
+		return new String(data, base + start, len, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public boolean hasInvalidEncoding(String field, String value) {
+		int index = csvDataTable.fieldIndex(field, lineNumber);
+		if (index < 0 || index >= 64)
+			return DataRow.super.hasInvalidEncoding(field, value);
+		return (invalidMask & (1L << index)) != 0;
+	}
+
+	@Override
+	public DataObjectSourceInfo getSourceInfo() {
+		TableSourceInfo tableSourceInfo = csvDataTable.getTableSourceInfo();
+		List<String> fields = new ArrayList<>(offsets.length - 1);
+		for (int i = 0; i < offsets.length - 1; i++) {
+			String field = getString(i);
+			fields.add(field == null ? null : field.intern());
+		}
+		return new DataObjectSourceInfoImpl(tableSourceInfo, fields,
+				lineNumber);
+	}
+
+	@Override
+	public DataObjectSourceRef getSourceRef() {
+		return new DataObjectSourceRef(csvDataTable.getTableName(),
+				lineNumber);
+	}
+
+	@Override
+	public int getRecordCount() {
+		return offsets.length - 1;
+	}
+}
@@ -0,0 +1,516 @@
+package com.mecatran.gtfsvtor.loader.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+
+import org.apache.commons.io.ByteOrderMark;
+import org.apache.commons.io.input.BOMInputStream;
+import org.apache.commons.io.input.ReaderInputStream;
+
+import com.mecatran.gtfsvtor.loader.DataRow;
+import com.mecatran.gtfsvtor.loader.DataTable;
+import com.mecatran.gtfsvtor.loader.LineIndex;
+import com.mecatran.gtfsvtor.loader.TableSourceInfo;
+
+/**
+ * A CSV data table tokenizing UTF-8 bytes directly, without decoding the
+ * whole input to characters first.
+ *
+ * Unescaped field values of successive records are stored in large shared
+ * byte chunks; a row only keeps the offsets of its fields in the chunk, and a
+ * String is only built for the fields actually read. Invalid encoding
+ * (malformed UTF-8, replacement or NUL characters) is detected on the bytes,
+ * when tokenizing.
+ *
+ * The parsing rules (trimming, quoting, empty lines, line numbers, headers)
+ * mimic the ones of UnivocityCsvDataTable, in order to produce the same
+ * results. Non UTF-8 inputs (UTF-16 or UTF-32 BOM) are transcoded to UTF-8.
+ */
+public class Utf8CsvDataTable implements DataTable {
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final int CHUNK_SIZE = 256 * 1024;
+	private static final int DELIMITER = ',';
+	private static final int QUOTE = '"';
+	private static final int NEWLINE = '\n';
+
+	private String tableName;
+	private InputStream inputStream;
+	private Charset charset;
+	private byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+	private int readPos = 0;
+	private int readLimit = 0;
+	// Byte offset in the input of the start of the read buffer
+	private long readBufferOffset = 0L;
+
+	/*
+	 * Storage for field values. A new chunk is allocated when full, the
+	 * previous one being still referenced by the rows using it.
+	 */
+	private byte[] chunk = new byte[CHUNK_SIZE];
+	private int chunkPos = 0;
+	// Start of the record being parsed in the chunk
+	private int recordStart = 0;
+	// Field offsets of the record being parsed, relative to recordStart
+	private int[] fieldOffsets = new int[64];
+	private int nFields = 0;
+	// Bit i set if field i (i < 64) has invalid encoding
+	private long invalidMask = 0L;
+
+	// Line number of the next byte to read
+	private long lineNumber = 1L;
+	// Line number of the last parsed record
+	private long currentLineNumber = 0L;
+
+	// Null if not supported (transcoded input)
+	private LineIndex lineIndex = null;
+	private long nextCheckpointLine = 0L;
+
+	private List<String> rawColumnHeaders;
+	private List<String> columnHeaders;
+	private Map<String, Integer> headerIndex = new HashMap<>();
+	private Set<String> readFields = new HashSet<>();
+	private boolean emptyFile = false;
+	private TableSourceInfo tableSourceInfo = null;
+
+	public static DataTable.Factory factory() {
+		return (tableName, inputStream) -> new Utf8CsvDataTable(tableName,
+				inputStream);
+	}
+
+	public Utf8CsvDataTable(String tableName, InputStream inputStream)
+			throws IOException {
+		this.tableName = tableName;
+
+		charset = StandardCharsets.UTF_8;
+
+		BOMInputStream bomIn = new BOMInputStream(inputStream,
+				ByteOrderMark.UTF_8, ByteOrderMark.UTF_16LE,
+				ByteOrderMark.UTF_16BE, ByteOrderMark.UTF_32LE,
+				ByteOrderMark.UTF_32BE);
+
+		if (bomIn.hasBOM() == false) {
+			// No BOM found, OK
+		} else if (bomIn.hasBOM(ByteOrderMark.UTF_8)) {
+			// UTF8 BOM, OK
+		} else if (bomIn.hasBOM(ByteOrderMark.UTF_16LE)) {
+			charset = StandardCharsets.UTF_16LE;
+		} else if (bomIn.hasBOM(ByteOrderMark.UTF_16BE)) {
+			charset = StandardCharsets.UTF_16BE;
+		} else if (bomIn.hasBOM(ByteOrderMark.UTF_32LE)) {
+			charset = Charset.forName("UTF-32LE");
+		} else if (bomIn.hasBOM(ByteOrderMark.UTF_32BE)) {
+			charset = Charset.forName("UTF-32BE");
+		}
+
+		if (charset.equals(StandardCharsets.UTF_8)) {
+			this.inputStream = bomIn;
+			readBufferOffset = bomIn.hasBOM() ? bomIn.getBOM().length() : 0;
+			lineIndex = new LineIndex();
+		} else {
+			// Slow path, transcode to UTF-8
+			CharsetDecoder decoder = charset.newDecoder()
+					.replaceWith("�")
+					.onMalformedInput(CodingErrorAction.REPLACE);
+			this.inputStream = new ReaderInputStream(
+					new InputStreamReader(bomIn, decoder),
+					StandardCharsets.UTF_8);
+		}
+
+		// Headers are not trimmed, to get the raw version
+		if (parseRecord(false)) {
+			List<String> rawHeaders = new ArrayList<>(nFields);
+			List<String> headers = new ArrayList<>(nFields);
+			for (int i = 0; i < nFields; i++) {
+				String rawHeader = new String(chunk,
+						recordStart + fieldOffsets[i],
+						fieldOffsets[i + 1] - fieldOffsets[i],
+						StandardCharsets.UTF_8);
+				String header = rawHeader.trim();
+				rawHeaders.add(rawHeader);
+				headers.add(header);
+				headerIndex.put(header, i);
+			}
+			rawColumnHeaders = Collections.unmodifiableList(rawHeaders);
+			columnHeaders = Collections.unmodifiableList(headers);
+		} else {
+			emptyFile = true;
+			rawColumnHeaders = Collections.emptyList();
+			columnHeaders = Collections.emptyList();
+		}
+	}
+
+	@Override
+	public Iterator<DataRow> iterator() {
+		return new Iterator<DataRow>() {
+
+			private boolean parsed = false;
+			private boolean hasNext = false;
+
+			@Override
+			public boolean hasNext() {
+				if (!parsed) {
+					try {
+						hasNext = !emptyFile && parseRecord(true);
+					} catch (IOException e) {
+						throw new UncheckedIOException(e);
+					}
+					parsed = true;
+				}
+				return hasNext;
+			}
+
+			@Override
+			public DataRow next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				parsed = false;
+				return new Utf8CsvDataRow(Utf8CsvDataTable.this, chunk,
+						recordStart,
+						Arrays.copyOf(fieldOffsets, nFields + 1),
+						invalidMask, currentLineNumber);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("remove()");
+			}
+		};
+	}
+
+	/**
+	 * Parse the next non-empty record. Field values are unescaped, and
+	 * trimmed if required (outside quotes only). Empty or blank lines are
+	 * skipped.
+	 *
+	 * @return false if the end of the input has been reached.
+	 */
+	private boolean parseRecord(boolean trim) throws IOException {
+		int c = read();
+		while (c >= 0) {
+			if (trim && lineIndex != null
+					&& lineNumber >= nextCheckpointLine) {
+				// Byte offset of c, start of a record
+				lineIndex.addCheckpoint(lineNumber,
+						readBufferOffset + readPos - 1);
+				nextCheckpointLine = lineNumber + lineIndex.getInterval();
+			}
+			recordStart = chunkPos;
+			nFields = 0;
+			invalidMask = 0L;
+			boolean blank = true;
+			while (true) {
+				int fieldStart = chunkPos - recordStart;
+				if (trim) {
+					while (c >= 0 && c != DELIMITER && c != NEWLINE
+							&& c <= ' ')
+						c = read();
+				}
+				boolean quoted = false;
+				if (c == QUOTE) {
+					blank = false;
+					quoted = true;
+					c = parseQuoted();
+					/*
+					 * Whitespaces after the closing quote are ignored; but
+					 * anything else turns the value into an unquoted value,
+					 * quotes included.
+					 */
+					int quotedEnd = chunkPos - recordStart;
+					while (c >= 0 && c != DELIMITER && c != NEWLINE
+							&& c <= ' ') {
+						write(c);
+						c = read();
+					}
+					if (c < 0 || c == DELIMITER || c == NEWLINE) {
+						chunkPos = recordStart + quotedEnd;
+					} else {
+						requote(fieldStart, quotedEnd);
+						quoted = false;
+					}
+				}
+				if (!quoted) {
+					while (c >= 0 && c != DELIMITER && c != NEWLINE) {
+						if (c > ' ')
+							blank = false;
+						write(c);
+						c = read();
+					}
+					if (trim) {
+						int start = recordStart + fieldStart;
+						while (chunkPos > start
+								&& (chunk[chunkPos - 1] & 0xFF) <= ' ')
+							chunkPos--;
+					}
+				}
+				endField(fieldStart);
+				if (c == DELIMITER) {
+					blank = false;
+					c = read();
+					continue;
+				}
+				// End of line or end of input
+				currentLineNumber = lineNumber;
+				if (c == NEWLINE)
+					lineNumber++;
+				break;
+			}
+			if (!blank)
+				return true;
+			// Skip empty line
+			chunkPos = recordStart;
+			c = read();
+		}
+		nFields = 0;
+		return false;
+	}
+
+	/*
+	 * Parse the content of a quoted value, the opening quote being already
+	 * read. Return the character following the closing quote.
+	 */
+	private int parseQuoted() throws IOException {
+		while (true) {
+			int c = read();
+			if (c < 0)
+				return c; // Unclosed quote, take everything
+			if (c == QUOTE) {
+				c = read();
+				if (c != QUOTE)
+					return c;
+			} else if (c == NEWLINE) {
+				lineNumber++;
+			}
+			write(c);
+		}
+	}
+
+	/*
+	 * Put back the quotes around the quoted part of a value ("xxx" yyy), start
+	 * and end being relative to the record start.
+	 */
+	private void requote(int fieldStart, int quotedEnd) {
+		ensureCapacity(2);
+		int start = recordStart + fieldStart;
+		int end = recordStart + quotedEnd;
+		System.arraycopy(chunk, end, chunk, end + 2, chunkPos - end);
+		chunk[end + 1] = QUOTE;
+		System.arraycopy(chunk, start, chunk, start + 1, end - start);
+		chunk[start] = QUOTE;
+		chunkPos += 2;
+	}
+
+	private void endField(int fieldStart) {
+		if (nFields + 2 > fieldOffsets.length)
+			fieldOffsets = Arrays.copyOf(fieldOffsets, fieldOffsets.length * 2);
+		fieldOffsets[nFields] = fieldStart;
+		fieldOffsets[nFields + 1] = chunkPos - recordStart;
+		if (nFields < 64 && !isValidUtf8(chunk, recordStart + fieldStart,
+				chunkPos)) {
+			invalidMask |= 1L << nFields;
+		}
+		nFields++;
+	}
+
+	private int read() throws IOException {
+		if (readPos == readLimit) {
+			int n = inputStream.read(readBuffer, 0, readBuffer.length);
+			if (n <= 0)
+				return -1;
+			readBufferOffset += readLimit;
+			readPos = 0;
+			readLimit = n;
+		}
+		return readBuffer[readPos++] & 0xFF;
+	}
+
+	private void write(int c) {
+		if (chunkPos == chunk.length)
+			ensureCapacity(1);
+		chunk[chunkPos++] = (byte) c;
+	}
+
+	private void ensureCapacity(int n) {
+		if (chunkPos + n <= chunk.length)
+			return;
+		/*
+		 * Move the record being parsed to a new chunk. The previous chunk is
+		 * still used by the previously returned rows.
+		 */
+		int recordLength = chunkPos - recordStart;
+		byte[] newChunk = new byte[Math.max(CHUNK_SIZE,
+				(recordLength + n) * 2)];
+		System.arraycopy(chunk, recordStart, newChunk, 0, recordLength);
+		chunk = newChunk;
+		recordStart = 0;
+		chunkPos = recordLength;
+	}
+
+	/**
+	 * @return false if the bytes are not valid UTF-8, or contains a NUL or
+	 *         a replacement character (U+FFFD), true otherwise.
+	 */
+	static boolean isValidUtf8(byte[] bytes, int start, int end) {
+		int i = start;
+		while (i < end) {
+			int b = bytes[i] & 0xFF;
+			if (b == 0)
+				return false;
+			if (b < 0x80) {
+				i++;
+				continue;
+			}
+			int n;
+			int min2 = 0x80, max2 = 0xBF;
+			if (b >= 0xC2 && b <= 0xDF) {
+				n = 1;
+			} else if (b >= 0xE0 && b <= 0xEF) {
+				n = 2;
+				if (b == 0xE0)
+					min2 = 0xA0; // Overlong
+				else if (b == 0xED)
+					max2 = 0x9F; // Surrogates
+				else if (b == 0xEF && i + 2 < end
+						&& (bytes[i + 1] & 0xFF) == 0xBF
+						&& (bytes[i + 2] & 0xFF) == 0xBD)
+					return false; // U+FFFD
+			} else if (b >= 0xF0 && b <= 0xF4) {
+				n = 3;
+				if (b == 0xF0)
+					min2 = 0x90; // Overlong
+				else if (b == 0xF4)
+					max2 = 0x8F; // > U+10FFFF
+			} else {
+				return false;
+			}
+			if (i + n >= end)
+				return false;
+			int b2 = bytes[i + 1] & 0xFF;
+			if (b2 < min2 || b2 > max2)
+				return false;
+			for (int j = 2; j <= n; j++) {
+				if ((bytes[i + j] & 0xC0) != 0x80)
+					return false;
+			}
+			i += n + 1;
+		}
+		return true;
+	}
+
+	int fieldIndex(String fieldName, long lineNumber) {
+		if (lineNumber <= 2)
+			readFields.add(fieldName);
+		return headerIndex.getOrDefault(fieldName, -1);
+	}
+
+	@Override
+	public long getCurrentLineNumber() {
+		return currentLineNumber;
+	}
+
+	@Override
+	public String getTableName() {
+		return tableName;
+	}
+
+	@Override
+	public void close() throws IOException {
+		inputStream.close();
+	}
+
+	@Override
+	public synchronized TableSourceInfo getTableSourceInfo() {
+		if (tableSourceInfo == null) {
+			tableSourceInfo = new TableSourceInfoImpl(tableName,
+					getColumnHeaders());
+		}
+		return tableSourceInfo;
+	}
+
+	@Override
+	public List<String> getUnreadColumnHeaders() {
+		List<String> ret = new ArrayList<>(getColumnHeaders());
+		for (String readField : readFields) {
+			// This is O(n), but number of CSV headers is probably low
+			while (ret.remove(readField)) {
+			}
+		}
+		return ret;
+	}
+
+	@Override
+	public List<String> getColumnHeaders() {
+		return columnHeaders;
+	}
+
+	@Override
+	public List<String> getRawColumnHeaders() {
+		return rawColumnHeaders;
+	}
+
+	@Override
+	public Charset getCharset() {
+		return charset;
+	}
+
+	@Override
+	public Optional<LineIndex> getLineIndex() {
+		return Optional.ofNullable(lineIndex);
+	}
+
+	@Override
+	public void seek(LineIndex.Checkpoint checkpoint) throws IOException {
+		if (lineIndex == null)
+			throw new UnsupportedOperationException("seek()");
+		long offset = checkpoint.getByteOffset();
+		if (offset < readBufferOffset + readPos)
+			throw new IllegalArgumentException(
+					"Can't seek backward to " + checkpoint);
+		if (offset <= readBufferOffset + readLimit) {
+			// Already in the read buffer
+			readPos = (int) (offset - readBufferOffset);
+		} else {
+			long toSkip = offset - (readBufferOffset + readLimit);
+			while (toSkip > 0) {
+				long n = inputStream.skip(toSkip);
+				if (n <= 0) {
+					// Some streams can't skip, read instead
+					n = inputStream.read(readBuffer, 0,
+							(int) Math.min(toSkip, readBuffer.length));
+					if (n < 0)
+						throw new IOException(
+								"Unexpected end of input, seeking to "
+										+ checkpoint);
+				}
+				toSkip -= n;
+			}
+			readBufferOffset = offset;
+			readPos = 0;
+			readLimit = 0;
+		}
+		lineNumber = checkpoint.getLineNumber();
+		nextCheckpointLine = lineNumber + lineIndex.getInterval();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return emptyFile;
+	}
+}
@@ -18,7 +18,8 @@ import com.mecatran.gtfsvtor.loader.NamedInputStreamSource;
 
 public class ZippedInputStreamSource implements NamedInputStreamSource {
 
-	private Set<String> unreadEntries = new HashSet<>();
+	private Set<String> unreadEntries = Collections
+			.synchronizedSet(new HashSet<>());
 	private ZipFile zipFile;
 
 	public ZippedInputStreamSource(File file) throws IOException {
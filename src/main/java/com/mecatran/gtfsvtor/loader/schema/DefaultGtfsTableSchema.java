@@ -9,7 +9,7 @@ public class DefaultGtfsTableSchema implements GtfsTableSchema {
 
 	public DefaultGtfsTableSchema() {
 		// TODO Ability to configure list of tables to load?
-		// TODO Table dependencies?
+		// Table dependencies are declared on each descriptor
 		tableDescriptors = Arrays.asList( //
 				//
 				new GtfsFeedInfoTableDescriptor(),
@@ -41,10 +41,10 @@ public class DefaultGtfsTableSchema implements GtfsTableSchema {
 				new GtfsFareAttributeTableDescriptor(),
 				// FareRule reference fare, routes, zones
 				new GtfsFareRuleTableDescriptor(),
-				// Translation reference a lot of other tables
-				new GtfsTranslationTableDescriptor(),
 				// Attribution reference agencies, routes, trips
 				new GtfsAttributionTableDescriptor(),
+				// Translation reference a lot of other tables
+				new GtfsTranslationTableDescriptor(),
 				//
 				new GtfsAreaTableDescriptor(),
 				// reference areas, stops
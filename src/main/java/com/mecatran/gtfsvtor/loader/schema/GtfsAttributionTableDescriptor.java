@@ -8,7 +8,7 @@ import com.mecatran.gtfsvtor.model.GtfsObject;
 import com.mecatran.gtfsvtor.model.GtfsRoute;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 
-@TableDescriptorPolicy(objectClass = GtfsAttribution.class, tableName = GtfsAttribution.TABLE_NAME, mandatory = false, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsAttribution.class, tableName = GtfsAttribution.TABLE_NAME, dependencies = { GtfsAgency.class, GtfsRoute.class, GtfsTrip.class }, mandatory = false, mandatoryColumns = {
 		"organization_name" })
 public class GtfsAttributionTableDescriptor implements GtfsTableDescriptor {
 
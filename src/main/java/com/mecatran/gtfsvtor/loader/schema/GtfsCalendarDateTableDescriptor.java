@@ -8,7 +8,7 @@ import com.mecatran.gtfsvtor.model.GtfsCalendar;
 import com.mecatran.gtfsvtor.model.GtfsCalendarDate;
 import com.mecatran.gtfsvtor.model.GtfsObject;
 
-@TableDescriptorPolicy(objectClass = GtfsCalendarDate.class, tableName = GtfsCalendarDate.TABLE_NAME, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsCalendarDate.class, tableName = GtfsCalendarDate.TABLE_NAME, dependencies = { GtfsCalendar.class }, mandatoryColumns = {
 		"service_id", "date", "exception_type" })
 public class GtfsCalendarDateTableDescriptor implements GtfsTableDescriptor {
 
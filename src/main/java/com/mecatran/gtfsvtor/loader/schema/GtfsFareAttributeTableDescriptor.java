@@ -6,7 +6,7 @@ import com.mecatran.gtfsvtor.model.GtfsAgency;
 import com.mecatran.gtfsvtor.model.GtfsFareAttribute;
 import com.mecatran.gtfsvtor.model.GtfsObject;
 
-@TableDescriptorPolicy(objectClass = GtfsFareAttribute.class, tableName = GtfsFareAttribute.TABLE_NAME, mandatory = false, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsFareAttribute.class, tableName = GtfsFareAttribute.TABLE_NAME, dependencies = { GtfsAgency.class }, mandatory = false, mandatoryColumns = {
 		"fare_id", "price", "currency_type", "payment_method", "transfers" })
 public class GtfsFareAttributeTableDescriptor implements GtfsTableDescriptor {
 
@@ -8,8 +8,9 @@ import com.mecatran.gtfsvtor.model.GtfsFareProduct;
 import com.mecatran.gtfsvtor.model.GtfsLegGroup;
 import com.mecatran.gtfsvtor.model.GtfsNetwork;
 import com.mecatran.gtfsvtor.model.GtfsObject;
+import com.mecatran.gtfsvtor.model.GtfsRoute;
 
-@TableDescriptorPolicy(objectClass = GtfsFareLegRule.class, tableName = GtfsFareLegRule.TABLE_NAME, mandatory = false, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsFareLegRule.class, tableName = GtfsFareLegRule.TABLE_NAME, dependencies = { GtfsRoute.class, GtfsArea.class, GtfsFareProduct.class }, mandatory = false, mandatoryColumns = {
 		"fare_product_id" })
 public class GtfsFareLegRuleTableDescriptor implements GtfsTableDescriptor {
 
@@ -5,9 +5,10 @@ import com.mecatran.gtfsvtor.model.GtfsFareAttribute;
 import com.mecatran.gtfsvtor.model.GtfsFareRule;
 import com.mecatran.gtfsvtor.model.GtfsObject;
 import com.mecatran.gtfsvtor.model.GtfsRoute;
+import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsZone;
 
-@TableDescriptorPolicy(objectClass = GtfsFareRule.class, tableName = GtfsFareRule.TABLE_NAME, mandatory = false, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsFareRule.class, tableName = GtfsFareRule.TABLE_NAME, dependencies = { GtfsFareAttribute.class, GtfsRoute.class, GtfsStop.class }, mandatory = false, mandatoryColumns = {
 		"fare_id" })
 public class GtfsFareRuleTableDescriptor implements GtfsTableDescriptor {
 
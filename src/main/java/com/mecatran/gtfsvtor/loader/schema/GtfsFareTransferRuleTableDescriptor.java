@@ -2,12 +2,13 @@ package com.mecatran.gtfsvtor.loader.schema;
 
 import com.mecatran.gtfsvtor.loader.DataRowConverter;
 import com.mecatran.gtfsvtor.loader.DataRowConverter.Requiredness;
+import com.mecatran.gtfsvtor.model.GtfsFareLegRule;
 import com.mecatran.gtfsvtor.model.GtfsFareProduct;
 import com.mecatran.gtfsvtor.model.GtfsFareTransferRule;
 import com.mecatran.gtfsvtor.model.GtfsLegGroup;
 import com.mecatran.gtfsvtor.model.GtfsObject;
 
-@TableDescriptorPolicy(objectClass = GtfsFareTransferRule.class, tableName = GtfsFareTransferRule.TABLE_NAME, mandatory = false, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsFareTransferRule.class, tableName = GtfsFareTransferRule.TABLE_NAME, dependencies = { GtfsFareProduct.class, GtfsFareLegRule.class }, mandatory = false, mandatoryColumns = {
 		"fare_transfer_type" })
 public class GtfsFareTransferRuleTableDescriptor
 		implements GtfsTableDescriptor {
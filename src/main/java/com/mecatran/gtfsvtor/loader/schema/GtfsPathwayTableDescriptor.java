@@ -6,7 +6,7 @@ import com.mecatran.gtfsvtor.model.GtfsObject;
 import com.mecatran.gtfsvtor.model.GtfsPathway;
 import com.mecatran.gtfsvtor.model.GtfsStop;
 
-@TableDescriptorPolicy(objectClass = GtfsPathway.class, tableName = GtfsPathway.TABLE_NAME, mandatory = false, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsPathway.class, tableName = GtfsPathway.TABLE_NAME, dependencies = { GtfsStop.class }, mandatory = false, mandatoryColumns = {
 		"pathway_id", "from_stop_id", "to_stop_id", "pathway_mode",
 		"is_bidirectional" })
 public class GtfsPathwayTableDescriptor implements GtfsTableDescriptor {
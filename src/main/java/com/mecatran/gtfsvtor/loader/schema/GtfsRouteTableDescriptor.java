@@ -8,7 +8,7 @@ import com.mecatran.gtfsvtor.model.GtfsObject;
 import com.mecatran.gtfsvtor.model.GtfsRoute;
 import com.mecatran.gtfsvtor.model.GtfsRouteType;
 
-@TableDescriptorPolicy(objectClass = GtfsRoute.class, tableName = GtfsRoute.TABLE_NAME, mandatory = true, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsRoute.class, tableName = GtfsRoute.TABLE_NAME, dependencies = { GtfsAgency.class }, mandatory = true, mandatoryColumns = {
 		"route_id", "route_type" })
 public class GtfsRouteTableDescriptor implements GtfsTableDescriptor {
 
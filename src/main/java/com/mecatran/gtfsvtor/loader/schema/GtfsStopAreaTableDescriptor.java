@@ -6,7 +6,7 @@ import com.mecatran.gtfsvtor.model.GtfsObject;
 import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsStopArea;
 
-@TableDescriptorPolicy(objectClass = GtfsStopArea.class, tableName = GtfsStopArea.TABLE_NAME, mandatory = false, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsStopArea.class, tableName = GtfsStopArea.TABLE_NAME, dependencies = { GtfsArea.class, GtfsStop.class }, mandatory = false, mandatoryColumns = {
 		"area_id", "stop_id" })
 public class GtfsStopAreaTableDescriptor implements GtfsTableDescriptor {
 
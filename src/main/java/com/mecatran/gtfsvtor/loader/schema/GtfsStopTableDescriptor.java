@@ -7,7 +7,7 @@ import com.mecatran.gtfsvtor.model.GtfsObject;
 import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsZone;
 
-@TableDescriptorPolicy(objectClass = GtfsStop.class, tableName = GtfsStop.TABLE_NAME, mandatory = true, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsStop.class, tableName = GtfsStop.TABLE_NAME, dependencies = { GtfsLevel.class }, mandatory = true, mandatoryColumns = {
 		"stop_id", "stop_name", "stop_lat", "stop_lon" })
 public class GtfsStopTableDescriptor implements GtfsTableDescriptor {
 
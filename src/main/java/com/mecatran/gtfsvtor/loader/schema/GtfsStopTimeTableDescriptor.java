@@ -8,7 +8,7 @@ import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.impl.SimpleGtfsStopTime;
 
-@TableDescriptorPolicy(objectClass = GtfsStopTime.class, tableName = GtfsStopTime.TABLE_NAME, mandatory = true, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsStopTime.class, tableName = GtfsStopTime.TABLE_NAME, dependencies = { GtfsTrip.class, GtfsStop.class }, mandatory = true, mandatoryColumns = {
 		"trip_id", "arrival_time", "departure_time", "stop_id",
 		"stop_sequence" })
 public class GtfsStopTimeTableDescriptor implements GtfsTableDescriptor {
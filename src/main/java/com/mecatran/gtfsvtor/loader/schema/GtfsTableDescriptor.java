@@ -36,6 +36,14 @@ public interface GtfsTableDescriptor {
 		return ret;
 	}
 
+	public default List<Class<? extends GtfsObject<?>>> getDependencies() {
+		@SuppressWarnings("unchecked")
+		Class<? extends GtfsObject<?>>[] ret = Annotations.getAnnotation(
+				TableDescriptorPolicy.class, Class[].class, this,
+				TableDescriptorPolicy::dependencies);
+		return Arrays.asList(ret);
+	}
+
 	public default List<String> getMandatoryColumns(int nObjects) {
 		return Arrays.asList(Annotations.getAnnotation(
 				TableDescriptorPolicy.class, String[].class, this,
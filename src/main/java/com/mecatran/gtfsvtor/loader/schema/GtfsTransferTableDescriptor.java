@@ -8,7 +8,7 @@ import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsTransfer;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 
-@TableDescriptorPolicy(objectClass = GtfsTransfer.class, tableName = GtfsTransfer.TABLE_NAME, mandatory = false, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsTransfer.class, tableName = GtfsTransfer.TABLE_NAME, dependencies = { GtfsStop.class, GtfsRoute.class, GtfsTrip.class }, mandatory = false, mandatoryColumns = {
 		"from_stop_id", "to_stop_id", "transfer_type" })
 public class GtfsTransferTableDescriptor implements GtfsTableDescriptor {
 
@@ -2,11 +2,20 @@ package com.mecatran.gtfsvtor.loader.schema;
 
 import com.mecatran.gtfsvtor.loader.DataRowConverter;
 import com.mecatran.gtfsvtor.loader.DataRowConverter.Requiredness;
+import com.mecatran.gtfsvtor.model.GtfsAgency;
+import com.mecatran.gtfsvtor.model.GtfsAttribution;
+import com.mecatran.gtfsvtor.model.GtfsFeedInfo;
+import com.mecatran.gtfsvtor.model.GtfsLevel;
 import com.mecatran.gtfsvtor.model.GtfsObject;
+import com.mecatran.gtfsvtor.model.GtfsPathway;
+import com.mecatran.gtfsvtor.model.GtfsRoute;
+import com.mecatran.gtfsvtor.model.GtfsStop;
+import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTranslation;
+import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.impl.InternedGtfsTranslation;
 
-@TableDescriptorPolicy(objectClass = GtfsTranslation.class, tableName = GtfsTranslation.TABLE_NAME, mandatory = false, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsTranslation.class, tableName = GtfsTranslation.TABLE_NAME, dependencies = { GtfsFeedInfo.class, GtfsAgency.class, GtfsStop.class, GtfsRoute.class, GtfsTrip.class, GtfsPathway.class, GtfsStopTime.class, GtfsLevel.class, GtfsAttribution.class }, mandatory = false, mandatoryColumns = {
 		"table_name", "field_name", "language", "translation" })
 public class GtfsTranslationTableDescriptor implements GtfsTableDescriptor {
 
@@ -2,12 +2,14 @@ package com.mecatran.gtfsvtor.loader.schema;
 
 import com.mecatran.gtfsvtor.loader.DataRowConverter;
 import com.mecatran.gtfsvtor.model.GtfsCalendar;
+import com.mecatran.gtfsvtor.model.GtfsCalendarDate;
 import com.mecatran.gtfsvtor.model.GtfsObject;
 import com.mecatran.gtfsvtor.model.GtfsRoute;
 import com.mecatran.gtfsvtor.model.GtfsShape;
+import com.mecatran.gtfsvtor.model.GtfsShapePoint;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 
-@TableDescriptorPolicy(objectClass = GtfsTrip.class, tableName = GtfsTrip.TABLE_NAME, mandatory = true, mandatoryColumns = {
+@TableDescriptorPolicy(objectClass = GtfsTrip.class, tableName = GtfsTrip.TABLE_NAME, dependencies = { GtfsRoute.class, GtfsCalendar.class, GtfsCalendarDate.class, GtfsShapePoint.class }, mandatory = true, mandatoryColumns = {
 		"route_id", "service_id", "trip_id" })
 public class GtfsTripTableDescriptor implements GtfsTableDescriptor {
 
@@ -15,6 +15,15 @@ public @interface TableDescriptorPolicy {
 
 	String tableName();
 
+	/**
+	 * The tables (by object class) this table depends on: tables whose data is
+	 * looked-up, through the partially loaded DAO, when loading this table.
+	 * When loading tables concurrently, a table is only loaded once all the
+	 * tables it depends on are completely loaded. They must be listed before
+	 * this table in the schema.
+	 */
+	Class<? extends GtfsObject<?>>[] dependencies() default {};
+
 	boolean mandatory() default false;
 
 	String[] mandatoryColumns() default {};
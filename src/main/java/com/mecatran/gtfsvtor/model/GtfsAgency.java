@@ -1,8 +1,6 @@
 package com.mecatran.gtfsvtor.model;
 
-import java.util.HashMap;
 import java.util.Locale;
-import java.util.Map;
 import java.util.TimeZone;
 
 public class GtfsAgency implements GtfsObject<String>, GtfsObjectWithSourceRef {
@@ -78,10 +76,11 @@ public class GtfsAgency implements GtfsObject<String>, GtfsObjectWithSourceRef {
 			super(id);
 		}
 
-		private static Map<String, Id> CACHE = new HashMap<>();
+		private static final InterningContext.Pool<String, Id> POOL = InterningContext
+				.newPool(Id::new);
 
-		private static synchronized Id build(String id) {
-			return CACHE.computeIfAbsent(id, Id::new);
+		private static Id build(String id) {
+			return POOL.intern(id);
 		}
 
 		@Override
@@ -1,7 +1,5 @@
 package com.mecatran.gtfsvtor.model;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 /**
@@ -11,7 +9,8 @@ public class GtfsBlockId {
 
 	private final String blockId;
 
-	private final static Map<String, GtfsBlockId> CACHE = new HashMap<>();
+	private static final InterningContext.Pool<String, GtfsBlockId> POOL = InterningContext
+			.newPool(GtfsBlockId::new);
 
 	private GtfsBlockId(String blockId) {
 		this.blockId = blockId;
@@ -20,8 +19,7 @@ public class GtfsBlockId {
 	public static GtfsBlockId fromValue(String blockId) {
 		if (blockId == null || blockId.isEmpty())
 			return null;
-		// TODO Synchronize
-		return CACHE.computeIfAbsent(blockId, GtfsBlockId::new);
+		return POOL.intern(blockId);
 	}
 
 	public String getValue() {
@@ -1,8 +1,6 @@
 package com.mecatran.gtfsvtor.model;
 
 import java.util.Currency;
-import java.util.HashMap;
-import java.util.Map;
 
 public class GtfsFareAttribute
 		implements GtfsObject<String>, GtfsObjectWithSourceRef {
@@ -69,10 +67,11 @@ public class GtfsFareAttribute
 			super(id);
 		}
 
-		private static Map<String, Id> CACHE = new HashMap<>();
+		private static final InterningContext.Pool<String, Id> POOL = InterningContext
+				.newPool(Id::new);
 
-		private static synchronized Id build(String id) {
-			return CACHE.computeIfAbsent(id, Id::new);
+		private static Id build(String id) {
+			return POOL.intern(id);
 		}
 
 		@Override
@@ -1,8 +1,5 @@
 package com.mecatran.gtfsvtor.model;
 
-import java.util.HashMap;
-import java.util.Map;
-
 public abstract class GtfsLegGroup implements GtfsObject<String> {
 
 	// Unused class, only here to define a leg group ID consistently
@@ -18,10 +15,11 @@ public abstract class GtfsLegGroup implements GtfsObject<String> {
 			super(id);
 		}
 
-		private static Map<String, Id> CACHE = new HashMap<>();
+		private static final InterningContext.Pool<String, Id> POOL = InterningContext
+				.newPool(Id::new);
 
-		private static synchronized Id build(String id) {
-			return CACHE.computeIfAbsent(id, Id::new);
+		private static Id build(String id) {
+			return POOL.intern(id);
 		}
 
 		@Override
@@ -3,8 +3,6 @@ package com.mecatran.gtfsvtor.model;
 import java.text.ParseException;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.TimeZone;
 
 public class GtfsLogicalDate implements Comparable<GtfsLogicalDate> {
@@ -23,7 +21,9 @@ public class GtfsLogicalDate implements Comparable<GtfsLogicalDate> {
 	private int day;
 	private int julianDay;
 
-	private static Map<Integer, GtfsLogicalDate> CACHE = new HashMap<>(10000);
+	// Dates are built from year, month, day, not from the julian day key
+	private static final InterningContext.Pool<Integer, GtfsLogicalDate> POOL = InterningContext
+			.newPool(null);
 
 	// You are not allowed to build a date
 	private GtfsLogicalDate(int year, int month, int day, int julianDay) {
@@ -36,7 +36,7 @@ public class GtfsLogicalDate implements Comparable<GtfsLogicalDate> {
 	}
 
 	static void clearCache() {
-		CACHE.clear();
+		POOL.clear();
 	}
 
 	/**
@@ -84,7 +84,7 @@ public class GtfsLogicalDate implements Comparable<GtfsLogicalDate> {
 		if (checkDateIsValid) {
 			checkDateIsValid(year, month, day);
 		}
-		return CACHE.computeIfAbsent(julianDay,
+		return POOL.intern(julianDay,
 				jd -> new GtfsLogicalDate(year, month, day, jd));
 	}
 
@@ -97,7 +97,7 @@ public class GtfsLogicalDate implements Comparable<GtfsLogicalDate> {
 	public GtfsLogicalDate offset(int nDays) {
 		// The lines below explain why we use a cache
 		int julianDay2 = julianDay + nDays;
-		GtfsLogicalDate ret = CACHE.get(julianDay2);
+		GtfsLogicalDate ret = POOL.get(julianDay2);
 		if (ret != null)
 			return ret;
 		// Use slower code
@@ -1,8 +1,6 @@
 package com.mecatran.gtfsvtor.model;
 
 import java.text.ParseException;
-import java.util.HashMap;
-import java.util.Map;
 
 public class GtfsLogicalTime implements Comparable<GtfsLogicalTime> {
 
@@ -10,10 +8,19 @@ public class GtfsLogicalTime implements Comparable<GtfsLogicalTime> {
 	 * Seconds since (noon minus twelve hours), that is seconds since midnight
 	 * on days which are not subject to time-saving change
 	 */
-	private int ssm;
+	private final int ssm;
 
-	private static Map<Integer, GtfsLogicalTime> CACHE = new HashMap<>(
-			3 * 24 * 60 * 60);
+	/*
+	 * Maximum number of seconds of a time, given the 7 days range enforced
+	 * when parsing (up to 168:60:60). Times in range are cached in a preallocated
+	 * array indexed by seconds since midnight, lazily filled. Races are
+	 * harmless, as a time is immutable (final field) and has value semantics.
+	 */
+	private static final int MAX_CACHED_SSM = 24 * 7 * 3600 + 60 * 60 + 60;
+	private static final GtfsLogicalTime[] CACHE = new GtfsLogicalTime[MAX_CACHED_SSM
+			+ 1];
+
+	private static final int INVALID_NUMBER = Integer.MIN_VALUE;
 
 	// You are not allowed to build a time
 	private GtfsLogicalTime(int secondsSinceMidnight) {
@@ -21,11 +28,12 @@ public class GtfsLogicalTime implements Comparable<GtfsLogicalTime> {
 	}
 
 	/**
-	 * Build a date from GTFS format.
+	 * Build a date from GTFS format. Digits are read in place, without
+	 * creating any intermediate object.
 	 */
-	public static GtfsLogicalTime parseFromHH_MM_SS(String hh_mm_ss)
+	public static GtfsLogicalTime parseFromHH_MM_SS(CharSequence hh_mm_ss)
 			throws ParseException {
-		if (hh_mm_ss == null || hh_mm_ss.isEmpty())
+		if (hh_mm_ss == null || hh_mm_ss.length() == 0)
 			return null;
 		int len = hh_mm_ss.length();
 		if ((len != 7 && len != 8) || hh_mm_ss.charAt(len - 6) != ':'
@@ -34,25 +42,18 @@ public class GtfsLogicalTime implements Comparable<GtfsLogicalTime> {
 					"Invalid time format, should be hh:mm:ss. Found: "
 							+ hh_mm_ss,
 					0);
-		String hstr = hh_mm_ss.substring(0, len - 6);
-		String mstr = hh_mm_ss.substring(len - 5, len - 3);
-		String sstr = hh_mm_ss.substring(len - 2, len);
-		int hour, minute, second;
-		try {
-			hour = Integer.parseInt(hstr);
-		} catch (NumberFormatException e) {
-			throw new ParseException("Invalid format for hour: " + hstr, 0);
-		}
-		try {
-			minute = Integer.parseInt(mstr);
-		} catch (NumberFormatException e) {
-			throw new ParseException("Invalid format for minute: " + mstr, 0);
-		}
-		try {
-			second = Integer.parseInt(sstr);
-		} catch (NumberFormatException e) {
-			throw new ParseException("Invalid format for second: " + sstr, 0);
-		}
+		int hour = parseNumber(hh_mm_ss, 0, len - 6);
+		if (hour == INVALID_NUMBER)
+			throw new ParseException("Invalid format for hour: "
+					+ hh_mm_ss.subSequence(0, len - 6), 0);
+		int minute = parseNumber(hh_mm_ss, len - 5, len - 3);
+		if (minute == INVALID_NUMBER)
+			throw new ParseException("Invalid format for minute: "
+					+ hh_mm_ss.subSequence(len - 5, len - 3), 0);
+		int second = parseNumber(hh_mm_ss, len - 2, len);
+		if (second == INVALID_NUMBER)
+			throw new ParseException("Invalid format for second: "
+					+ hh_mm_ss.subSequence(len - 2, len), 0);
 		// TODO Check max value for hour? 7 days is enough? Can it be negative?
 		if (hour < 0 || hour > 24 * 7)
 			throw new ParseException("Hour out of range: " + hour, 0);
@@ -63,15 +64,42 @@ public class GtfsLogicalTime implements Comparable<GtfsLogicalTime> {
 		return getTime(hour, minute, second);
 	}
 
+	/**
+	 * Parse a small number, the way Integer.parseInt does for ASCII digits
+	 * (including an optional leading sign).
+	 *
+	 * @return The number, or INVALID_NUMBER if not a number.
+	 */
+	private static int parseNumber(CharSequence str, int start, int end) {
+		boolean negative = false;
+		char first = str.charAt(start);
+		if ((first == '-' || first == '+') && end - start > 1) {
+			negative = first == '-';
+			start++;
+		}
+		int ret = 0;
+		for (int i = start; i < end; i++) {
+			char c = str.charAt(i);
+			if (c < '0' || c > '9')
+				return INVALID_NUMBER;
+			ret = ret * 10 + (c - '0');
+		}
+		return negative ? -ret : ret;
+	}
+
 	public static GtfsLogicalTime getTime(int hour, int minute, int second) {
-		int ssm = hour * 3600 + minute * 60 + second;
-		// TODO synchronize CACHE?
-		return CACHE.computeIfAbsent(ssm, GtfsLogicalTime::new);
+		return getTime(hour * 3600 + minute * 60 + second);
 	}
 
 	public static GtfsLogicalTime getTime(int secSinceMidnight) {
-		// TODO synchronize CACHE?
-		return CACHE.computeIfAbsent(secSinceMidnight, GtfsLogicalTime::new);
+		if (secSinceMidnight < 0 || secSinceMidnight > MAX_CACHED_SSM)
+			return new GtfsLogicalTime(secSinceMidnight);
+		GtfsLogicalTime ret = CACHE[secSinceMidnight];
+		if (ret == null) {
+			ret = new GtfsLogicalTime(secSinceMidnight);
+			CACHE[secSinceMidnight] = ret;
+		}
+		return ret;
 	}
 
 	public int getHour() {
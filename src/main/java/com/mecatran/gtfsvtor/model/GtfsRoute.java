@@ -1,8 +1,6 @@
 package com.mecatran.gtfsvtor.model;
 
 import java.util.Optional;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 public class GtfsRoute implements GtfsObject<String>, GtfsObjectWithSourceRef {
 
@@ -95,10 +93,11 @@ public class GtfsRoute implements GtfsObject<String>, GtfsObjectWithSourceRef {
 			super(id);
 		}
 
-		private static ConcurrentMap<String, Id> CACHE = new ConcurrentHashMap<>();
+		private static final InterningContext.Pool<String, Id> POOL = InterningContext
+				.newPool(Id::new);
 
 		private static Id build(String id) {
-			return CACHE.computeIfAbsent(id, Id::new);
+			return POOL.intern(id);
 		}
 
 		@Override
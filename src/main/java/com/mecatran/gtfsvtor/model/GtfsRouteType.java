@@ -1,7 +1,7 @@
 package com.mecatran.gtfsvtor.model;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Do not use an enum, as route type can be extended and the allowed range is
@@ -42,7 +42,7 @@ public class GtfsRouteType {
 	public static final GtfsRouteType MONORAIL = new GtfsRouteType(
 			MONORAIL_CODE);
 
-	private static Map<Integer, GtfsRouteType> CACHE = new HashMap<>(10);
+	private static ConcurrentMap<Integer, GtfsRouteType> CACHE = new ConcurrentHashMap<>(10);
 
 	private final int value;
 
@@ -51,7 +51,6 @@ public class GtfsRouteType {
 	}
 
 	public static GtfsRouteType fromValue(Integer type) {
-		// TODO Synchronize?
 		return type == null ? null
 				: CACHE.computeIfAbsent(type, GtfsRouteType::new);
 	}
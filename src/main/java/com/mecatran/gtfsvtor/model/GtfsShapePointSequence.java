@@ -1,14 +1,14 @@
 package com.mecatran.gtfsvtor.model;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class GtfsShapePointSequence
 		implements Comparable<GtfsShapePointSequence> {
 
 	private int sequence;
 
-	private static Map<Integer, GtfsShapePointSequence> CACHE = new HashMap<>(
+	private static ConcurrentMap<Integer, GtfsShapePointSequence> CACHE = new ConcurrentHashMap<>(
 			1000);
 
 	private GtfsShapePointSequence(int sequence) {
@@ -16,7 +16,6 @@ public class GtfsShapePointSequence
 	}
 
 	public static GtfsShapePointSequence fromSequence(int sequence) {
-		// TODO Synchronize?
 		return CACHE.computeIfAbsent(sequence, GtfsShapePointSequence::new);
 	}
 
@@ -13,6 +13,15 @@ public interface GtfsTripAndTimes {
 
 	public List<GtfsStopTime> getStopTimes();
 
+	/**
+	 * @return A new cursor over the stop times. Packed implementations can
+	 *         iterate over their packed data, without loading the list of
+	 *         stop times.
+	 */
+	public default StopTimeCursor getStopTimeCursor() {
+		return StopTimeCursor.of(getStopTimes());
+	}
+
 	/**
 	 * @return The first stop time in the list, if present.
 	 */
@@ -73,4 +82,29 @@ public interface GtfsTripAndTimes {
 	 *         different
 	 */
 	public Object getStopPatternKey();
+
+	/**
+	 * @return An opaque key for the relative times (times minus the base
+	 *         time) of the stop times, or null if the implementation does not
+	 *         provide one. Trips with equal stop pattern and time pattern keys
+	 *         have identical stop times, up to a constant time shift (the
+	 *         difference of their base times).
+	 */
+	public default Object getTimePatternKey() {
+		return null;
+	}
+
+	/**
+	 * @return The first defined time (arrival or departure) of the stop times,
+	 *         in seconds since midnight; or StopTimeCursor.NO_VALUE if none.
+	 */
+	public default int getBaseTime() {
+		StopTimeCursor cursor = getStopTimeCursor();
+		while (cursor.next()) {
+			int time = cursor.getArrivalOrDepartureSecond();
+			if (time != StopTimeCursor.NO_VALUE)
+				return time;
+		}
+		return StopTimeCursor.NO_VALUE;
+	}
 }
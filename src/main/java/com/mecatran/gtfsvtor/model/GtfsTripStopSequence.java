@@ -1,13 +1,13 @@
 package com.mecatran.gtfsvtor.model;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class GtfsTripStopSequence implements Comparable<GtfsTripStopSequence> {
 
 	private int sequence;
 
-	private static Map<Integer, GtfsTripStopSequence> CACHE = new HashMap<>(
+	private static ConcurrentMap<Integer, GtfsTripStopSequence> CACHE = new ConcurrentHashMap<>(
 			1000);
 
 	private GtfsTripStopSequence(int sequence) {
@@ -15,7 +15,6 @@ public class GtfsTripStopSequence implements Comparable<GtfsTripStopSequence> {
 	}
 
 	public static GtfsTripStopSequence fromSequence(int sequence) {
-		// TODO Synchronize?
 		return CACHE.computeIfAbsent(sequence, GtfsTripStopSequence::new);
 	}
 
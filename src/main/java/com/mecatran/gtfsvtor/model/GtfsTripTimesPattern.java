@@ -0,0 +1,117 @@
+package com.mecatran.gtfsvtor.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A group of trips sharing identical stop times, up to a constant time shift:
+ * same stop pattern (stops, sequences, pickup/drop-off types, headsigns...)
+ * and same time pattern (times relative to the base time).
+ *
+ * The first trip of the group is the reference trip. The stop times of the
+ * trip at index i are the ones of the reference trip, with all times shifted
+ * by getTimeShift(i) seconds. Other trip fields (shape, calendar, block...)
+ * can differ.
+ */
+public class GtfsTripTimesPattern {
+
+	private Object stopPatternKey;
+	private Object timePatternKey;
+	private List<GtfsTripAndTimes> trips = new ArrayList<>();
+	private int[] baseTimes = new int[4];
+
+	private GtfsTripTimesPattern(Object stopPatternKey, Object timePatternKey) {
+		this.stopPatternKey = stopPatternKey;
+		this.timePatternKey = timePatternKey;
+	}
+
+	/**
+	 * @return A pattern with a single trip.
+	 */
+	public static GtfsTripTimesPattern of(GtfsTripAndTimes tripAndTimes) {
+		GtfsTripTimesPattern pattern = new GtfsTripTimesPattern(
+				tripAndTimes.getStopPatternKey(),
+				tripAndTimes.getTimePatternKey());
+		pattern.add(tripAndTimes);
+		return pattern;
+	}
+
+	/**
+	 * Group trips by stop and time pattern keys. Trips without a time pattern
+	 * key are never grouped. Groups are returned in the order of their first
+	 * trip, and trips of each group in their original order.
+	 */
+	public static Stream<GtfsTripTimesPattern> groupByPattern(
+			Stream<GtfsTripAndTimes> tripsAndTimes) {
+		Map<Object, GtfsTripTimesPattern> patterns = new LinkedHashMap<>();
+		tripsAndTimes.forEach(tripAndTimes -> {
+			Object timePatternKey = tripAndTimes.getTimePatternKey();
+			// A new object is a key equal to nothing else
+			Object key = timePatternKey == null ? new Object()
+					: Arrays.asList(tripAndTimes.getStopPatternKey(),
+							timePatternKey);
+			patterns.computeIfAbsent(key,
+					k -> new GtfsTripTimesPattern(
+							tripAndTimes.getStopPatternKey(), timePatternKey))
+					.add(tripAndTimes);
+		});
+		return patterns.values().stream();
+	}
+
+	private void add(GtfsTripAndTimes tripAndTimes) {
+		if (trips.size() == baseTimes.length)
+			baseTimes = Arrays.copyOf(baseTimes, baseTimes.length * 2);
+		// Base time is only needed to shift times of grouped trips
+		baseTimes[trips.size()] = timePatternKey == null ? 0
+				: tripAndTimes.getBaseTime();
+		trips.add(tripAndTimes);
+	}
+
+	public Object getStopPatternKey() {
+		return stopPatternKey;
+	}
+
+	public Object getTimePatternKey() {
+		return timePatternKey;
+	}
+
+	/**
+	 * @return The trips of this group, never empty.
+	 */
+	public List<GtfsTripAndTimes> getTrips() {
+		return Collections.unmodifiableList(trips);
+	}
+
+	public int size() {
+		return trips.size();
+	}
+
+	public GtfsTripAndTimes getReferenceTrip() {
+		return trips.get(0);
+	}
+
+	/**
+	 * @return The number of seconds to add to the reference trip times to get
+	 *         the times of the trip at the given index.
+	 */
+	public int getTimeShift(int tripIndex) {
+		int base = baseTimes[tripIndex];
+		int refBase = baseTimes[0];
+		if (base == StopTimeCursor.NO_VALUE
+				|| refBase == StopTimeCursor.NO_VALUE)
+			return 0;
+		return base - refBase;
+	}
+
+	/**
+	 * @return A new cursor over the reference trip stop times.
+	 */
+	public StopTimeCursor getStopTimeCursor() {
+		return getReferenceTrip().getStopTimeCursor();
+	}
+}
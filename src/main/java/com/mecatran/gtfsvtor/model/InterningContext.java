@@ -0,0 +1,162 @@
+package com.mecatran.gtfsvtor.model;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A context for interning IDs and values (stop, trip, route or calendar IDs,
+ * block IDs, dates...), scoped to a validation run.
+ *
+ * A context is opened at the start of a run, and closed at the end, releasing
+ * all interned values. Each run has its own context, bound to the thread
+ * opening it, and inherited by the threads created by this thread while it is
+ * opened (loader, packing, indexing and validation executors). Overlapping
+ * runs in other threads thus have their own separate contexts. Outside of any
+ * run, values are not interned at all. This is safe, as all interned classes
+ * have value semantics (equals and hashCode), interning being only a memory
+ * optimization.
+ *
+ * All operations are thread-safe, and lookups of already interned values are
+ * lock-free.
+ */
+public class InterningContext implements AutoCloseable {
+
+	/**
+	 * A pool of interned values of the same kind, to be declared as a
+	 * constant in the interned class.
+	 *
+	 * @param <K> The key the values are built from.
+	 * @param <V> The interned value class.
+	 */
+	public static final class Pool<K, V> {
+
+		private final Function<K, V> builder;
+
+		private Pool(Function<K, V> builder) {
+			this.builder = builder;
+		}
+
+		/**
+		 * @return The interned value for the key, built if needed, or a new
+		 *         value if no context is opened.
+		 */
+		public V intern(K key) {
+			return intern(key, builder);
+		}
+
+		/**
+		 * @param builder A specific builder, for values which need more than
+		 *            the key to be built.
+		 * @return The interned value for the key, built if needed, or a new
+		 *         value if no context is opened.
+		 */
+		public V intern(K key, Function<? super K, ? extends V> builder) {
+			InterningContext context = getCurrent();
+			if (context == null)
+				return builder.apply(key);
+			ConcurrentMap<K, V> values = context.getValues(this);
+			// Prevent computeIfAbsent(), which locks even when present
+			V ret = values.get(key);
+			if (ret == null) {
+				ret = builder.apply(key);
+				V previous = values.putIfAbsent(key, ret);
+				if (previous != null)
+					ret = previous;
+			}
+			return ret;
+		}
+
+		/**
+		 * @return The interned value for the key, or null if none.
+		 */
+		public V get(K key) {
+			InterningContext context = getCurrent();
+			if (context == null)
+				return null;
+			return context.getValues(this).get(key);
+		}
+
+		/**
+		 * Clear all interned values of this pool, in the current context.
+		 */
+		public void clear() {
+			InterningContext context = getCurrent();
+			if (context != null)
+				context.getValues(this).clear();
+		}
+	}
+
+	private static final InheritableThreadLocal<InterningContext> CURRENT = new InheritableThreadLocal<>();
+
+	private ConcurrentMap<Pool<?, ?>, ConcurrentMap<?, ?>> pools = new ConcurrentHashMap<>();
+	/* The context to restore in the opening thread when closed */
+	private InterningContext previous;
+	private volatile boolean closed = false;
+
+	private InterningContext(InterningContext previous) {
+		this.previous = previous;
+	}
+
+	/**
+	 * @param builder The default builder of values from keys. Can be null, in
+	 *            which case a builder must be given for each interning.
+	 */
+	public static <K, V> Pool<K, V> newPool(Function<K, V> builder) {
+		return new Pool<>(builder);
+	}
+
+	/**
+	 * Open a new context for a run, bound to the current thread and to the
+	 * threads it creates. Must be closed at the end of the run, in the same
+	 * thread.
+	 */
+	public static InterningContext open() {
+		InterningContext context = new InterningContext(CURRENT.get());
+		CURRENT.set(context);
+		return context;
+	}
+
+	/**
+	 * @return The context of the run of the current thread, if any.
+	 */
+	public static InterningContext getCurrent() {
+		InterningContext context = CURRENT.get();
+		return context == null || context.closed ? null : context;
+	}
+
+	/**
+	 * End the run, releasing all interned values. Threads still bound to this
+	 * context stop interning.
+	 */
+	@Override
+	public void close() {
+		if (closed)
+			return;
+		closed = true;
+		pools.clear();
+		if (CURRENT.get() == this)
+			CURRENT.set(previous);
+	}
+
+	/**
+	 * @return The total number of interned values in this context.
+	 */
+	public long size() {
+		return pools.values().stream().mapToLong(Map::size).sum();
+	}
+
+	@SuppressWarnings("unchecked")
+	private <K, V> ConcurrentMap<K, V> getValues(Pool<K, V> pool) {
+		ConcurrentMap<K, V> ret = (ConcurrentMap<K, V>) pools.get(pool);
+		if (ret == null) {
+			ret = new ConcurrentHashMap<>();
+			ConcurrentMap<K, V> previous = (ConcurrentMap<K, V>) pools
+					.putIfAbsent(pool, ret);
+			if (previous != null)
+				ret = previous;
+		}
+		return ret;
+	}
+}
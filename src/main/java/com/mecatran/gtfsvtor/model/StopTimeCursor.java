@@ -0,0 +1,253 @@
+package com.mecatran.gtfsvtor.model;
+
+import java.util.List;
+
+/**
+ * A forward-only cursor over the stop times of a trip, in stop sequence order.
+ *
+ * This is a flyweight: the cursor is positioned on one stop time at a time,
+ * and fields of the current stop time are read through primitive accessors,
+ * without creating any GtfsStopTime object. Packed implementations decode each
+ * row on the fly. Use getStopTime() only when an object is really needed (to
+ * report an issue for example).
+ *
+ * A cursor is not thread-safe. Usage:
+ *
+ * <pre>
+ * StopTimeCursor cursor = tripAndTimes.getStopTimeCursor();
+ * while (cursor.next()) {
+ * 	int dep = cursor.getDepartureSecond();
+ * 	...
+ * }
+ * </pre>
+ */
+public interface StopTimeCursor {
+
+	/**
+	 * Value returned by int accessors for undefined fields.
+	 */
+	public static final int NO_VALUE = Integer.MIN_VALUE;
+
+	/**
+	 * @return The total number of stop times.
+	 */
+	public int size();
+
+	/**
+	 * Move to the next stop time. Must be called once before accessing the
+	 * first stop time.
+	 *
+	 * @return False if there is no more stop time.
+	 */
+	public boolean next();
+
+	/**
+	 * Move to the last stop time. Packed implementations still need to decode
+	 * all stop times before it.
+	 *
+	 * @return False if there is no stop time.
+	 */
+	public default boolean last() {
+		if (size() == 0)
+			return false;
+		if (getPosition() >= size())
+			reset();
+		while (getPosition() < size() - 1)
+			next();
+		return true;
+	}
+
+	/**
+	 * Move back before the first stop time.
+	 */
+	public void reset();
+
+	/**
+	 * @return The 0-based position of the current stop time.
+	 */
+	public int getPosition();
+
+	/**
+	 * @return Arrival time in seconds since midnight, or NO_VALUE.
+	 */
+	public int getArrivalSecond();
+
+	/**
+	 * @return Departure time in seconds since midnight, or NO_VALUE.
+	 */
+	public int getDepartureSecond();
+
+	public default int getDepartureOrArrivalSecond() {
+		int dep = getDepartureSecond();
+		return dep != NO_VALUE ? dep : getArrivalSecond();
+	}
+
+	public default int getArrivalOrDepartureSecond() {
+		int arr = getArrivalSecond();
+		return arr != NO_VALUE ? arr : getDepartureSecond();
+	}
+
+	public GtfsStop.Id getStopId();
+
+	/**
+	 * @return An index of the stop ID, only meaningful within the same DAO, or
+	 *         0 if there is no stop ID. -1 if the cursor does not index stops.
+	 */
+	public int getStopIndex();
+
+	/**
+	 * @return The stop sequence, or NO_VALUE.
+	 */
+	public int getStopSequence();
+
+	public String getStopHeadsign();
+
+	/**
+	 * @return The pickup type code, or -1 if not defined.
+	 */
+	public int getPickupTypeCode();
+
+	/**
+	 * @return The drop-off type code, or -1 if not defined.
+	 */
+	public int getDropoffTypeCode();
+
+	/**
+	 * @return The timepoint code, or -1 if not defined.
+	 */
+	public int getTimepointCode();
+
+	public boolean hasShapeDistTraveled();
+
+	/**
+	 * @return The shape distance traveled, only valid if
+	 *         hasShapeDistTraveled().
+	 */
+	public double getShapeDistTraveled();
+
+	/**
+	 * @return The current stop time, as an object. This may create a new
+	 *         object for each call.
+	 */
+	public GtfsStopTime getStopTime();
+
+	/**
+	 * @return A cursor over an already loaded list of stop times.
+	 */
+	public static StopTimeCursor of(List<GtfsStopTime> stopTimes) {
+		return new ListStopTimeCursor(stopTimes);
+	}
+
+	public static class ListStopTimeCursor implements StopTimeCursor {
+
+		private List<GtfsStopTime> stopTimes;
+		private int position = -1;
+		private GtfsStopTime current = null;
+
+		public ListStopTimeCursor(List<GtfsStopTime> stopTimes) {
+			this.stopTimes = stopTimes;
+		}
+
+		@Override
+		public int size() {
+			return stopTimes.size();
+		}
+
+		@Override
+		public boolean next() {
+			if (position + 1 >= stopTimes.size()) {
+				position = stopTimes.size();
+				current = null;
+				return false;
+			}
+			current = stopTimes.get(++position);
+			return true;
+		}
+
+		@Override
+		public boolean last() {
+			if (stopTimes.isEmpty())
+				return false;
+			position = stopTimes.size() - 1;
+			current = stopTimes.get(position);
+			return true;
+		}
+
+		@Override
+		public void reset() {
+			position = -1;
+			current = null;
+		}
+
+		@Override
+		public int getPosition() {
+			return position;
+		}
+
+		@Override
+		public int getArrivalSecond() {
+			GtfsLogicalTime time = current.getArrivalTime();
+			return time == null ? NO_VALUE : time.getSecondSinceMidnight();
+		}
+
+		@Override
+		public int getDepartureSecond() {
+			GtfsLogicalTime time = current.getDepartureTime();
+			return time == null ? NO_VALUE : time.getSecondSinceMidnight();
+		}
+
+		@Override
+		public GtfsStop.Id getStopId() {
+			return current.getStopId();
+		}
+
+		@Override
+		public int getStopIndex() {
+			return current.getStopId() == null ? 0 : -1;
+		}
+
+		@Override
+		public int getStopSequence() {
+			GtfsTripStopSequence seq = current.getStopSequence();
+			return seq == null ? NO_VALUE : seq.getSequence();
+		}
+
+		@Override
+		public String getStopHeadsign() {
+			return current.getStopHeadsign();
+		}
+
+		@Override
+		public int getPickupTypeCode() {
+			return current.getPickupType().map(GtfsPickupType::getValue)
+					.orElse(-1);
+		}
+
+		@Override
+		public int getDropoffTypeCode() {
+			return current.getDropoffType().map(GtfsDropoffType::getValue)
+					.orElse(-1);
+		}
+
+		@Override
+		public int getTimepointCode() {
+			return current.getTimepoint().map(GtfsTimepoint::getValue)
+					.orElse(-1);
+		}
+
+		@Override
+		public boolean hasShapeDistTraveled() {
+			return current.getShapeDistTraveled() != null;
+		}
+
+		@Override
+		public double getShapeDistTraveled() {
+			return current.getShapeDistTraveled();
+		}
+
+		@Override
+		public GtfsStopTime getStopTime() {
+			return current;
+		}
+	}
+}
@@ -1,11 +1,10 @@
 package com.mecatran.gtfsvtor.model.impl;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Objects;
 
 import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsTripStopSequence;
+import com.mecatran.gtfsvtor.model.InterningContext;
 
 /**
  * This class is used for the SmallGtfsStopTime implementation.
@@ -25,7 +24,8 @@ public class StopIdSeqAndHeadsign {
 	private String stopHeadsign;
 	private double shapeDistTraveled;
 
-	private static Map<StopIdSeqAndHeadsign, StopIdSeqAndHeadsign> CACHE = new HashMap<>();
+	private static final InterningContext.Pool<StopIdSeqAndHeadsign, StopIdSeqAndHeadsign> POOL = InterningContext
+			.newPool(sish -> sish);
 
 	public static class Builder {
 		private StopIdSeqAndHeadsign sish;
@@ -57,9 +57,7 @@ public class StopIdSeqAndHeadsign {
 
 		public StopIdSeqAndHeadsign build() {
 			// This will intern the values
-			StopIdSeqAndHeadsign interned = CACHE.computeIfAbsent(sish,
-					sish -> sish);
-			return interned;
+			return POOL.intern(sish);
 		}
 	}
 
@@ -1,5 +1,6 @@
 package com.mecatran.gtfsvtor.reporting;
 
+import java.util.Collection;
 import java.util.stream.Stream;
 
 import com.mecatran.gtfsvtor.loader.DataObjectSourceInfo;
@@ -57,4 +58,14 @@ public interface ReviewReport {
 	 */
 	public DataObjectSourceInfo getSourceInfo(DataObjectSourceRef ref);
 
+	/**
+	 * Hint that the source info of the given refs will be needed soon, so
+	 * that they can be loaded at once. The default implementation does
+	 * nothing.
+	 *
+	 * @param refs The refs to load source info from.
+	 */
+	public default void prefetchSourceInfos(
+			Collection<DataObjectSourceRef> refs) {
+	}
 }
@@ -1,5 +1,6 @@
 package com.mecatran.gtfsvtor.reporting;
 
+import java.util.Collection;
 import java.util.Optional;
 
 import com.mecatran.gtfsvtor.loader.DataObjectSourceInfo;
@@ -15,4 +16,13 @@ public interface SourceInfoFactory {
 
 	public void registerSourceRef(DataObjectSourceRef ref);
 
+	/**
+	 * Load in advance the source info of all the given refs, to be retrieved
+	 * later on with getSourceInfo(). The default implementation does nothing.
+	 *
+	 * @param refs The refs that will be needed.
+	 */
+	public default void prefetchSourceInfos(
+			Collection<DataObjectSourceRef> refs) {
+	}
 }
@@ -48,6 +48,14 @@ public class HtmlReportFormatter implements ReportFormatter {
 				StandardCharsets.UTF_8);
 		html = new Html(writer);
 		ClassifiedReviewReport clsReport = new ClassifiedReviewReport(report);
+		/*
+		 * Load all source infos we will need at once, instead of one by one
+		 * while formatting, allowing tables to be reloaded concurrently.
+		 */
+		report.prefetchSourceInfos(clsReport.getGroups()
+				.flatMap(group -> group.getSubGroups().stream())
+				.flatMap(subGroup -> subGroup.getSourceRefs().stream())
+				.collect(Collectors.toList()));
 		formatHeader();
 		formatSummary(report);
 		for (IssuesGroup group : clsReport.getGroups()
@@ -1,6 +1,7 @@
 package com.mecatran.gtfsvtor.reporting.impl;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -194,4 +195,9 @@ public class InMemoryReportLog implements ReportSink, ReviewReport {
 				.orElseThrow(() -> new IllegalArgumentException(
 						"Source info not found for " + ref));
 	}
+
+	@Override
+	public void prefetchSourceInfos(Collection<DataObjectSourceRef> refs) {
+		sourceInfoFactory.prefetchSourceInfos(refs);
+	}
 }
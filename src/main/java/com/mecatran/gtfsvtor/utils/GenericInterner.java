@@ -1,34 +1,146 @@
 package com.mecatran.gtfsvtor.utils;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.stream.Stream;
 
+/**
+ * Intern equal values, so that only one instance is kept.
+ *
+ * In strong mode (the default), interned values are kept in a concurrent map,
+ * without any per-entry weak reference overhead. Once loading is done,
+ * freeze() turns the interner into a read-only lookup table. In weak mode,
+ * values no longer used elsewhere are released; use it only for values that
+ * are often replaced (mutable patterns for example).
+ *
+ * Interned values should have a cheap hashCode() and equals(), ideally based
+ * on a precomputed content hash (see hash64()).
+ */
 public class GenericInterner<T> {
 
-	private Map<T, T> cache;
+	private volatile Map<T, T> cache;
+	private boolean weak;
+	private volatile boolean frozen = false;
+	private LongAdder hits = new LongAdder();
+	private LongAdder misses = new LongAdder();
 
 	public GenericInterner() {
-		this(true);
+		this(false);
 	}
 
 	public GenericInterner(boolean weak) {
+		this.weak = weak;
 		if (weak)
-			cache = new WeakHashMap<>();
+			cache = Collections.synchronizedMap(new WeakHashMap<>());
 		else
-			cache = new HashMap<>();
+			cache = new ConcurrentHashMap<>();
 	}
 
 	public int size() {
 		return cache.size();
 	}
 
+	/**
+	 * @return The interned value equal to t. Once frozen, t itself if there is
+	 *         no equal value already interned, as nothing is added anymore.
+	 */
 	public T intern(T t) {
-		return cache.computeIfAbsent(t, t2 -> t2);
+		T existing = cache.get(t);
+		if (existing != null) {
+			hits.increment();
+			return existing;
+		}
+		misses.increment();
+		if (frozen)
+			return t;
+		existing = cache.putIfAbsent(t, t);
+		return existing == null ? t : existing;
+	}
+
+	/**
+	 * Stop interning new values. In strong mode, the concurrent map is
+	 * replaced by a compact read-only one, safe for concurrent lookups.
+	 */
+	public void freeze() {
+		if (frozen)
+			return;
+		if (!weak) {
+			Map<T, T> frozenCache = new HashMap<>(
+					(int) (cache.size() / 0.75f) + 1);
+			frozenCache.putAll(cache);
+			cache = Collections.unmodifiableMap(frozenCache);
+		}
+		frozen = true;
+	}
+
+	/**
+	 * Stop interning new values, keeping only the given ones. Values interned
+	 * but replaced since (intermediate values) are released. Only meaningful
+	 * in strong mode, as weak mode already releases them.
+	 *
+	 * @param retained The interned values still in use.
+	 */
+	public void freeze(Stream<T> retained) {
+		if (frozen)
+			return;
+		if (!weak) {
+			Map<T, T> frozenCache = new HashMap<>();
+			retained.forEach(t -> frozenCache.put(t, t));
+			cache = Collections.unmodifiableMap(frozenCache);
+		}
+		frozen = true;
+	}
+
+	public boolean isFrozen() {
+		return frozen;
+	}
+
+	/**
+	 * @return The number of intern() calls returning an already interned
+	 *         value.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+
+	/**
+	 * @return The number of intern() calls with a new value.
+	 */
+	public long getMisses() {
+		return misses.sum();
 	}
 
 	public Stream<T> all() {
+		if (weak) {
+			// Do not iterate over the map while others may intern
+			synchronized (cache) {
+				return new ArrayList<>(cache.values()).stream();
+			}
+		}
 		return cache.values().stream();
 	}
+
+	/**
+	 * A 64-bit content hash (FNV-1a, then the murmur3 64-bit finalizer), to
+	 * precompute in interned values. Unlike Arrays.hashCode(), collisions are
+	 * rare enough to reject most non-equal values without comparing contents.
+	 */
+	public static long hash64(byte[] data) {
+		long h = 0xcbf29ce484222325L;
+		for (byte b : data) {
+			h ^= b & 0xff;
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
 }
@@ -19,6 +19,12 @@ public class Histogram<T extends Comparable<T>> {
 		hist.computeIfAbsent(t, t2 -> new AtomicInteger()).addAndGet(1);
 	}
 
+	public void merge(Histogram<T> other) {
+		other.hist.forEach((t, n) -> hist
+				.computeIfAbsent(t, t2 -> new AtomicInteger())
+				.addAndGet(n.get()));
+	}
+
 	@Override
 	public String toString() {
 		StringBuffer sb = new StringBuffer(what).append("\n");
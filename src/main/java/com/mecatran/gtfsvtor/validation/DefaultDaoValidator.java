@@ -1,8 +1,10 @@
 package com.mecatran.gtfsvtor.validation;
 
 import java.util.List;
+import java.util.concurrent.Callable;
 
 import com.mecatran.gtfsvtor.validation.impl.CompoundDaoValidator;
+import com.mecatran.gtfsvtor.validation.impl.ValidatorDurationStats;
 import com.mecatran.gtfsvtor.validation.impl.ValidatorInjector;
 
 public class DefaultDaoValidator implements DaoValidator {
@@ -25,9 +27,19 @@ public class DefaultDaoValidator implements DaoValidator {
 		return this;
 	}
 
+	public DefaultDaoValidator withDurationStats(
+			ValidatorDurationStats durationStats) {
+		this.compound.withDurationStats(durationStats);
+		return this;
+	}
+
 	@Override
 	public void validate(DaoValidator.Context context) {
 		compound.validate(context);
 	}
 
+	public List<Callable<Boolean>> getTasks(DaoValidator.Context context) {
+		return compound.getTasks(context);
+	}
+
 }
@@ -1,6 +1,13 @@
 package com.mecatran.gtfsvtor.validation;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.mecatran.gtfsvtor.dao.IndexedReadOnlyDao;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
@@ -10,14 +17,15 @@ import com.mecatran.gtfsvtor.validation.impl.ValidatorInjector;
 
 public class DefaultTripTimesValidator implements TripTimesValidator {
 
+	private ValidatorConfig config;
 	private CompoundTripTimesValidator compound;
 	private boolean verbose = false;
+	private int numThreads = 1;
+	private List<CompoundTripTimesValidator> workers;
 
 	public DefaultTripTimesValidator(ValidatorConfig config) {
-		List<? extends TripTimesValidator> validators = ValidatorInjector
-				.getTripTimesStreamingValidatorInjector()
-				.scanPackageAndInject(config);
-		compound = new CompoundTripTimesValidator(validators);
+		this.config = config;
+		compound = buildCompound(config);
 	}
 
 	public DefaultTripTimesValidator withVerbose(boolean verbose) {
@@ -25,18 +33,115 @@ public class DefaultTripTimesValidator implements TripTimesValidator {
 		return this;
 	}
 
+	public DefaultTripTimesValidator withNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+		return this;
+	}
+
+	/**
+	 * Scan the trip times of all routes. The DAO must be closed, as routes are
+	 * dispatched by their int index (see IndexedReadOnlyDao.getRoutesCount()).
+	 */
 	public void scanValidate(Context context) {
-		if (verbose) {
-			compound.getValidators().forEach(v -> System.out.println(
-					"Running validator: " + v.getClass().getSimpleName()));
+		if (numThreads > 1) {
+			parallelScanValidate(context);
+			return;
 		}
+		printValidators();
 		this.start(context);
 		IndexedReadOnlyDao dao = context.getDao();
-		dao.getTripsAndTimes()
-				.forEach(tripAndTimes -> this.validate(context, tripAndTimes));
+		for (int i = 0; i < dao.getRoutesCount(); i++) {
+			compound.validateRoute(context, i);
+		}
 		this.end(context);
 	}
 
+	private void parallelScanValidate(Context context) {
+		ExecutorService exec = Executors.newFixedThreadPool(numThreads);
+		try {
+			List<Future<Boolean>> results = exec
+					.invokeAll(prepareParallelScan(context));
+			for (Future<Boolean> result : results) {
+				// Do not merge partial results, fail as the sequential scan
+				result.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Trip times validation failed",
+					e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Trip times validation interrupted", e);
+		} finally {
+			exec.shutdown();
+		}
+		completeParallelScan(context);
+	}
+
+	/**
+	 * Prepare a parallel scan, and return the tasks to run. The caller is free
+	 * to run them on any executor, possibly shared with other tasks, but must
+	 * call completeParallelScan() once they all have completed.
+	 *
+	 * Routes are split across several workers (one per thread), each one
+	 * having its own set of validator instances. A worker always processes all
+	 * the trips of a route at once, so each validator instance still sees trips
+	 * grouped by route. Trips of a route are further grouped by stop and time
+	 * patterns, only for pattern-aware validators.
+	 */
+	public List<Callable<Boolean>> prepareParallelScan(Context context) {
+		printValidators();
+		IndexedReadOnlyDao dao = context.getDao();
+		int nRoutes = dao.getRoutesCount();
+		workers = new ArrayList<>();
+		workers.add(compound);
+		for (int i = 1; i < numThreads; i++) {
+			workers.add(buildCompound(config));
+		}
+		if (verbose) {
+			System.out.println("Scanning trip times of " + nRoutes
+					+ " routes with " + workers.size() + " workers.");
+		}
+		workers.forEach(w -> w.start(context));
+		AtomicInteger nextRoute = new AtomicInteger(0);
+		List<Callable<Boolean>> callables = new ArrayList<>();
+		for (CompoundTripTimesValidator worker : workers) {
+			callables.add(() -> {
+				int i;
+				while ((i = nextRoute.getAndIncrement()) < nRoutes) {
+					worker.validateRoute(context, i);
+				}
+				return true;
+			});
+		}
+		return callables;
+	}
+
+	/**
+	 * Merge all workers into the main one, and end validation.
+	 */
+	public void completeParallelScan(Context context) {
+		for (int i = 1; i < workers.size(); i++) {
+			compound.merge(context, workers.get(i));
+		}
+		workers = null;
+		compound.end(context);
+	}
+
+	private void printValidators() {
+		if (verbose) {
+			compound.getValidators().forEach(v -> System.out.println(
+					"Running validator: " + v.getClass().getSimpleName()));
+		}
+	}
+
+	private static CompoundTripTimesValidator buildCompound(
+			ValidatorConfig config) {
+		List<? extends TripTimesValidator> validators = ValidatorInjector
+				.getTripTimesStreamingValidatorInjector()
+				.scanPackageAndInject(config);
+		return new CompoundTripTimesValidator(validators);
+	}
+
 	@Override
 	public void start(Context context) {
 		compound.start(context);
@@ -0,0 +1,114 @@
+package com.mecatran.gtfsvtor.validation;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.mecatran.gtfsvtor.validation.impl.ValidatorDurationStats;
+
+/**
+ * Run both the DAO validators and the trip times validators scan. The two
+ * phases only read the (frozen) DAO, so in multi-threaded mode all DAO
+ * validators and trip times scan workers are submitted as peer tasks to a
+ * single thread pool. That way the total time is roughly the time of the
+ * longest phase, and not the sum of both.
+ *
+ * In single-threaded mode, we keep the historical order (DAO validators first,
+ * then trip times), which gives stable reports.
+ */
+public class DefaultValidationScheduler {
+
+	private DefaultDaoValidator daoValidator;
+	private DefaultTripTimesValidator tripTimesValidator;
+	private boolean verbose = false;
+	private int numThreads = 1;
+	private Optional<File> durationStatsFile = Optional.empty();
+
+	public DefaultValidationScheduler(ValidatorConfig config) {
+		daoValidator = new DefaultDaoValidator(config);
+		tripTimesValidator = new DefaultTripTimesValidator(config);
+	}
+
+	public DefaultValidationScheduler withVerbose(boolean verbose) {
+		this.verbose = verbose;
+		daoValidator.withVerbose(verbose);
+		tripTimesValidator.withVerbose(verbose);
+		return this;
+	}
+
+	public DefaultValidationScheduler withNumThreads(int numThreads) {
+		this.numThreads = numThreads;
+		daoValidator.withNumThreads(numThreads);
+		tripTimesValidator.withNumThreads(numThreads);
+		return this;
+	}
+
+	/**
+	 * @param statsFile A file to record the durations of each DAO validator.
+	 *        The recorded durations are used in the next runs to start the
+	 *        longest validators first. Errors reading or writing it are
+	 *        printed in verbose mode.
+	 */
+	public DefaultValidationScheduler withDurationStatsFile(
+			Optional<String> statsFile) {
+		durationStatsFile = statsFile.map(File::new);
+		return this;
+	}
+
+	public void validate(DaoValidator.Context context) {
+		// Load the stats now, for the builder calls order not to matter
+		Optional<ValidatorDurationStats> durationStats = durationStatsFile
+				.map(f -> new ValidatorDurationStats(f, verbose));
+		daoValidator.withDurationStats(durationStats.orElse(null));
+		long start = System.currentTimeMillis();
+		if (numThreads > 1) {
+			parallelValidate(context);
+		} else {
+			daoValidator.validate(context);
+			tripTimesValidator.scanValidate(context);
+		}
+		long end = System.currentTimeMillis();
+		if (verbose) {
+			System.out.println("Validated in " + (end - start) + "ms");
+		}
+		durationStats.ifPresent(ValidatorDurationStats::save);
+	}
+
+	private void parallelValidate(DaoValidator.Context context) {
+		ExecutorService exec = Executors.newFixedThreadPool(numThreads);
+		if (verbose) {
+			System.out
+					.println("Parallelizing with " + numThreads + " threads.");
+		}
+		try {
+			/*
+			 * Submit DAO validators first: the pool will pick them up first,
+			 * and the trip times workers (which dynamically share the routes
+			 * to scan) will fill the remaining threads, and the threads freed
+			 * by the DAO validators when they complete.
+			 */
+			List<Callable<Boolean>> callables = new ArrayList<>();
+			callables.addAll(daoValidator.getTasks(context));
+			callables.addAll(tripTimesValidator.prepareParallelScan(context));
+			List<Future<Boolean>> results = exec.invokeAll(callables);
+			for (Future<Boolean> result : results) {
+				// Do not merge partial results, fail as the sequential mode
+				result.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Validation failed", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Validation interrupted", e);
+		} finally {
+			exec.shutdown();
+		}
+		tripTimesValidator.completeParallelScan(context);
+	}
+}
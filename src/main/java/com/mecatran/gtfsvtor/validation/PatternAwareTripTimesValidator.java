@@ -0,0 +1,31 @@
+package com.mecatran.gtfsvtor.validation;
+
+import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.GtfsTripTimesPattern;
+import com.mecatran.gtfsvtor.validation.DaoValidator.Context;
+
+/**
+ * An opt-in variant of TripTimesValidator, validating trips grouped by stop
+ * and time patterns. Trips of a group have identical stop times, up to a
+ * constant time shift: a validator can evaluate the reference trip only, and
+ * report the results for each trip of the group.
+ *
+ * The scan calls validatePattern() instead of validate() for each group.
+ * Groups never span several routes, so trips are still grouped by route.
+ */
+public interface PatternAwareTripTimesValidator extends TripTimesValidator {
+
+	/**
+	 * Validate all trips of a pattern group.
+	 */
+	public void validatePattern(Context context, GtfsTripTimesPattern pattern);
+
+	/**
+	 * Validate a single trip, as a group of one.
+	 */
+	@Override
+	public default void validate(Context context,
+			GtfsTripAndTimes tripAndTimes) {
+		validatePattern(context, GtfsTripTimesPattern.of(tripAndTimes));
+	}
+}
@@ -14,6 +14,23 @@ public interface TripTimesValidator {
 	 */
 	public void validate(Context context, GtfsTripAndTimes tripAndTimes);
 
+	/**
+	 * Merge the state of another instance of the same validator class into
+	 * this one. In parallel mode, routes are split across several instances,
+	 * each validating its own set of routes. Once all trips have been
+	 * validated, the other instances are merged into the first one, and only
+	 * then end() is called, on the first instance only.
+	 *
+	 * The default implementation does nothing, which is fine for validators
+	 * that do not keep any state between trips. Validators keeping a state
+	 * across routes, or flushing the last route in end(), must implement this.
+	 *
+	 * @param other Another instance of the same class, that has been started
+	 *        and has validated a distinct set of routes.
+	 */
+	public default void merge(Context context, TripTimesValidator other) {
+	};
+
 	public default void end(Context context) {
 	};
 }
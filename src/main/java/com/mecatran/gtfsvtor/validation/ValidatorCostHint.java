@@ -0,0 +1,23 @@
+package com.mecatran.gtfsvtor.validation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Static hint of the relative running cost of a DAO validator. Used to start
+ * the longest validators first in multi-threaded mode, when no durations have
+ * been recorded yet from previous runs. Validators without this annotation
+ * are considered of LOW cost.
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface ValidatorCostHint {
+
+	public enum Cost {
+		LOW, MEDIUM, HIGH
+	}
+
+	Cost value();
+}
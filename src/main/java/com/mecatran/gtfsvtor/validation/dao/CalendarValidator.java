@@ -23,7 +23,10 @@ import com.mecatran.gtfsvtor.reporting.issues.NoServiceExceptionWarning;
 import com.mecatran.gtfsvtor.reporting.issues.TooManyDaysWithoutServiceIssue;
 import com.mecatran.gtfsvtor.validation.ConfigurableOption;
 import com.mecatran.gtfsvtor.validation.DaoValidator;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint.Cost;
 
+@ValidatorCostHint(Cost.MEDIUM)
 public class CalendarValidator implements DaoValidator {
 
 	@ConfigurableOption(description = "Check for calendars not applicable on any date")
@@ -12,12 +12,15 @@ import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.DifferentStationTooCloseWarning;
 import com.mecatran.gtfsvtor.validation.ConfigurableOption;
 import com.mecatran.gtfsvtor.validation.DaoValidator;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint.Cost;
 
 /*
  * Check if a parent station exist nearby a stop who is not the parent.
  *
  * TODO Make the same kind of test for quay -> parent stop
  */
+@ValidatorCostHint(Cost.MEDIUM)
 public class DifferentStationTooCloseValidator implements DaoValidator {
 
 	@ConfigurableOption(description = "Distance between stop and station below which a warning is generated")
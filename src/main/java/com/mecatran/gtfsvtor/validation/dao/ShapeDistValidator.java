@@ -7,7 +7,10 @@ import com.mecatran.gtfsvtor.model.GtfsShapePoint;
 import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.NonIncreasingShapeDistTraveledError;
 import com.mecatran.gtfsvtor.validation.DaoValidator;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint.Cost;
 
+@ValidatorCostHint(Cost.MEDIUM)
 public class ShapeDistValidator implements DaoValidator {
 
 	@Override
@@ -14,8 +14,11 @@ import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.StopTooCloseIssue;
 import com.mecatran.gtfsvtor.validation.ConfigurableOption;
 import com.mecatran.gtfsvtor.validation.DaoValidator;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint.Cost;
 
 // @DefaultDisabledValidator
+@ValidatorCostHint(Cost.MEDIUM)
 public class StopTooCloseValidator implements DaoValidator {
 
 	@ConfigurableOption(description = "Distance between stops below which an info is generated")
@@ -11,7 +11,10 @@ import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.StopTooFarFromShapeIssue;
 import com.mecatran.gtfsvtor.validation.ConfigurableOption;
 import com.mecatran.gtfsvtor.validation.DaoValidator;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint.Cost;
 
+@ValidatorCostHint(Cost.HIGH)
 public class StopTooFarFromShapeValidator implements DaoValidator {
 
 	@ConfigurableOption(description = "Distance from stop to projected point on shape above which a warning is generated")
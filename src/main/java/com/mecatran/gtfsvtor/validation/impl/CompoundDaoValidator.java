@@ -1,7 +1,9 @@
 package com.mecatran.gtfsvtor.validation.impl;
 
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -9,12 +11,14 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 
 import com.mecatran.gtfsvtor.validation.DaoValidator;
+import com.mecatran.gtfsvtor.validation.ValidatorCostHint;
 
 public class CompoundDaoValidator implements DaoValidator {
 
 	private List<? extends DaoValidator> validators;
 	private boolean verbose = false;
 	private int numThreads = 1;
+	private Optional<ValidatorDurationStats> durationStats = Optional.empty();
 
 	public CompoundDaoValidator(List<? extends DaoValidator> validators) {
 		this.validators = new ArrayList<>(validators);
@@ -30,6 +34,12 @@ public class CompoundDaoValidator implements DaoValidator {
 		return this;
 	}
 
+	public CompoundDaoValidator withDurationStats(
+			ValidatorDurationStats durationStats) {
+		this.durationStats = Optional.ofNullable(durationStats);
+		return this;
+	}
+
 	public void validate(DaoValidator.Context context) {
 		ExecutorService exec = Executors.newFixedThreadPool(numThreads);
 		if (verbose && numThreads > 1) {
@@ -37,29 +47,69 @@ public class CompoundDaoValidator implements DaoValidator {
 					.println("Parallelizing with " + numThreads + " threads.");
 		}
 		try {
-			List<Callable<Boolean>> callables = new ArrayList<>();
-			for (DaoValidator validator : validators) {
-				callables.add(() -> {
-					if (verbose) {
-						System.out.println("Running validator: "
-								+ validator.getClass().getSimpleName());
-					}
-					validator.validate(context);
-					return true;
-				});
+			List<Future<Boolean>> results = exec.invokeAll(getTasks(context));
+			for (Future<Boolean> result : results) {
+				// Fail as the validation scheduler does
+				result.get();
 			}
-			List<Future<Boolean>> results = exec.invokeAll(callables);
-			results.forEach(f -> {
-				try {
-					f.get();
-				} catch (ExecutionException | InterruptedException e) {
-					e.printStackTrace();
-				}
-			});
+		} catch (ExecutionException e) {
+			throw new RuntimeException("DAO validation failed", e.getCause());
 		} catch (InterruptedException e) {
-			e.printStackTrace();
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("DAO validation interrupted", e);
 		} finally {
 			exec.shutdown();
 		}
 	}
+
+	/**
+	 * @return One task per validator, to be run by the caller on any executor.
+	 *         In multi-threaded mode, the tasks are ordered longest-first.
+	 */
+	public List<Callable<Boolean>> getTasks(DaoValidator.Context context) {
+		List<Callable<Boolean>> callables = new ArrayList<>();
+		for (DaoValidator validator : getScheduledValidators()) {
+			callables.add(() -> {
+				if (verbose) {
+					System.out.println("Running validator: "
+							+ validator.getClass().getSimpleName());
+				}
+				long start = System.currentTimeMillis();
+				validator.validate(context);
+				long end = System.currentTimeMillis();
+				durationStats.ifPresent(ds -> ds.record(validator, end - start));
+				return true;
+			});
+		}
+		return callables;
+	}
+
+	/*
+	 * When running in parallel, start the longest validators first, to prevent
+	 * a long one to start last and determine the total running time. If we
+	 * have recorded durations for all validators, use them. Otherwise rely on
+	 * the static cost hints, using the recorded durations for ties. When
+	 * running on a single thread, keep the default (stable) order.
+	 */
+	private List<? extends DaoValidator> getScheduledValidators() {
+		if (numThreads <= 1)
+			return validators;
+		List<DaoValidator> ret = new ArrayList<>(validators);
+		boolean allRecorded = ret.stream().allMatch(v -> durationStats
+				.flatMap(ds -> ds.getDurationMs(v)).isPresent());
+		Comparator<DaoValidator> byRecordedDuration = Comparator
+				.comparing(v -> durationStats.flatMap(ds -> ds.getDurationMs(v))
+						.orElse(0L));
+		Comparator<DaoValidator> byCostHint = Comparator
+				.comparing(this::getCostHint);
+		ret.sort(allRecorded ? byRecordedDuration.reversed()
+				: byCostHint.thenComparing(byRecordedDuration).reversed());
+		return ret;
+	}
+
+	private ValidatorCostHint.Cost getCostHint(DaoValidator validator) {
+		ValidatorCostHint hint = validator.getClass()
+				.getAnnotation(ValidatorCostHint.class);
+		return hint == null ? ValidatorCostHint.Cost.LOW : hint.value();
+	}
 }
@@ -3,18 +3,32 @@ package com.mecatran.gtfsvtor.validation.impl;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
+import com.mecatran.gtfsvtor.dao.IndexedReadOnlyDao;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.GtfsTripTimesPattern;
 import com.mecatran.gtfsvtor.validation.DaoValidator.Context;
+import com.mecatran.gtfsvtor.validation.PatternAwareTripTimesValidator;
 import com.mecatran.gtfsvtor.validation.TripTimesValidator;
 
 public class CompoundTripTimesValidator implements TripTimesValidator {
 
 	private List<? extends TripTimesValidator> validators;
+	private List<TripTimesValidator> plainValidators = new ArrayList<>();
+	private List<PatternAwareTripTimesValidator> patternValidators = new ArrayList<>();
 
 	public CompoundTripTimesValidator(
 			List<? extends TripTimesValidator> validators) {
 		this.validators = new ArrayList<>(validators);
+		for (TripTimesValidator validator : validators) {
+			if (validator instanceof PatternAwareTripTimesValidator)
+				patternValidators
+						.add((PatternAwareTripTimesValidator) validator);
+			else
+				plainValidators.add(validator);
+		}
 	}
 
 	public List<? extends TripTimesValidator> getValidators() {
@@ -31,6 +45,44 @@ public class CompoundTripTimesValidator implements TripTimesValidator {
 		validators.forEach(v -> v.validate(context, tripAndTimes));
 	}
 
+	/**
+	 * Validate all trips of a route, in a single pass over them. Plain
+	 * validators get each trip, in the route order. Trips are grouped by stop
+	 * and time patterns only if some pattern-aware validators are enabled, and
+	 * only for them, once all trips have been seen. The DAO must be closed, for
+	 * the route int index to be defined.
+	 */
+	public void validateRoute(Context context, int routeIndex) {
+		IndexedReadOnlyDao dao = context.getDao();
+		Consumer<GtfsTripAndTimes> validateTrip = tripAndTimes -> plainValidators
+				.forEach(v -> v.validate(context, tripAndTimes));
+		Stream<GtfsTripAndTimes> tripsAndTimes = dao
+				.getTripsAndTimesOfRoute(routeIndex);
+		if (patternValidators.isEmpty()) {
+			tripsAndTimes.forEach(validateTrip);
+			return;
+		}
+		// Grouping consumes the whole stream, validating each trip on the way
+		GtfsTripTimesPattern.groupByPattern(tripsAndTimes.peek(validateTrip))
+				.forEach(pattern -> patternValidators
+						.forEach(v -> v.validatePattern(context, pattern)));
+	}
+
+	@Override
+	public void merge(Context context, TripTimesValidator other) {
+		/*
+		 * Both compounds are built by the same injector, with the same config:
+		 * they contain the same validator classes, in the same order.
+		 */
+		List<? extends TripTimesValidator> others = ((CompoundTripTimesValidator) other).validators;
+		if (others.size() != validators.size())
+			throw new IllegalArgumentException(
+					"Cannot merge compound validators of different sizes");
+		for (int i = 0; i < validators.size(); i++) {
+			validators.get(i).merge(context, others.get(i));
+		}
+	}
+
 	@Override
 	public void end(Context context) {
 		validators.forEach(v -> v.end(context));
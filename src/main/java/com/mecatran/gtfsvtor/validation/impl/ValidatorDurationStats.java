@@ -0,0 +1,79 @@
+package com.mecatran.gtfsvtor.validation.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Per-validator durations recorded across validation runs, persisted in a
+ * small local properties file (validator class name -> duration in ms). A new
+ * duration is averaged with the previously recorded one, to smooth out the
+ * variations between runs.
+ */
+public class ValidatorDurationStats {
+
+	private File statsFile;
+	private boolean verbose;
+	private Map<String, Long> durations = new ConcurrentHashMap<>();
+
+	/**
+	 * @param verbose Print load and save errors. Those are not fatal, the
+	 *        durations are only a scheduling hint.
+	 */
+	public ValidatorDurationStats(File statsFile, boolean verbose) {
+		this.statsFile = statsFile;
+		this.verbose = verbose;
+		if (statsFile.exists() && statsFile.canRead()) {
+			Properties props = new Properties();
+			try (InputStream is = new FileInputStream(statsFile)) {
+				props.load(is);
+			} catch (IOException e) {
+				if (verbose) {
+					System.out.println("Cannot load validator durations from "
+							+ statsFile + ": " + e.getMessage());
+				}
+			}
+			for (Map.Entry<Object, Object> kv : props.entrySet()) {
+				try {
+					durations.put(kv.getKey().toString(),
+							Long.parseLong(kv.getValue().toString()));
+				} catch (NumberFormatException e) {
+					// Ignore bogus entry, it will be overwritten
+				}
+			}
+		}
+	}
+
+	public Optional<Long> getDurationMs(Object validator) {
+		return Optional.ofNullable(durations.get(getKey(validator)));
+	}
+
+	public void record(Object validator, long durationMs) {
+		durations.merge(getKey(validator), durationMs,
+				(prev, last) -> (prev + last) / 2);
+	}
+
+	public void save() {
+		Properties props = new Properties();
+		durations.forEach((k, v) -> props.setProperty(k, Long.toString(v)));
+		try (OutputStream os = new FileOutputStream(statsFile)) {
+			props.store(os, "GTFSVTOR validator durations (ms)");
+		} catch (IOException e) {
+			if (verbose) {
+				System.out.println("Cannot save validator durations to "
+						+ statsFile + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private String getKey(Object validator) {
+		return validator.getClass().getName();
+	}
+}
@@ -89,6 +89,16 @@ public class DropOffPickUpTypeForSplitOrJoinedTripsValidator
 			tripsPerEndKey.put(tripEndKey.get(), trip.getId());
 	}
 
+	@Override
+	public void merge(Context context, TripTimesValidator other) {
+		// Routes are never split across instances, only flush the last one
+		DropOffPickUpTypeForSplitOrJoinedTripsValidator o = (DropOffPickUpTypeForSplitOrJoinedTripsValidator) other;
+		o.processTripsOfRoute(context);
+		o.tripsPerStartKey.clear();
+		o.tripsPerEndKey.clear();
+		o.tripAndTripTimesPerTripId.clear();
+	}
+
 	@Override
 	public void end(Context context) {
 		processTripsOfRoute(context);
@@ -1,5 +1,6 @@
 package com.mecatran.gtfsvtor.validation.triptimes;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import com.mecatran.gtfsvtor.dao.IndexedReadOnlyDao;
@@ -8,32 +9,53 @@ import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
 import com.mecatran.gtfsvtor.model.GtfsTripStopSequence;
+import com.mecatran.gtfsvtor.model.GtfsTripTimesPattern;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.DuplicatedStopSequenceError;
 import com.mecatran.gtfsvtor.validation.DaoValidator.Context;
-import com.mecatran.gtfsvtor.validation.TripTimesValidator;
+import com.mecatran.gtfsvtor.validation.PatternAwareTripTimesValidator;
 
-public class DuplicatedStopSequenceValidator implements TripTimesValidator {
+public class DuplicatedStopSequenceValidator
+		implements PatternAwareTripTimesValidator {
 
 	@Override
-	public void validate(Context context, GtfsTripAndTimes tripAndTimes) {
+	public void validatePattern(Context context,
+			GtfsTripTimesPattern pattern) {
 		IndexedReadOnlyDao dao = context.getDao();
 		ReportSink reportSink = context.getReportSink();
-		GtfsTrip trip = tripAndTimes.getTrip();
-		List<GtfsStopTime> stopTimes = tripAndTimes.getStopTimes();
-		GtfsTripStopSequence lastSeq = null;
-		GtfsStopTime lastStopTime = null;
-		for (GtfsStopTime stopTime : stopTimes) {
-			GtfsTripStopSequence seq = stopTime.getStopSequence();
-			if (seq == null)
+		StopTimeCursor cursor = pattern.getStopTimeCursor();
+		int lastSeq = StopTimeCursor.NO_VALUE;
+		int lastPosition = -1;
+		// Positions of each duplicated pair, rare
+		List<int[]> duplicates = null;
+		while (cursor.next()) {
+			int seq = cursor.getStopSequence();
+			if (seq == StopTimeCursor.NO_VALUE)
 				continue;
-			if (seq.equals(lastSeq)) {
-				GtfsRoute route = dao.getRoute(trip.getRouteId());
-				reportSink.report(new DuplicatedStopSequenceError(route, trip,
-						lastStopTime, stopTime, seq));
+			if (seq == lastSeq) {
+				if (duplicates == null)
+					duplicates = new ArrayList<>();
+				duplicates.add(new int[] { lastPosition, cursor.getPosition() });
 			}
 			lastSeq = seq;
-			lastStopTime = stopTime;
+			lastPosition = cursor.getPosition();
+		}
+		if (duplicates == null)
+			return;
+
+		// Same stop times for all trips, report for each of them
+		for (GtfsTripAndTimes tripAndTimes : pattern.getTrips()) {
+			GtfsTrip trip = tripAndTimes.getTrip();
+			GtfsRoute route = dao.getRoute(trip.getRouteId());
+			List<GtfsStopTime> stopTimes = tripAndTimes.getStopTimes();
+			for (int[] duplicate : duplicates) {
+				GtfsStopTime stopTime1 = stopTimes.get(duplicate[0]);
+				GtfsStopTime stopTime2 = stopTimes.get(duplicate[1]);
+				GtfsTripStopSequence seq = stopTime2.getStopSequence();
+				reportSink.report(new DuplicatedStopSequenceError(route, trip,
+						stopTime1, stopTime2, seq));
+			}
 		}
 	}
 }
@@ -1,6 +1,7 @@
 package com.mecatran.gtfsvtor.validation.triptimes;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Objects;
 
@@ -11,9 +12,9 @@ import com.mecatran.gtfsvtor.dao.CalendarIndex;
 import com.mecatran.gtfsvtor.dao.CalendarIndex.OverlappingCalendarInfo;
 import com.mecatran.gtfsvtor.dao.IndexedReadOnlyDao;
 import com.mecatran.gtfsvtor.model.GtfsRoute;
-import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.DuplicatedTripIssue;
 import com.mecatran.gtfsvtor.validation.ConfigurableOption;
@@ -42,7 +43,6 @@ public class DuplicatedTripsValidator implements TripTimesValidator {
 	public void validate(Context context, GtfsTripAndTimes tripAndTimes) {
 
 		GtfsTrip trip = tripAndTimes.getTrip();
-		List<GtfsStopTime> stopTimes = tripAndTimes.getStopTimes();
 		if (!Objects.equals(lastRouteId, trip.getRouteId())) {
 			// Process trips route by route to reduce memory usage
 			processTripsOfRoute(context);
@@ -50,10 +50,19 @@ public class DuplicatedTripsValidator implements TripTimesValidator {
 		}
 		lastRouteId = trip.getRouteId();
 
-		Object tripKey = computeTripKey(trip, stopTimes);
+		Object tripKey = computeTripKey(trip,
+				tripAndTimes.getStopTimeCursor());
 		tripsPerKey.put(tripKey, trip.getId());
 	}
 
+	@Override
+	public void merge(Context context, TripTimesValidator other) {
+		// Routes are never split across instances, only flush the last one
+		DuplicatedTripsValidator o = (DuplicatedTripsValidator) other;
+		o.processTripsOfRoute(context);
+		o.tripsPerKey.clear();
+	}
+
 	@Override
 	public void end(Context context) {
 		processTripsOfRoute(context);
@@ -87,16 +96,39 @@ public class DuplicatedTripsValidator implements TripTimesValidator {
 		}
 	}
 
-	private Object computeTripKey(GtfsTrip trip, List<GtfsStopTime> stopTimes) {
-		// Store references only to save space
+	private static class TripKey {
+		private List<Object> refs;
+		private int[] times;
+
+		@Override
+		public int hashCode() {
+			return refs.hashCode() * 31 + Arrays.hashCode(times);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (obj == this)
+				return true;
+			if (!(obj instanceof TripKey))
+				return false;
+			TripKey other = (TripKey) obj;
+			// Times are cheaper to compare and differ most often
+			return Arrays.equals(times, other.times)
+					&& refs.equals(other.refs);
+		}
+	}
+
+	private Object computeTripKey(GtfsTrip trip, StopTimeCursor cursor) {
+		// Store references and primitive times only to save space
 		// No need to store route, as we process trips route by route
 		List<Object> retval = new ArrayList<>();
+		int[] times = new int[cursor.size() * 2];
 		/*
 		 * Adding entities that differs most often at the start of the list will
 		 * optimize the List.equals() method, which will be often called in hash
 		 * map.
 		 */
-		retval.add(stopTimes.size());
+		retval.add(cursor.size());
 		if (includeDirection)
 			retval.add(trip.getDirectionId());
 		if (includeHeadsign)
@@ -105,13 +137,17 @@ public class DuplicatedTripsValidator implements TripTimesValidator {
 			retval.add(trip.getShortName());
 		if (includeBlockId)
 			retval.add(trip.getBlockId());
-		for (GtfsStopTime stopTime : stopTimes) {
-			retval.add(stopTime.getStopId());
-			retval.add(stopTime.getDepartureTime());
-			retval.add(stopTime.getArrivalTime());
+		int i = 0;
+		while (cursor.next()) {
+			retval.add(cursor.getStopId());
+			times[i++] = cursor.getDepartureSecond();
+			times[i++] = cursor.getArrivalSecond();
 			// TODO Add option to include other fields
 		}
-		return retval;
+		TripKey tripKey = new TripKey();
+		tripKey.refs = retval;
+		tripKey.times = times;
+		return tripKey;
 	}
 
 }
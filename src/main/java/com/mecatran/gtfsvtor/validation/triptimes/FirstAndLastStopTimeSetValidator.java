@@ -7,34 +7,48 @@ import com.mecatran.gtfsvtor.model.GtfsRoute;
 import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.GtfsTripTimesPattern;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.FirstOrLastStopTimeMissingError;
 import com.mecatran.gtfsvtor.validation.DaoValidator.Context;
-import com.mecatran.gtfsvtor.validation.TripTimesValidator;
+import com.mecatran.gtfsvtor.validation.PatternAwareTripTimesValidator;
 
-public class FirstAndLastStopTimeSetValidator implements TripTimesValidator {
+public class FirstAndLastStopTimeSetValidator
+		implements PatternAwareTripTimesValidator {
 
 	@Override
-	public void validate(Context context, GtfsTripAndTimes tripAndTimes) {
+	public void validatePattern(Context context,
+			GtfsTripTimesPattern pattern) {
 		IndexedReadOnlyDao dao = context.getDao();
 		ReportSink reportSink = context.getReportSink();
-		GtfsTrip trip = tripAndTimes.getTrip();
-		List<GtfsStopTime> stopTimes = tripAndTimes.getStopTimes();
+		StopTimeCursor cursor = pattern.getStopTimeCursor();
 
-		if (stopTimes.isEmpty())
+		if (!cursor.next())
 			return;
 
-		GtfsStopTime firstStopTime = stopTimes.get(0);
-		GtfsStopTime lastStopTime = stopTimes.get(stopTimes.size() - 1);
-		if (firstStopTime.getDepartureTime() == null) {
-			GtfsRoute route = dao.getRoute(trip.getRouteId());
-			reportSink.report(new FirstOrLastStopTimeMissingError(true, route,
-					trip, firstStopTime));
-		}
-		if (lastStopTime.getDepartureTime() == null) {
+		boolean firstMissing = cursor
+				.getDepartureSecond() == StopTimeCursor.NO_VALUE;
+		cursor.last();
+		boolean lastMissing = cursor
+				.getDepartureSecond() == StopTimeCursor.NO_VALUE;
+		int lastPosition = cursor.getPosition();
+		if (!firstMissing && !lastMissing)
+			return;
+
+		// Same stop times for all trips, report for each of them
+		for (GtfsTripAndTimes tripAndTimes : pattern.getTrips()) {
+			GtfsTrip trip = tripAndTimes.getTrip();
 			GtfsRoute route = dao.getRoute(trip.getRouteId());
-			reportSink.report(new FirstOrLastStopTimeMissingError(false, route,
-					trip, lastStopTime));
+			List<GtfsStopTime> stopTimes = tripAndTimes.getStopTimes();
+			if (firstMissing) {
+				reportSink.report(new FirstOrLastStopTimeMissingError(true,
+						route, trip, stopTimes.get(0)));
+			}
+			if (lastMissing) {
+				reportSink.report(new FirstOrLastStopTimeMissingError(false,
+						route, trip, stopTimes.get(lastPosition)));
+			}
 		}
 	}
 
@@ -20,12 +20,16 @@ import com.mecatran.gtfsvtor.model.GtfsLogicalTime;
 import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.GtfsTripTimesPattern;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.OverlappingBlockIdIssue;
 import com.mecatran.gtfsvtor.validation.DaoValidator.Context;
+import com.mecatran.gtfsvtor.validation.PatternAwareTripTimesValidator;
 import com.mecatran.gtfsvtor.validation.TripTimesValidator;
 
-public class OverlappingBlockIdValidator implements TripTimesValidator {
+public class OverlappingBlockIdValidator
+		implements PatternAwareTripTimesValidator {
 
 	// TODO Handle frequencies when loaded
 
@@ -45,29 +49,52 @@ public class OverlappingBlockIdValidator implements TripTimesValidator {
 	}
 
 	@Override
-	public void validate(Context context, GtfsTripAndTimes tripAndTimes) {
-		GtfsTrip trip = tripAndTimes.getTrip();
-		GtfsBlockId blockId = trip.getBlockId();
-		if (blockId == null)
-			return; // Skip
-		List<GtfsStopTime> stopTimes = tripAndTimes.getStopTimes();
-		if (stopTimes.size() < 2)
+	public void validatePattern(Context context,
+			GtfsTripTimesPattern pattern) {
+		StopTimeCursor cursor = pattern.getStopTimeCursor();
+		if (cursor.size() < 2)
 			return; // Bogus trip
-		GtfsStopTime first = stopTimes.get(0);
-		GtfsStopTime last = stopTimes.get(stopTimes.size() - 1);
-		GtfsLogicalTime depart = first.getDepartureOrArrivalTime();
-		GtfsLogicalTime arrive = last.getArrivalOrDepartureTime();
-		if (depart == null || arrive == null)
+		cursor.next();
+		int departSec = cursor.getDepartureOrArrivalSecond();
+		cursor.last();
+		int arriveSec = cursor.getArrivalOrDepartureSecond();
+		if (departSec == StopTimeCursor.NO_VALUE
+				|| arriveSec == StopTimeCursor.NO_VALUE)
 			return; // Bogus trip
-		if (depart.equals(arrive))
+		if (departSec == arriveSec)
 			return; // Bogus trip, and will fail anyway
-		if (arrive.compareTo(depart) < 0)
+		if (arriveSec < departSec)
 			return; // Bogus trip
-		BlockInfo blockInfo = blocks.computeIfAbsent(blockId,
-				b -> new BlockInfo());
-		blockInfo.trips.add(trip);
-		blockInfo.tripStartAt.put(depart, trip);
-		blockInfo.tripEndAt.put(arrive, trip);
+		// Only times are shifted from one trip to the other
+		List<GtfsTripAndTimes> trips = pattern.getTrips();
+		for (int i = 0; i < trips.size(); i++) {
+			GtfsTrip trip = trips.get(i).getTrip();
+			GtfsBlockId blockId = trip.getBlockId();
+			if (blockId == null)
+				continue; // Skip
+			int shift = pattern.getTimeShift(i);
+			GtfsLogicalTime depart = GtfsLogicalTime.getTime(departSec + shift);
+			GtfsLogicalTime arrive = GtfsLogicalTime.getTime(arriveSec + shift);
+			BlockInfo blockInfo = blocks.computeIfAbsent(blockId,
+					b -> new BlockInfo());
+			blockInfo.trips.add(trip);
+			blockInfo.tripStartAt.put(depart, trip);
+			blockInfo.tripEndAt.put(arrive, trip);
+		}
+	}
+
+	@Override
+	public void merge(Context context, TripTimesValidator other) {
+		// A block can span several routes, merge trips of each block
+		OverlappingBlockIdValidator o = (OverlappingBlockIdValidator) other;
+		o.blocks.forEach((blockId, otherInfo) -> {
+			BlockInfo blockInfo = blocks.computeIfAbsent(blockId,
+					b -> new BlockInfo());
+			blockInfo.trips.addAll(otherInfo.trips);
+			blockInfo.tripStartAt.putAll(otherInfo.tripStartAt);
+			blockInfo.tripEndAt.putAll(otherInfo.tripEndAt);
+		});
+		o.blocks.clear();
 	}
 
 	@Override
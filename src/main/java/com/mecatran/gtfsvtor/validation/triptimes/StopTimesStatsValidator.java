@@ -1,10 +1,7 @@
 package com.mecatran.gtfsvtor.validation.triptimes;
 
-import java.util.List;
-
-import com.mecatran.gtfsvtor.model.GtfsLogicalTime;
-import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 import com.mecatran.gtfsvtor.utils.Histogram;
 import com.mecatran.gtfsvtor.validation.DaoValidator.Context;
 import com.mecatran.gtfsvtor.validation.DefaultDisabledValidator;
@@ -31,30 +28,31 @@ public class StopTimesStatsValidator implements TripTimesValidator {
 
 	@Override
 	public void validate(Context context, GtfsTripAndTimes tripAndTimes) {
-		List<GtfsStopTime> stopTimes = tripAndTimes.getStopTimes();
-
-		GtfsStopTime lastValidStopTime = null;
-		for (GtfsStopTime stopTime : stopTimes) {
-			GtfsLogicalTime departureTime = stopTime
-					.getDepartureOrArrivalTime();
-			GtfsLogicalTime arrivalTime = stopTime.getArrivalOrDepartureTime();
-			if (arrivalTime != null) {
-				if (lastValidStopTime != null) {
-					int hopSec = arrivalTime.getSecondSinceMidnight()
-							- lastValidStopTime.getDepartureOrArrivalTime()
-									.getSecondSinceMidnight();
+		StopTimeCursor cursor = tripAndTimes.getStopTimeCursor();
+
+		int lastValidDepartureSec = StopTimeCursor.NO_VALUE;
+		while (cursor.next()) {
+			int departureSec = cursor.getDepartureOrArrivalSecond();
+			int arrivalSec = cursor.getArrivalOrDepartureSecond();
+			if (arrivalSec != StopTimeCursor.NO_VALUE) {
+				if (lastValidDepartureSec != StopTimeCursor.NO_VALUE) {
+					int hopSec = arrivalSec - lastValidDepartureSec;
 					hop.count(hopSec);
 				}
-				lastValidStopTime = stopTime;
-				if (departureTime != null) {
-					int slackSec = departureTime.getSecondSinceMidnight()
-							- arrivalTime.getSecondSinceMidnight();
-					slack.count(slackSec);
-				}
+				lastValidDepartureSec = departureSec;
+				int slackSec = departureSec - arrivalSec;
+				slack.count(slackSec);
 			}
 		}
 	}
 
+	@Override
+	public void merge(Context context, TripTimesValidator other) {
+		StopTimesStatsValidator o = (StopTimesStatsValidator) other;
+		hop.merge(o.hop);
+		slack.merge(o.slack);
+	}
+
 	@Override
 	public void end(Context context) {
 		System.out.println("Departure -> Arrival sec delays histogram:");
@@ -1,13 +1,16 @@
 package com.mecatran.gtfsvtor.validation.triptimes;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
 import com.mecatran.gtfsvtor.dao.IndexedReadOnlyDao;
 import com.mecatran.gtfsvtor.dao.LinearGeometryIndex;
-import com.mecatran.gtfsvtor.dao.LinearGeometryIndex.ProjectedPoint;
+import com.mecatran.gtfsvtor.dao.LinearGeometryIndex.ProjectedShapePattern;
 import com.mecatran.gtfsvtor.model.GtfsLogicalTime;
 import com.mecatran.gtfsvtor.model.GtfsRoute;
 import com.mecatran.gtfsvtor.model.GtfsRouteType;
@@ -15,6 +18,8 @@ import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
 import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.GtfsTripTimesPattern;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 import com.mecatran.gtfsvtor.reporting.ReportIssueSeverity;
 import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.TimeTravelError;
@@ -22,10 +27,11 @@ import com.mecatran.gtfsvtor.reporting.issues.TooFastTravelIssue;
 import com.mecatran.gtfsvtor.reporting.issues.TooManyStopWithSameTimeIssue;
 import com.mecatran.gtfsvtor.validation.ConfigurableOption;
 import com.mecatran.gtfsvtor.validation.DaoValidator.Context;
-import com.mecatran.gtfsvtor.validation.TripTimesValidator;
+import com.mecatran.gtfsvtor.validation.PatternAwareTripTimesValidator;
 import com.mecatran.gtfsvtor.validation.ValidatorConfig;
 
-public class TooFastTravelValidator implements TripTimesValidator {
+public class TooFastTravelValidator
+		implements PatternAwareTripTimesValidator {
 
 	// TODO Each configurable speed are not described right now
 
@@ -36,90 +42,152 @@ public class TooFastTravelValidator implements TripTimesValidator {
 	private int maxStopsWithSameTime = 5;
 
 	@Override
-	public void validate(Context context, GtfsTripAndTimes tripAndTimes) {
+	public void validatePattern(Context context,
+			GtfsTripTimesPattern pattern) {
+		/*
+		 * Time deltas are the same for all trips of the pattern, but the
+		 * slack depends on exact seconds, which depends on the time shift: if
+		 * all times of the pattern are on the same second of the minute, a trip
+		 * has exact seconds only if its base time is not on a round minute.
+		 */
+		StopTimeCursor cursor = pattern.getStopTimeCursor();
+		int baseSec = StopTimeCursor.NO_VALUE;
+		boolean mixedSeconds = false;
+		while (cursor.next()) {
+			int arrivalSec = cursor.getArrivalSecond();
+			int departureSec = cursor.getDepartureSecond();
+			if (baseSec == StopTimeCursor.NO_VALUE)
+				baseSec = cursor.getArrivalOrDepartureSecond();
+			if (arrivalSec != StopTimeCursor.NO_VALUE
+					&& (arrivalSec - baseSec) % 60 != 0)
+				mixedSeconds = true;
+			if (departureSec != StopTimeCursor.NO_VALUE
+					&& (departureSec - baseSec) % 60 != 0)
+				mixedSeconds = true;
+		}
+		/*
+		 * Projections depend on the shape, and max speed on the route: trips
+		 * with the same route, shape and slack share the same results.
+		 */
+		List<GtfsTripAndTimes> trips = pattern.getTrips();
+		Map<List<Object>, List<Integer>> tripIndexesPerKey = new LinkedHashMap<>();
+		for (int i = 0; i < trips.size(); i++) {
+			GtfsTrip trip = trips.get(i).getTrip();
+			boolean hasExactSeconds = baseSec != StopTimeCursor.NO_VALUE
+					&& (mixedSeconds || Math.floorMod(
+							baseSec + pattern.getTimeShift(i), 60) != 0);
+			tripIndexesPerKey
+					.computeIfAbsent(Arrays.asList(trip.getRouteId(),
+							trip.getShapeId(), hasExactSeconds),
+							k -> new ArrayList<>())
+					.add(i);
+		}
+		tripIndexesPerKey.forEach((key, tripIndexes) -> validateTrips(context,
+				pattern, tripIndexes, (Boolean) key.get(2)));
+	}
+
+	private void validateTrips(Context context, GtfsTripTimesPattern pattern,
+			List<Integer> tripIndexes, boolean hasExactSeconds) {
 		IndexedReadOnlyDao dao = context.getDao();
 		LinearGeometryIndex lgi = dao.getLinearGeometryIndex();
 		ReportSink reportSink = context.getReportSink();
-		GtfsTrip trip = tripAndTimes.getTrip();
-		List<GtfsStopTime> stopTimes = tripAndTimes.getStopTimes();
-		GtfsRoute route = dao.getRoute(trip.getRouteId());
+		List<GtfsTripAndTimes> trips = pattern.getTrips();
+		GtfsTrip refTrip = trips.get(tripIndexes.get(0)).getTrip();
+		GtfsRoute route = dao.getRoute(refTrip.getRouteId());
+		Optional<? extends ProjectedShapePattern> oProjectedPattern = lgi
+				.getProjectedPattern(refTrip.getId());
+		if (!oProjectedPattern.isPresent())
+			return;
+		// Resolved once, the loop below only reads the array
+		double[] arcLengthsMeters = oProjectedPattern.get()
+				.getArcLengthsMeters();
 
 		double maxSpeedMps = getMaxSpeedMps(route, context.getConfig());
-		boolean hasExactSeconds = false;
-		for (GtfsStopTime stopTime : stopTimes) {
-			if (stopTime.getArrivalTime() != null
-					&& stopTime.getArrivalTime().getSecond() != 0) {
-				hasExactSeconds = true;
-				break;
-			}
-			if (stopTime.getDepartureTime() != null
-					&& stopTime.getDepartureTime().getSecond() != 0) {
-				hasExactSeconds = true;
-				break;
-			}
-		}
 		int slackSec = hasExactSeconds ? 0 : 60;
-		GtfsStopTime lastValidStopTime = null;
-		ProjectedPoint lastValidProjectedPoint = null;
+		int lastValidPosition = -1;
+		int lastValidDepartureSec = StopTimeCursor.NO_VALUE;
+		int lastValidArrivalSec = StopTimeCursor.NO_VALUE;
+		GtfsStop.Id lastValidStopId = null;
+		double lastValidArcLengthMeters = Double.NaN;
 		int sameTimeCounter = 1;
-		for (GtfsStopTime stopTime : stopTimes) {
-			Optional<ProjectedPoint> oProjectedPoint = lgi
-					.getProjectedPoint(stopTime);
-			GtfsLogicalTime arrivalTime = stopTime.getArrivalOrDepartureTime();
-			if (oProjectedPoint.isPresent() && arrivalTime != null) {
-				Optional<Double> oArcLen = oProjectedPoint.get()
-						.getArcLengthMeters();
-				if (oArcLen.isPresent()) {
-					if (lastValidStopTime != null) {
-						double d = oArcLen.get() - lastValidProjectedPoint
-								.getArcLengthMeters().get();
-						int t = arrivalTime.getSecondSinceMidnight()
-								- lastValidStopTime.getDepartureOrArrivalTime()
-										.getSecondSinceMidnight();
-						if (t < 0) {
-							// Time-travel
-							GtfsStop stop1 = dao
-									.getStop(lastValidStopTime.getStopId());
-							GtfsStop stop2 = dao.getStop(stopTime.getStopId());
-							reportSink.report(new TimeTravelError(route, trip,
-									lastValidStopTime, stop1, stopTime, stop2));
-						} else {
-							// Forward-time
-							if (t == 0) {
-								sameTimeCounter++;
-							} else {
-								if (sameTimeCounter > maxStopsWithSameTime) {
-									reportSink.report(
-											new TooManyStopWithSameTimeIssue(
-													route, trip, arrivalTime,
-													sameTimeCounter));
-								}
-								sameTimeCounter = 1;
-							}
-							double speedMps = d / (t + slackSec);
-							if (speedMps > maxSpeedMps) {
-								// Too fast travel
-								GtfsStop stop1 = dao
-										.getStop(lastValidStopTime.getStopId());
-								GtfsStop stop2 = dao
-										.getStop(stopTime.getStopId());
-								ReportIssueSeverity severity = getSeverity(
-										speedMps, maxSpeedMps);
-								reportSink.report(new TooFastTravelIssue(route,
-										trip, lastValidStopTime, stop1,
-										stopTime, stop2, d, speedMps,
-										maxSpeedMps, severity));
+		StopTimeCursor cursor = pattern.getStopTimeCursor();
+		while (cursor.next()) {
+			int arrivalSec = cursor.getArrivalOrDepartureSecond();
+			if (arrivalSec == StopTimeCursor.NO_VALUE)
+				continue;
+			int position = cursor.getPosition();
+			if (position >= arcLengthsMeters.length)
+				break;
+			double arcLengthMeters = arcLengthsMeters[position];
+			if (Double.isNaN(arcLengthMeters))
+				continue;
+			if (lastValidPosition >= 0) {
+				double d = arcLengthMeters - lastValidArcLengthMeters;
+				int t = arrivalSec - lastValidDepartureSec;
+				if (t < 0) {
+					// Time-travel
+					GtfsStop stop1 = dao.getStop(lastValidStopId);
+					GtfsStop stop2 = dao.getStop(cursor.getStopId());
+					for (int i : tripIndexes) {
+						List<GtfsStopTime> stopTimes = trips.get(i)
+								.getStopTimes();
+						reportSink.report(new TimeTravelError(route,
+								trips.get(i).getTrip(),
+								stopTimes.get(lastValidPosition), stop1,
+								stopTimes.get(position), stop2));
+					}
+				} else {
+					// Forward-time
+					if (t == 0) {
+						sameTimeCounter++;
+					} else {
+						if (sameTimeCounter > maxStopsWithSameTime) {
+							for (int i : tripIndexes) {
+								int shift = pattern.getTimeShift(i);
+								reportSink.report(
+										new TooManyStopWithSameTimeIssue(route,
+												trips.get(i).getTrip(),
+												GtfsLogicalTime.getTime(
+														arrivalSec + shift),
+												sameTimeCounter));
 							}
 						}
+						sameTimeCounter = 1;
+					}
+					double speedMps = d / (t + slackSec);
+					if (speedMps > maxSpeedMps) {
+						// Too fast travel
+						GtfsStop stop1 = dao.getStop(lastValidStopId);
+						GtfsStop stop2 = dao.getStop(cursor.getStopId());
+						ReportIssueSeverity severity = getSeverity(speedMps,
+								maxSpeedMps);
+						for (int i : tripIndexes) {
+							List<GtfsStopTime> stopTimes = trips.get(i)
+									.getStopTimes();
+							reportSink.report(new TooFastTravelIssue(route,
+									trips.get(i).getTrip(),
+									stopTimes.get(lastValidPosition), stop1,
+									stopTimes.get(position), stop2,
+									d, speedMps, maxSpeedMps, severity));
+						}
 					}
-					lastValidStopTime = stopTime;
-					lastValidProjectedPoint = oProjectedPoint.get();
 				}
 			}
+			lastValidPosition = position;
+			lastValidDepartureSec = cursor.getDepartureOrArrivalSecond();
+			lastValidArrivalSec = cursor.getArrivalSecond();
+			lastValidStopId = cursor.getStopId();
+			lastValidArcLengthMeters = arcLengthMeters;
 		}
 		if (sameTimeCounter > maxStopsWithSameTime) {
-			reportSink.report(new TooManyStopWithSameTimeIssue(route, trip,
-					lastValidStopTime.getArrivalTime(), sameTimeCounter));
+			for (int i : tripIndexes) {
+				reportSink.report(new TooManyStopWithSameTimeIssue(route,
+						trips.get(i).getTrip(),
+						lastValidArrivalSec == StopTimeCursor.NO_VALUE ? null
+								: GtfsLogicalTime.getTime(lastValidArrivalSec
+										+ pattern.getTimeShift(i)),
+						sameTimeCounter));
+			}
 		}
 	}
 
@@ -5,15 +5,16 @@ import java.util.stream.Collectors;
 
 import com.mecatran.gtfsvtor.dao.IndexedReadOnlyDao;
 import com.mecatran.gtfsvtor.model.GtfsStop;
-import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsStopType;
-import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
+import com.mecatran.gtfsvtor.model.GtfsTripTimesPattern;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 import com.mecatran.gtfsvtor.reporting.ReportSink;
 import com.mecatran.gtfsvtor.reporting.issues.UnusedObjectWarning;
 import com.mecatran.gtfsvtor.validation.DaoValidator.Context;
+import com.mecatran.gtfsvtor.validation.PatternAwareTripTimesValidator;
 import com.mecatran.gtfsvtor.validation.TripTimesValidator;
 
-public class UnusedStopsValidator implements TripTimesValidator {
+public class UnusedStopsValidator implements PatternAwareTripTimesValidator {
 
 	private Set<GtfsStop.Id> unusedStopsIds;
 
@@ -27,13 +28,22 @@ public class UnusedStopsValidator implements TripTimesValidator {
 	}
 
 	@Override
-	public void validate(Context context, GtfsTripAndTimes tripAndTimes) {
-		/* Remove all stops from unused stops */
-		for (GtfsStopTime stopTime : tripAndTimes.getStopTimes()) {
-			unusedStopsIds.remove(stopTime.getStopId());
+	public void validatePattern(Context context,
+			GtfsTripTimesPattern pattern) {
+		/* Remove all stops from unused stops, once for all trips */
+		StopTimeCursor cursor = pattern.getStopTimeCursor();
+		while (cursor.next()) {
+			unusedStopsIds.remove(cursor.getStopId());
 		}
 	}
 
+	@Override
+	public void merge(Context context, TripTimesValidator other) {
+		/* A stop is unused only if it is unused for all instances */
+		UnusedStopsValidator o = (UnusedStopsValidator) other;
+		unusedStopsIds.retainAll(o.unusedStopsIds);
+	}
+
 	@Override
 	public void end(Context context) {
 		IndexedReadOnlyDao dao = context.getDao();
@@ -0,0 +1,97 @@
+package com.mecatran.gtfsvtor.loader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.mecatran.gtfsvtor.loader.impl.ApacheCommonsCsvDataTable;
+import com.mecatran.gtfsvtor.loader.impl.UnivocityCsvDataTable;
+import com.mecatran.gtfsvtor.loader.impl.Utf8CsvDataTable;
+
+/**
+ * Compare the parsing speed of the various CSV data table implementations,
+ * side-by-side. Each row is read as the loader would do: all columns are read
+ * once, and checked for invalid encoding.
+ *
+ * Usage: CsvDataTableBenchmark [file.txt...]. Without arguments, use a
+ * generated stop_times.txt-like content.
+ */
+public class CsvDataTableBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String args[]) throws IOException {
+		List<byte[]> contents = new ArrayList<>();
+		if (args.length == 0) {
+			contents.add(generateStopTimes(1000000));
+		} else {
+			for (String arg : args)
+				contents.add(Files.readAllBytes(Paths.get(arg)));
+		}
+		long totalSize = contents.stream().mapToLong(c -> c.length).sum();
+		System.out.println("Parsing " + totalSize / 1024 + "kb of data, "
+				+ ROUNDS + " rounds");
+
+		Map<String, DataTable.Factory> factories = new LinkedHashMap<>();
+		factories.put("Univocity", UnivocityCsvDataTable.factory());
+		factories.put("ApacheCommons", ApacheCommonsCsvDataTable.factory());
+		factories.put("Utf8", Utf8CsvDataTable.factory());
+
+		for (int round = 0; round < ROUNDS; round++) {
+			for (Map.Entry<String, DataTable.Factory> kv : factories
+					.entrySet()) {
+				long start = System.currentTimeMillis();
+				long nRows = 0;
+				for (byte[] content : contents) {
+					nRows += parse(kv.getValue(), content);
+				}
+				long end = System.currentTimeMillis();
+				System.out.println(String.format(
+						"Round %d: %-14s %8d rows in %6d ms", round + 1,
+						kv.getKey(), nRows, end - start));
+			}
+		}
+	}
+
+	private static long parse(DataTable.Factory factory, byte[] content)
+			throws IOException {
+		long nRows = 0;
+		try (DataTable table = factory.createDataTable("test",
+				new ByteArrayInputStream(content))) {
+			List<String> headers = table.getColumnHeaders();
+			for (DataRow row : table) {
+				for (String header : headers) {
+					String value = row.getString(header);
+					if (value != null && row.hasInvalidEncoding(header, value))
+						throw new IllegalStateException(
+								"Invalid encoding: " + value);
+				}
+				nRows++;
+			}
+		}
+		return nRows;
+	}
+
+	private static byte[] generateStopTimes(int nRows) {
+		StringBuilder sb = new StringBuilder(nRows * 64);
+		sb.append("trip_id,arrival_time,departure_time,stop_id,"
+				+ "stop_sequence,stop_headsign,pickup_type,drop_off_type,"
+				+ "shape_dist_traveled\n");
+		for (int i = 0; i < nRows; i++) {
+			int t = 6 * 3600 + i % 50000;
+			String time = String.format("%02d:%02d:%02d", t / 3600,
+					t / 60 % 60, t % 60);
+			sb.append("T").append(i / 30).append(',').append(time)
+					.append(',').append(time).append(",S").append(i % 5000)
+					.append(',').append(i % 30).append(",\"Gare, Centre\",0,0,")
+					.append(i % 30 * 123.4).append('\n');
+		}
+		return sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+}
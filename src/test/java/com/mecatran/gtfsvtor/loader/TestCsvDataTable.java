@@ -0,0 +1,288 @@
+package com.mecatran.gtfsvtor.loader;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+import com.mecatran.gtfsvtor.loader.impl.CsvDataSource;
+import com.mecatran.gtfsvtor.loader.impl.FileSystemDataSource;
+import com.mecatran.gtfsvtor.loader.impl.SourceInfoDataReloader;
+import com.mecatran.gtfsvtor.loader.impl.UnivocityCsvDataTable;
+import com.mecatran.gtfsvtor.loader.impl.Utf8CsvDataTable;
+import com.mecatran.gtfsvtor.model.DataObjectSourceRef;
+
+public class TestCsvDataTable {
+
+	private static final String[] FIELDS = { "a", "b", "c", "d", "e" };
+
+	@Test
+	public void testUtf8TableEdgeCases() throws IOException {
+		String[] contents = { "", "\n\n", "a,b\n", "a,b", " a , b \n1,2\n",
+				"\"a\",\" b \"\n1,2\n", "a,b\r\n1,2\r\n\r\n3,4\r\n",
+				"a,b\n\n  \n1,2\n,\n3,4", "a,b\n1,\"x\ny\"\n3,4\n",
+				"a,b\n\"x\"\"y\",\"\"\n\" \",\"\"\"\"\n",
+				"a,b\nab\"c\"d,\"ab\"cd\n\"x\" y, \"x\" \n",
+				"a,b\n\"\"\n,,\n1,2,3\n", "a,b\n1,\"2\n\n3\n",
+				"﻿a,b\nété,中\n",
+				"a,b\n\u0000x,�\n\t1\t, 2\u0000\n",
+				"a,a,b\n1,2,3\n", "\"a\nb\",c\n1,2\n" };
+		for (String content : contents) {
+			compareTables(content.getBytes(StandardCharsets.UTF_8));
+		}
+		// Malformed UTF-8
+		compareTables(new byte[] { 'a', ',', 'b', '\n', (byte) 0xC3, 'x',
+				',', (byte) 0xED, (byte) 0xA0, (byte) 0x80, '\n',
+				(byte) 0xF0, (byte) 0x9F, (byte) 0x98, (byte) 0x80, ',',
+				(byte) 0xE2, (byte) 0x82 });
+		// UTF-16 with BOM
+		byte[] utf16 = "﻿a,b\né,2\n"
+				.getBytes(StandardCharsets.UTF_16LE);
+		compareTables(utf16);
+	}
+
+	@Test
+	public void testUtf8TableOnTestData() throws IOException {
+		List<File> files;
+		try (Stream<java.nio.file.Path> paths = Files
+				.walk(new File("src/test/resources/data").toPath())) {
+			files = paths.filter(p -> p.toString().endsWith(".txt"))
+					.map(java.nio.file.Path::toFile)
+					.collect(Collectors.toList());
+		}
+		for (File file : files) {
+			compareTables(Files.readAllBytes(file.toPath()));
+		}
+	}
+
+	@Test
+	public void testUtf8TableLargeInput() throws IOException {
+		// Records overlapping read buffers and value chunks
+		StringBuilder sb = new StringBuilder("a,b,c\n");
+		for (int i = 0; i < 50000; i++) {
+			sb.append(i).append(",\"value ").append(i)
+					.append(" \"\"quoted\"\"\", été ").append(i)
+					.append("\n");
+		}
+		compareTables(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testTableSeek() throws IOException {
+		/*
+		 * With BOM, multi-line records and blank lines. Larger than the read
+		 * ahead of the parsers, to seek both in and past the read buffers.
+		 */
+		StringBuilder sb = new StringBuilder("\uFEFFa,b,c\n");
+		for (int i = 0; i < 150000; i++) {
+			sb.append(i).append(",\"été\n").append(i).append("\",")
+					.append(i % 7 == 0 ? "\n\n" : "x\n");
+		}
+		byte[] content = sb.toString().getBytes(StandardCharsets.UTF_8);
+		for (DataTable.Factory factory : Arrays.asList(
+				Utf8CsvDataTable.factory(), UnivocityCsvDataTable.factory())) {
+			DataTable table = factory.createDataTable("test",
+					new ByteArrayInputStream(content));
+			Map<Long, List<String>> fieldsPerLine = new HashMap<>();
+			for (DataRow row : table) {
+				fieldsPerLine.put(table.getCurrentLineNumber(),
+						row.getSourceInfo().getFields());
+			}
+			table.close();
+			LineIndex lineIndex = table.getLineIndex().get();
+			assertTrue(lineIndex.size() > 10);
+
+			List<Long> lines = fieldsPerLine.keySet().stream().sorted()
+					.collect(Collectors.toList());
+			for (int i = 0; i < lines.size(); i += 9973) {
+				long line = lines.get(i);
+				DataTable table2 = factory.createDataTable("test",
+						new ByteArrayInputStream(content));
+				LineIndex.Checkpoint checkpoint = lineIndex
+						.getCheckpoint(line).get();
+				table2.seek(checkpoint);
+				List<String> fields = null;
+				for (DataRow row : table2) {
+					if (table2.getCurrentLineNumber() == line) {
+						fields = row.getSourceInfo().getFields();
+						break;
+					}
+				}
+				assertEquals(fieldsPerLine.get(line), fields);
+				assertEquals(Arrays.asList("a", "b", "c"),
+						table2.getColumnHeaders());
+				table2.close();
+			}
+		}
+	}
+
+	@Test
+	public void testSourceInfoReloadWithLineIndex() throws IOException {
+		File dir = Files.createTempDirectory("gtfsvtor").toFile();
+		File file = new File(dir, "test.txt");
+		StringBuilder sb = new StringBuilder("a,b\n");
+		for (int i = 0; i < 30000; i++) {
+			sb.append(i).append(",\"v").append(i).append("\"\n");
+		}
+		Files.write(file.toPath(),
+				sb.toString().getBytes(StandardCharsets.UTF_8));
+		file.deleteOnExit();
+		dir.deleteOnExit();
+
+		for (int test = 0; test < 4; test++) {
+			boolean memoryMapped = test % 2 == 1;
+			NamedTabularDataSource dataSource = new CsvDataSource(
+					new FileSystemDataSource(dir)
+							.withMemoryMapped(memoryMapped));
+			if (test >= 2) {
+				// Default (Univocity) parser for the first tests
+				((CsvDataSource) dataSource)
+						.setDataTableFactory(Utf8CsvDataTable.factory());
+			}
+			SourceInfoDataReloader reloader = new SourceInfoDataReloader(
+					dataSource);
+			// First complete read, building the line index
+			DataTable table = dataSource.getDataTable("test.txt");
+			for (DataRow row : table) {
+				if (table.getCurrentLineNumber() % 10000 == 7)
+					reloader.registerSourceRef(row.getSourceRef());
+			}
+			table.close();
+			assertTrue(dataSource.getLineIndex("test.txt").isPresent());
+			reloader.registerSourceRef(
+					new DataObjectSourceRef("test.txt", 1));
+			for (long line : new long[] { 7, 10007, 20007 }) {
+				DataObjectSourceInfo info = reloader
+						.getSourceInfo(new DataObjectSourceRef("test.txt",
+								line))
+						.get();
+				assertEquals(
+						Arrays.asList("" + (line - 2), "v" + (line - 2)),
+						info.getFields());
+			}
+			assertEquals(Arrays.asList("a", "b"),
+					reloader.getSourceInfo(
+							new DataObjectSourceRef("test.txt", 1)).get()
+							.getTable().getHeaderColumns());
+		}
+	}
+
+	@Test
+	public void testSourceInfoPrefetch() throws IOException {
+		File dir = Files.createTempDirectory("gtfsvtor").toFile();
+		dir.deleteOnExit();
+		List<DataObjectSourceRef> refs = new ArrayList<>();
+		for (String tableName : Arrays.asList("t1.txt", "t2.txt", "t3.txt")) {
+			File file = new File(dir, tableName);
+			file.deleteOnExit();
+			StringBuilder sb = new StringBuilder("a,b\n");
+			for (int i = 0; i < 1000; i++) {
+				sb.append(tableName).append(",").append(i).append("\n");
+			}
+			Files.write(file.toPath(),
+					sb.toString().getBytes(StandardCharsets.UTF_8));
+			for (long line = 1; line < 1000; line += 97)
+				refs.add(new DataObjectSourceRef(tableName, line));
+		}
+		NamedTabularDataSource csvDataSource = new CsvDataSource(
+				new FileSystemDataSource(dir));
+		AtomicInteger nScans = new AtomicInteger();
+		NamedTabularDataSource dataSource = new NamedTabularDataSource() {
+			@Override
+			public DataTable getDataTable(String tableName)
+					throws IOException {
+				nScans.incrementAndGet();
+				return csvDataSource.getDataTable(tableName);
+			}
+
+			@Override
+			public Collection<String> getUnreadEntries() {
+				return csvDataSource.getUnreadEntries();
+			}
+		};
+		// Bound smaller than the number of refs, to force evictions
+		SourceInfoDataReloader reloader = new SourceInfoDataReloader(
+				dataSource).withNumThreads(3).withMaxSourceInfos(10);
+		refs.forEach(reloader::registerSourceRef);
+		reloader.prefetchSourceInfos(refs);
+		for (DataObjectSourceRef ref : refs) {
+			DataObjectSourceInfo info = reloader.getSourceInfo(ref).get();
+			assertEquals(ref.getLineNumber(), info.getLineNumber());
+			if (ref.getLineNumber() > 1) {
+				assertEquals(Arrays.asList(ref.getTableName(),
+						"" + (ref.getLineNumber() - 2)), info.getFields());
+			}
+		}
+		/*
+		 * 33 refs, 11 per table, read in chunks of 10 refs: a table is scanned
+		 * once per chunk it appears in, and not once per ref.
+		 */
+		assertEquals(6, nScans.get());
+		// Unknown ref
+		assertFalse(reloader
+				.getSourceInfo(new DataObjectSourceRef("t1.txt", 5))
+				.isPresent());
+	}
+
+	private void compareTables(byte[] content) throws IOException {
+		DataTable expected = new UnivocityCsvDataTable("test",
+				new ByteArrayInputStream(content));
+		DataTable actual = new Utf8CsvDataTable("test",
+				new ByteArrayInputStream(content));
+		assertEquals(expected.isEmpty(), actual.isEmpty());
+		assertEquals(expected.getCharset(), actual.getCharset());
+		if (expected.isEmpty())
+			return;
+		assertEquals(expected.getColumnHeaders(), actual.getColumnHeaders());
+		assertEquals(expected.getRawColumnHeaders(),
+				actual.getRawColumnHeaders());
+		Iterator<DataRow> expectedRows = expected.iterator();
+		Iterator<DataRow> actualRows = actual.iterator();
+		while (expectedRows.hasNext()) {
+			assertEquals(true, actualRows.hasNext());
+			DataRow expectedRow = expectedRows.next();
+			DataRow actualRow = actualRows.next();
+			assertEquals(expected.getCurrentLineNumber(),
+					actual.getCurrentLineNumber());
+			assertEquals(expectedRow.getSourceRef(), actualRow.getSourceRef());
+			assertEquals(expectedRow.getRecordCount(),
+					actualRow.getRecordCount());
+			assertEquals(expectedRow.getSourceInfo().getFields(),
+					actualRow.getSourceInfo().getFields());
+			List<String> fields = new ArrayList<>(
+					expected.getColumnHeaders());
+			for (String field : FIELDS)
+				fields.add(field);
+			for (String field : fields) {
+				String value = expectedRow.getString(field);
+				assertEquals(value, actualRow.getString(field));
+				if (value != null) {
+					assertEquals(expectedRow.hasInvalidEncoding(field, value),
+							actualRow.hasInvalidEncoding(field, value));
+				}
+			}
+		}
+		assertEquals(false, actualRows.hasNext());
+		assertEquals(expected.getUnreadColumnHeaders(),
+				actual.getUnreadColumnHeaders());
+		expected.close();
+		actual.close();
+	}
+}
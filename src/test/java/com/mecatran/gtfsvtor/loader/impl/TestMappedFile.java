@@ -0,0 +1,57 @@
+package com.mecatran.gtfsvtor.loader.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+public class TestMappedFile {
+
+	@Test
+	public void testChunkedMapping() throws IOException {
+		File file = File.createTempFile("gtfsvtor", ".txt");
+		file.deleteOnExit();
+		byte[] content = new byte[10000];
+		for (int i = 0; i < content.length; i++)
+			content[i] = (byte) (i * 31);
+		Files.write(file.toPath(), content);
+
+		for (int chunkSize : Arrays.asList(7, 1000, 10000, 1 << 20)) {
+			MappedFile mappedFile = new MappedFile(file, chunkSize);
+			assertEquals(content.length, mappedFile.length());
+			try (InputStream in = mappedFile.getInputStream()) {
+				assertArrayEquals(content, IOUtils.toByteArray(in));
+			}
+			for (int offset : Arrays.asList(0, 6, 7, 999, 5000, 10000)) {
+				try (InputStream in = mappedFile.getInputStream(offset)) {
+					assertArrayEquals(
+							Arrays.copyOfRange(content, offset,
+									content.length),
+							IOUtils.toByteArray(in));
+				}
+			}
+			// Several independent streams on the same mapping
+			InputStream in1 = mappedFile.getInputStream();
+			InputStream in2 = mappedFile.getInputStream();
+			assertEquals(1000, in1.skip(1000));
+			assertEquals(content[1000] & 0xFF, in1.read());
+			assertEquals(content[0] & 0xFF, in2.read());
+		}
+	}
+
+	@Test
+	public void testEmptyFile() throws IOException {
+		File file = File.createTempFile("gtfsvtor", ".txt");
+		file.deleteOnExit();
+		MappedFile mappedFile = new MappedFile(file);
+		assertEquals(0, mappedFile.length());
+		assertEquals(-1, mappedFile.getInputStream().read());
+	}
+}
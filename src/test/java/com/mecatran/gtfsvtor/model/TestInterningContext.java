@@ -0,0 +1,116 @@
+package com.mecatran.gtfsvtor.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TestInterningContext {
+
+	@Test
+	public void testScope() {
+		try (InterningContext context = InterningContext.open()) {
+			assertSame(GtfsStop.id("S1"), GtfsStop.id("S1"));
+			assertSame(GtfsBlockId.fromValue("B1"),
+					GtfsBlockId.fromValue("B1"));
+			assertSame(GtfsLogicalTime.getTime(8, 0, 0),
+					GtfsLogicalTime.getTime(8 * 3600));
+			assertSame(GtfsLogicalDate.getDate(2020, 1, 10),
+					GtfsLogicalDate.getDate(2020, 1, 9).next());
+			assertTrue(context.size() >= 3);
+			GtfsStop.Id s1 = GtfsStop.id("S1");
+			// A nested run has its own context
+			try (InterningContext context2 = InterningContext.open()) {
+				assertNotSame(context, context2);
+				assertSame(context2, InterningContext.getCurrent());
+				assertSame(GtfsStop.id("S1"), GtfsStop.id("S1"));
+				assertNotSame(s1, GtfsStop.id("S1"));
+				assertEquals(1, context2.size());
+			}
+			assertSame(context, InterningContext.getCurrent());
+			assertSame(s1, GtfsStop.id("S1"));
+		}
+		// Everything is released after the run ends
+		assertNull(InterningContext.getCurrent());
+		// No interning outside a run, but still value semantics
+		assertNotSame(GtfsStop.id("S1"), GtfsStop.id("S1"));
+		assertEquals(GtfsStop.id("S1"), GtfsStop.id("S1"));
+		assertEquals(GtfsLogicalDate.getDate(2020, 1, 10),
+				GtfsLogicalDate.getDate(2020, 1, 9).next());
+		try (InterningContext context = InterningContext.open()) {
+			assertEquals(0, context.size());
+		}
+	}
+
+	@Test
+	public void testConcurrentRuns() throws Exception {
+		CountDownLatch opened = new CountDownLatch(2);
+		CountDownLatch closed = new CountDownLatch(1);
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			// Two overlapping runs, each in its own thread
+			List<Future<GtfsStop.Id>> futures = new ArrayList<>();
+			for (int t = 0; t < 2; t++) {
+				String stopId = "S" + t;
+				futures.add(executor.submit(() -> {
+					try (InterningContext context = InterningContext.open()) {
+						GtfsStop.Id id = GtfsStop.id(stopId);
+						opened.countDown();
+						opened.await();
+						assertEquals(1, context.size());
+						if (stopId.equals("S0")) {
+							// Wait for the other run to end
+							closed.await();
+							assertSame(id, GtfsStop.id(stopId));
+						} else {
+							context.close();
+							closed.countDown();
+							assertEquals(0, context.size());
+							assertNull(InterningContext.getCurrent());
+						}
+						return id;
+					}
+				}));
+			}
+			assertNotSame(futures.get(0).get(), futures.get(1).get());
+			assertNull(InterningContext.getCurrent());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testConcurrentInterning() throws Exception {
+		try (InterningContext context = InterningContext.open()) {
+			// Threads created during the run are bound to its context
+			ExecutorService executor = Executors.newFixedThreadPool(4);
+			List<Future<List<GtfsTrip.Id>>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(() -> {
+					List<GtfsTrip.Id> ids = new ArrayList<>();
+					for (int i = 0; i < 10000; i++)
+						ids.add(GtfsTrip.id("T" + i));
+					return ids;
+				}));
+			}
+			List<GtfsTrip.Id> expected = futures.get(0).get();
+			for (Future<List<GtfsTrip.Id>> future : futures) {
+				List<GtfsTrip.Id> ids = future.get();
+				for (int i = 0; i < ids.size(); i++)
+					assertSame(expected.get(i), ids.get(i));
+			}
+			assertEquals(10000, context.size());
+			executor.shutdown();
+		}
+	}
+}
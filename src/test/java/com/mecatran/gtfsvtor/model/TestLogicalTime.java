@@ -3,6 +3,7 @@ package com.mecatran.gtfsvtor.model;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 import java.text.ParseException;
@@ -26,6 +27,37 @@ public class TestLogicalTime {
 		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("10:30"));
 		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("x"));
 		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("999:30:00"));
+		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("1a:30:00"));
+		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("10:3 :00"));
+		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("10:30:-1"));
+		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("-1:30:00"));
+		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("10:61:00"));
+		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("169:00:00"));
+		assertException(() -> GtfsLogicalTime.parseFromHH_MM_SS("10-30-00"));
+
+		assertEquals(GtfsLogicalTime.getTime(8, 5, 0),
+				GtfsLogicalTime.parseFromHH_MM_SS("8:05:00"));
+		assertEquals(GtfsLogicalTime.getTime(8, 5, 0),
+				GtfsLogicalTime.parseFromHH_MM_SS("08:05:00"));
+		assertEquals(GtfsLogicalTime.getTime(99, 60, 60),
+				GtfsLogicalTime.parseFromHH_MM_SS("99:60:60"));
+		assertEquals(GtfsLogicalTime.getTime(25, 0, 0),
+				GtfsLogicalTime.parseFromHH_MM_SS(new StringBuilder("25:00:00")));
+	}
+
+	@Test
+	public void testCache() throws ParseException {
+		assertSame(GtfsLogicalTime.getTime(10, 30, 0),
+				GtfsLogicalTime.parseFromHH_MM_SS("10:30:00"));
+		assertSame(GtfsLogicalTime.getTime(0),
+				GtfsLogicalTime.getTime(0, 0, 0));
+		// Out of the cached range
+		GtfsLogicalTime negative = GtfsLogicalTime.getTime(-3600);
+		assertEquals(-3600, negative.getSecondSinceMidnight());
+		assertEquals(negative, GtfsLogicalTime.getTime(-1, 0, 0));
+		GtfsLogicalTime large = GtfsLogicalTime.getTime(200, 0, 0);
+		assertEquals(200 * 3600, large.getSecondSinceMidnight());
+		assertEquals(large, GtfsLogicalTime.getTime(200 * 3600));
 	}
 
 	@FunctionalInterface
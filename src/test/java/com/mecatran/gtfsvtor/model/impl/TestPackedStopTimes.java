@@ -1,27 +1,46 @@
 package com.mecatran.gtfsvtor.model.impl;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import org.junit.Test;
 
+import com.mecatran.gtfsvtor.dao.packing.ByteArena;
 import com.mecatran.gtfsvtor.dao.packing.GtfsIdIndexer;
+import com.mecatran.gtfsvtor.dao.packing.ListPacker;
+import com.mecatran.gtfsvtor.dao.stoptimes.ArenaStopTimesDao;
+import com.mecatran.gtfsvtor.dao.stoptimes.AutoSwitchStopTimesDao;
+import com.mecatran.gtfsvtor.dao.stoptimes.ExternalSortStopTimesDao;
+import com.mecatran.gtfsvtor.dao.stoptimes.MappedStopTimesDao;
 import com.mecatran.gtfsvtor.dao.stoptimes.PackedStopTimes;
 import com.mecatran.gtfsvtor.dao.stoptimes.PackedUnsortedStopTimes;
 import com.mecatran.gtfsvtor.dao.stoptimes.PackingStopTimesDao;
 import com.mecatran.gtfsvtor.dao.stoptimes.PackingUnsortedStopTimesDao;
+import com.mecatran.gtfsvtor.dao.stoptimes.StopTimesDao;
 import com.mecatran.gtfsvtor.model.GtfsDropoffType;
 import com.mecatran.gtfsvtor.model.GtfsLogicalTime;
 import com.mecatran.gtfsvtor.model.GtfsPickupType;
 import com.mecatran.gtfsvtor.model.GtfsStop;
 import com.mecatran.gtfsvtor.model.GtfsStopTime;
 import com.mecatran.gtfsvtor.model.GtfsTrip;
+import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
 import com.mecatran.gtfsvtor.model.GtfsTripStopSequence;
+import com.mecatran.gtfsvtor.model.GtfsTripTimesPattern;
+import com.mecatran.gtfsvtor.model.StopTimeCursor;
 
 public class TestPackedStopTimes {
 
@@ -30,6 +49,8 @@ public class TestPackedStopTimes {
 				new GtfsIdIndexer.GtfsStopIdIndexer());
 		private PackedUnsortedStopTimes.Context pusContext = new PackingUnsortedStopTimesDao.DefaultContext(
 				new GtfsIdIndexer.GtfsStopIdIndexer());
+		private ArenaStopTimesDao arenaDao = new ArenaStopTimesDao(10,
+				new GtfsIdIndexer.GtfsStopIdIndexer());
 	}
 
 	@Test
@@ -216,6 +237,308 @@ public class TestPackedStopTimes {
 		List<GtfsStopTime> stopTimes3 = pust.getStopTimes(tripId,
 				pb.pusContext);
 		assertStopTimes(stopTimesRef, stopTimes3);
+
+		List<GtfsStopTime> stopTimes4 = pb.arenaDao.unpack(tripId,
+				pb.arenaDao.pack(tripId, new ArrayList<>(stopTimesRef)));
+		assertStopTimes(stopTimesRef, stopTimes4);
+	}
+
+	@Test
+	public void testStopTimesDaos() throws ParseException {
+		Random rand = new Random(42L);
+		Map<GtfsTrip.Id, List<GtfsStopTime>> stopTimesPerTrip = new HashMap<>();
+		List<GtfsStopTime> allStopTimes = new ArrayList<>();
+		for (int i = 0; i < 500; i++) {
+			String tripId = "T" + i;
+			List<GtfsStopTime> stopTimes = new ArrayList<>();
+			int n = rand.nextInt(30) + 1;
+			int time = rand.nextInt(20000);
+			for (int j = 0; j < n; j++) {
+				time += rand.nextInt(300);
+				stopTimes.add(stopTime(tripId, j, "S" + rand.nextInt(50), 0,
+						time, 0, time, null,
+						rand.nextInt(10) < 3 ? "Headsign été" : null));
+			}
+			stopTimesPerTrip.put(GtfsTrip.id(tripId), stopTimes);
+			allStopTimes.addAll(stopTimes);
+		}
+		// Interleave a bit, forcing some trips to be re-opened
+		for (int i = 0; i < allStopTimes.size() - 10; i += 7) {
+			Collections.swap(allStopTimes, i, i + rand.nextInt(10));
+		}
+		checkStopTimesDaos(stopTimesPerTrip, allStopTimes);
+		// Fully unsorted, overflowing delta chunks
+		Collections.shuffle(allStopTimes, rand);
+		checkStopTimesDaos(stopTimesPerTrip, allStopTimes);
+	}
+
+	private void checkStopTimesDaos(
+			Map<GtfsTrip.Id, List<GtfsStopTime>> stopTimesPerTrip,
+			List<GtfsStopTime> allStopTimes) {
+		List<StopTimesDao> daos = Arrays.asList(
+				new PackingStopTimesDao(3,
+						new GtfsIdIndexer.GtfsStopIdIndexer()),
+				new PackingStopTimesDao(3,
+						new GtfsIdIndexer.GtfsStopIdIndexer())
+								.withPackingThreads(4),
+				new ArenaStopTimesDao(3, new GtfsIdIndexer.GtfsStopIdIndexer()),
+				new MappedStopTimesDao(3,
+						new GtfsIdIndexer.GtfsStopIdIndexer()),
+				new AutoSwitchStopTimesDao(3,
+						new GtfsIdIndexer.GtfsStopIdIndexer())
+								.withRepackOnClose(true),
+				new ExternalSortStopTimesDao(
+						new GtfsIdIndexer.GtfsStopIdIndexer()).withRunSize(100));
+		for (StopTimesDao dao : daos) {
+			allStopTimes.forEach(dao::addStopTime);
+			dao.close();
+			assertEquals(allStopTimes.size(), dao.getStopTimesCount());
+			Map<Object, List<GtfsTrip.Id>> tripsPerPattern = new HashMap<>();
+			for (Map.Entry<GtfsTrip.Id, List<GtfsStopTime>> kv : stopTimesPerTrip
+					.entrySet()) {
+				GtfsTripAndTimes tripTimes = dao.getStopTimesOfTrip(kv.getKey(),
+						null);
+				// Check the cursor first, before stop times are loaded
+				assertCursor(kv.getValue(), tripTimes.getStopTimeCursor());
+				assertStopTimes(kv.getValue(), tripTimes.getStopTimes());
+				tripsPerPattern
+						.computeIfAbsent(tripTimes.getStopPatternKey(),
+								k -> new ArrayList<>())
+						.add(kv.getKey());
+			}
+			// Trips with the same stop pattern share the same key
+			for (List<GtfsTrip.Id> tripIds : tripsPerPattern.values()) {
+				List<GtfsStop.Id> stopIds = stopIds(
+						stopTimesPerTrip.get(tripIds.get(0)));
+				for (GtfsTrip.Id tripId : tripIds)
+					assertEquals(stopIds,
+							stopIds(stopTimesPerTrip.get(tripId)));
+			}
+			assertTrue(dao.getStopTimesOfTrip(GtfsTrip.id("X"), null)
+					.getStopTimes().isEmpty());
+			assertFalse(dao.getStopTimesOfTrip(GtfsTrip.id("X"), null)
+					.getStopTimeCursor().next());
+		}
+	}
+
+	@Test
+	public void testTripTimesPatterns() {
+		List<GtfsStopTime> allStopTimes = new ArrayList<>();
+		// T1 and T2 share the same pattern, shifted by 1h30m
+		for (String tripId : Arrays.asList("T1", "T2")) {
+			int base = tripId.equals("T1") ? 8 * 3600 : 9 * 3600 + 1800;
+			allStopTimes.add(stopTime(tripId, 1, "A", null, base, null, base,
+					null, null));
+			allStopTimes.add(stopTime(tripId, 2, "B", null, base + 600, null,
+					base + 660, null, null));
+			allStopTimes.add(stopTime(tripId, 3, "C", null, base + 900, null,
+					null, null, null));
+		}
+		// T3 has the same stops, with other times
+		allStopTimes.add(stopTime("T3", 1, "A", null, 8 * 3600, null,
+				8 * 3600, null, null));
+		allStopTimes.add(stopTime("T3", 2, "B", null, 8 * 3600 + 700, null,
+				8 * 3600 + 700, null, null));
+		allStopTimes.add(stopTime("T3", 3, "C", null, 8 * 3600 + 900, null,
+				null, null, null));
+		List<StopTimesDao> daos = Arrays.asList(
+				new PackingStopTimesDao(3,
+						new GtfsIdIndexer.GtfsStopIdIndexer()),
+				new ArenaStopTimesDao(3, new GtfsIdIndexer.GtfsStopIdIndexer()),
+				new MappedStopTimesDao(3,
+						new GtfsIdIndexer.GtfsStopIdIndexer()));
+		for (StopTimesDao dao : daos) {
+			allStopTimes.forEach(dao::addStopTime);
+			dao.close();
+			List<GtfsTripAndTimes> trips = Arrays.asList("T1", "T2", "T3")
+					.stream()
+					.map(tripId -> dao.getStopTimesOfTrip(GtfsTrip.id(tripId),
+							null))
+					.collect(Collectors.toList());
+			List<GtfsTripTimesPattern> patterns = GtfsTripTimesPattern
+					.groupByPattern(trips.stream())
+					.collect(Collectors.toList());
+			assertEquals(2, patterns.size());
+			GtfsTripTimesPattern pattern = patterns.get(0);
+			assertEquals(2, pattern.size());
+			assertEquals(8 * 3600, trips.get(0).getBaseTime());
+			assertEquals(0, pattern.getTimeShift(0));
+			assertEquals(5400, pattern.getTimeShift(1));
+			// Reference stop times, shifted, are the ones of the other trip
+			StopTimeCursor cursor = pattern.getStopTimeCursor();
+			List<GtfsStopTime> stopTimes2 = pattern.getTrips().get(1)
+					.getStopTimes();
+			while (cursor.next()) {
+				GtfsStopTime stopTime2 = stopTimes2.get(cursor.getPosition());
+				assertEquals(stopTime2.getStopId(), cursor.getStopId());
+				assertEquals(stopTime2.getArrivalTime().getSecondSinceMidnight(),
+						cursor.getArrivalSecond() + pattern.getTimeShift(1));
+			}
+			assertEquals(1, patterns.get(1).size());
+			assertEquals(GtfsTrip.id("T3"),
+					patterns.get(1).getReferenceTrip().getStopTimes().get(0)
+							.getTripId());
+		}
+		// Without time pattern keys, trips are never grouped
+		List<GtfsTripAndTimes> listTrips = Arrays.asList("T1", "T2").stream()
+				.map(tripId -> new GtfsTripAndTimes() {
+					@Override
+					public GtfsTrip getTrip() {
+						return null;
+					}
+
+					@Override
+					public List<GtfsStopTime> getStopTimes() {
+						return allStopTimes.subList(0, 3);
+					}
+
+					@Override
+					public Object getStopPatternKey() {
+						return "P";
+					}
+				}).collect(Collectors.toList());
+		assertEquals(2,
+				GtfsTripTimesPattern.groupByPattern(listTrips.stream()).count());
+	}
+
+	@Test
+	public void testPackingPatternsCountWithInterleaving() {
+		PackingStopTimesDao dao = new PackingStopTimesDao(3,
+				new GtfsIdIndexer.GtfsStopIdIndexer());
+		int nTrips = 2000, lag = 5;
+		/*
+		 * All trips share the same pattern, but the last stop time of each trip
+		 * comes late: partial patterns are packed first, then merged.
+		 */
+		for (int i = 0; i < nTrips + lag; i++) {
+			if (i < nTrips) {
+				dao.addStopTime(stopTime("T" + i, 1, "S1", null, 3600, null,
+						3600, null, null));
+				dao.addStopTime(stopTime("T" + i, 2, "S2", null, 3700, null,
+						3700, null, null));
+			}
+			if (i >= lag) {
+				dao.addStopTime(stopTime("T" + (i - lag), 3, "S3", null, 3800,
+						null, 3800, null, null));
+			}
+		}
+		dao.close();
+		assertEquals(3 * nTrips, dao.getStopTimesCount());
+		assertEquals(1, dao.getTimePatternsCount());
+		assertEquals(1, dao.getStopPatternsCount());
+		assertEquals(3, dao.getStopTimesOfTrip(GtfsTrip.id("T42"), null)
+				.getStopTimes().size());
+	}
+
+	@Test
+	public void testIdIndexer() {
+		GtfsIdIndexer.GtfsStopIdIndexer indexer = new GtfsIdIndexer.GtfsStopIdIndexer();
+		int n = 10000;
+		for (int i = 0; i < n; i++)
+			assertEquals(i + 1, indexer.index(GtfsStop.id("S" + i)));
+		// Re-indexing an equal ID gives the same index
+		for (int i = 0; i < n; i++) {
+			assertEquals(i + 1, indexer.index(GtfsStop.id("S" + i)));
+			assertEquals(GtfsStop.id("S" + i), indexer.unindex(i + 1));
+		}
+		assertEquals(n, indexer.size());
+		assertEquals(null, indexer.unindex(0));
+		assertEquals(null, indexer.unindex(n + 1));
+		assertEquals(null, indexer.unindex(-1));
+	}
+
+	@Test
+	public void testListPackerDeltaChunks() {
+		AtomicInteger nUnpack = new AtomicInteger();
+		AtomicInteger nOverflow = new AtomicInteger();
+		ListPacker.PackerUnpacker<String, Integer, List<Integer>> packerUnpacker = new ListPacker.PackerUnpacker<String, Integer, List<Integer>>() {
+			@Override
+			public List<Integer> pack(String id, List<Integer> elems) {
+				return new ArrayList<>(elems);
+			}
+
+			@Override
+			public List<Integer> unpack(String id, List<Integer> w) {
+				nUnpack.incrementAndGet();
+				return new ArrayList<>(w);
+			}
+		};
+		ListPacker<String, Integer, List<Integer>> packer = new ListPacker<>(
+				packerUnpacker, 2).withInterleavingOverflowCallback(n -> {
+					nOverflow.incrementAndGet();
+					return true;
+				});
+		// A few late elements: appended as delta chunks, no unpacking
+		for (String id : Arrays.asList("A", "B", "C", "A", "D", "E", "B"))
+			packer.push(id, (int) id.charAt(0));
+		assertEquals(0, nUnpack.get());
+		assertEquals(0, nOverflow.get());
+		// Too many chunks for "A": merged right away, overflow reported once
+		for (int i = 0; i < 20; i++) {
+			packer.push("A", (int) 'A');
+			packer.push("X" + i, 0);
+			packer.push("Y" + i, 0);
+		}
+		assertEquals(1, nOverflow.get());
+		packer.close();
+		assertTrue(packer.deltaChunksCount() > 0);
+		assertEquals(22, packer.get("A").size());
+		assertEquals(Arrays.asList((int) 'B', (int) 'B'), packer.get("B"));
+		assertEquals(Arrays.asList((int) 'C'), packer.get("C"));
+		assertEquals(7 + 60, packer.itemsCount());
+		assertEquals(5 + 40, packer.groupCount());
+
+		// Without delta chunks, any late element unpacks the item
+		nUnpack.set(0);
+		ListPacker<String, Integer, List<Integer>> packer2 = new ListPacker<>(
+				packerUnpacker, 2).withMaxDeltaChunks(0);
+		for (String id : Arrays.asList("A", "B", "C", "A"))
+			packer2.push(id, 0);
+		assertEquals(1, nUnpack.get());
+		packer2.close();
+		assertEquals(2, packer2.get("A").size());
+	}
+
+	private List<GtfsStop.Id> stopIds(List<GtfsStopTime> stopTimes) {
+		return stopTimes.stream().map(GtfsStopTime::getStopId)
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	public void testByteArena() {
+		// Small chunks to test chunk overflow
+		ByteArena arena = new ByteArena(100);
+		List<Long> refs = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			byte[] data = new byte[1 + i % 50];
+			for (int j = 0; j < data.length; j++)
+				data[j] = (byte) (i % 300 + j);
+			long ref = arena.intern(data);
+			assertEquals(data.length, ByteArena.length(ref));
+			assertArrayEquals(data, arena.get(ref));
+			if (i >= 300)
+				assertEquals(refs.get(i - 300), Long.valueOf(ref));
+			refs.add(ref);
+		}
+		assertEquals(300, arena.getInternedCount());
+		arena.freeze();
+		long ref = arena.append(new byte[] { 1, 2, 3 });
+		assertArrayEquals(new byte[] { 1, 2, 3 }, arena.get(ref));
+		assertArrayEquals(new byte[] { 2, 3, 4 }, arena.get(refs.get(300 + 2)));
+
+		// Boundary: the largest length that fits in a reference
+		arena = new ByteArena();
+		byte[] data = new byte[ByteArena.DEFAULT_CHUNK_SIZE - 1];
+		data[data.length - 1] = 42;
+		ref = arena.append(data);
+		assertEquals(data.length, ByteArena.length(ref));
+		assertArrayEquals(data, arena.get(ref));
+		try {
+			arena.append(new byte[ByteArena.DEFAULT_CHUNK_SIZE]);
+			fail("Should have raised an exception");
+		} catch (IllegalArgumentException e) {
+			// Expected, its length would be packed as 0
+		}
 	}
 
 	public static void assertStopTimes(List<GtfsStopTime> stopTimes1,
@@ -245,6 +568,52 @@ public class TestPackedStopTimes {
 		}
 	}
 
+	public static void assertCursor(List<GtfsStopTime> stopTimes,
+			StopTimeCursor cursor) {
+		assertEquals(stopTimes.size(), cursor.size());
+		// Go twice, to check reset
+		for (int pass = 0; pass < 2; pass++) {
+			List<GtfsStopTime> materialized = new ArrayList<>();
+			for (int i = 0; i < stopTimes.size(); i++) {
+				assertTrue(cursor.next());
+				assertEquals(i, cursor.getPosition());
+				GtfsStopTime st = stopTimes.get(i);
+				assertEquals(st.getStopId(), cursor.getStopId());
+				assertEquals(st.getStopSequence().getSequence(),
+						cursor.getStopSequence());
+				assertEquals(st.getStopHeadsign(), cursor.getStopHeadsign());
+				assertEquals(
+						st.getPickupType().map(GtfsPickupType::getValue)
+								.orElse(-1).intValue(),
+						cursor.getPickupTypeCode());
+				assertEquals(
+						st.getDropoffType().map(GtfsDropoffType::getValue)
+								.orElse(-1).intValue(),
+						cursor.getDropoffTypeCode());
+				assertEquals(st.getShapeDistTraveled() != null,
+						cursor.hasShapeDistTraveled());
+				assertEquals(
+						st.getArrivalTime() == null ? StopTimeCursor.NO_VALUE
+								: st.getArrivalTime().getSecondSinceMidnight(),
+						cursor.getArrivalSecond());
+				assertEquals(st.getDepartureTime() == null
+						? StopTimeCursor.NO_VALUE
+						: st.getDepartureTime().getSecondSinceMidnight(),
+						cursor.getDepartureSecond());
+				materialized.add(cursor.getStopTime());
+			}
+			assertFalse(cursor.next());
+			assertStopTimes(stopTimes, materialized);
+			cursor.reset();
+		}
+		if (!stopTimes.isEmpty()) {
+			assertTrue(cursor.last());
+			assertEquals(stopTimes.size() - 1, cursor.getPosition());
+			assertEquals(stopTimes.get(stopTimes.size() - 1).getStopId(),
+					cursor.getStopId());
+		}
+	}
+
 	/* This test does not really test anything, it just test my memory :) */
 	@Test
 	public void testByteEncoding() throws ParseException {
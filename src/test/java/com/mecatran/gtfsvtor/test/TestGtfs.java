@@ -6,11 +6,13 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
 import java.util.Currency;
 import java.util.List;
 import java.util.Locale;
@@ -25,11 +27,22 @@ import com.mecatran.gtfsvtor.dao.DaoSpatialIndex;
 import com.mecatran.gtfsvtor.dao.IndexedReadOnlyDao;
 import com.mecatran.gtfsvtor.dao.LinearGeometryIndex;
 import com.mecatran.gtfsvtor.dao.LinearGeometryIndex.ProjectedPoint;
+import com.mecatran.gtfsvtor.dao.LinearGeometryIndex.ProjectedShapePattern;
+import com.mecatran.gtfsvtor.dao.inmemory.InMemoryDao;
+import com.mecatran.gtfsvtor.dao.inmemory.InMemoryLinearGeometryIndex;
 import com.mecatran.gtfsvtor.geospatial.GeoCoordinates;
 import com.mecatran.gtfsvtor.geospatial.Geodesics;
 import com.mecatran.gtfsvtor.lib.GtfsVtorOptions.ShapePointsDaoMode;
 import com.mecatran.gtfsvtor.lib.GtfsVtorOptions.StopTimesDaoMode;
 import com.mecatran.gtfsvtor.loader.DataObjectSourceInfo;
+import com.mecatran.gtfsvtor.loader.NamedInputStreamSource;
+import com.mecatran.gtfsvtor.loader.NamedTabularDataSource;
+import com.mecatran.gtfsvtor.loader.impl.CsvDataSource;
+import com.mecatran.gtfsvtor.loader.impl.DefaultDataLoaderContext;
+import com.mecatran.gtfsvtor.loader.impl.GtfsDataLoader;
+import com.mecatran.gtfsvtor.loader.impl.SourceInfoDataReloader;
+import com.mecatran.gtfsvtor.loader.schema.DefaultGtfsTableSchema;
+import com.mecatran.gtfsvtor.model.DataObjectSourceRef;
 import com.mecatran.gtfsvtor.model.GtfsAgency;
 import com.mecatran.gtfsvtor.model.GtfsArea;
 import com.mecatran.gtfsvtor.model.GtfsAttribution;
@@ -66,8 +79,10 @@ import com.mecatran.gtfsvtor.model.GtfsTripAndTimes;
 import com.mecatran.gtfsvtor.model.GtfsTripDirectionId;
 import com.mecatran.gtfsvtor.model.GtfsTripStopSequence;
 import com.mecatran.gtfsvtor.model.impl.InternedGtfsTranslation;
+import com.mecatran.gtfsvtor.reporting.ReportIssue;
 import com.mecatran.gtfsvtor.reporting.ReportIssueSeverity;
 import com.mecatran.gtfsvtor.reporting.SourceRefWithFields;
+import com.mecatran.gtfsvtor.reporting.impl.InMemoryReportLog;
 import com.mecatran.gtfsvtor.reporting.issues.DeprecatedColumnWarning;
 import com.mecatran.gtfsvtor.reporting.issues.DifferentHeadsignsIssue;
 import com.mecatran.gtfsvtor.reporting.issues.DifferentStationTooCloseWarning;
@@ -251,6 +266,25 @@ public class TestGtfs {
 		GtfsTrip unknownTrip = dao.getTrip(GtfsTrip.id("FOOBAR"));
 		assertNull(unknownTrip);
 
+		// Dense route indexes, in the same order as getRoutes()
+		assertEquals(5, dao.getRoutesCount());
+		List<GtfsRoute> routes = dao.getRoutes().collect(Collectors.toList());
+		for (int i = 0; i < dao.getRoutesCount(); i++) {
+			GtfsRoute route = dao.getRoute(i);
+			assertEquals(routes.get(i), route);
+			assertEquals(
+					dao.getTripsOfRoute(route.getId())
+							.map(GtfsTrip::getId).collect(Collectors.toList()),
+					dao.getTripsAndTimesOfRoute(i).map(tt -> tt.getTrip().getId())
+							.collect(Collectors.toList()));
+		}
+		assertEquals(4, dao.getTripsOfRoute(GtfsRoute.id("AAMV")).count());
+		assertEquals(0, dao.getTripsOfRoute(GtfsRoute.id("FOOBAR")).count());
+		assertEquals(dao.getTripsOfCalendar(GtfsCalendar.id("FULLW")).count(),
+				dao.getTripsCountOfCalendar(GtfsCalendar.id("FULLW")));
+		assertEquals(0,
+				dao.getTripsCountOfCalendar(GtfsCalendar.id("FOOBAR")));
+
 		List<GtfsStopTime> city1stopTimes = dao
 				.getTripAndTimes(GtfsTrip.id("CITY1")).getStopTimes();
 		assertEquals(5, city1stopTimes.size());
@@ -863,6 +897,20 @@ public class TestGtfs {
 				.get().getArcLengthMeters().get(), 1e-2);
 		assertEquals((double) 2204.38, lgi.getProjectedPoint(stopTimes.get(2))
 				.get().getArcLengthMeters().get(), 1e-2);
+		// Primitive view must match the projected points, by position
+		ProjectedShapePattern psp = lgi.getProjectedPattern(city1.getId())
+				.get();
+		double[] arcLengths = psp.getArcLengthsMeters();
+		double[] distances = psp.getDistancesToShapeMeters();
+		assertEquals(stopTimes.size(), arcLengths.length);
+		assertEquals(stopTimes.size(), distances.length);
+		for (int i = 0; i < stopTimes.size(); i++) {
+			ProjectedPoint pp = lgi.getProjectedPoint(stopTimes.get(i)).get();
+			assertEquals(pp.getArcLengthMeters().get(), arcLengths[i], 1e-10);
+			assertEquals(pp.getDistanceToShapeMeters().get(), distances[i],
+					1e-10);
+		}
+		assertFalse(lgi.getProjectedPattern(GtfsTrip.id("FOOBAR")).isPresent());
 
 		// Test spatial indexing
 		DaoSpatialIndex dsi = tb.dao.getSpatialIndex();
@@ -1095,6 +1143,32 @@ public class TestGtfs {
 				pp2.getProjectedPoint().get()) < 1);
 	}
 
+	@Test
+	public void testLoopShape() {
+		TestBundle tb = loadAndValidate("loop_shape");
+		LinearGeometryIndex lgi = tb.dao.getLinearGeometryIndex();
+
+		/*
+		 * Out-and-back shape, S1 is between both tracks and visited twice: the
+		 * shape goes far away between both visits, each visit must have its own
+		 * local minimum.
+		 */
+		List<GtfsStopTime> stopTimes = tb.dao
+				.getTripAndTimes(GtfsTrip.id("T1")).getStopTimes();
+		ProjectedPoint pp0 = lgi.getProjectedPoint(stopTimes.get(0)).get();
+		ProjectedPoint pp1 = lgi.getProjectedPoint(stopTimes.get(1)).get();
+		ProjectedPoint pp2 = lgi.getProjectedPoint(stopTimes.get(2)).get();
+		for (ProjectedPoint pp : Arrays.asList(pp0, pp1, pp2)) {
+			assertTrue(pp.getDistanceToShapeMeters().get() < 20.0);
+		}
+		double l01 = pp1.getArcLengthMeters().get()
+				- pp0.getArcLengthMeters().get();
+		double l12 = pp2.getArcLengthMeters().get()
+				- pp1.getArcLengthMeters().get();
+		assertTrue(l01 > 3000.0);
+		assertEquals(l01, l12, 1.0);
+	}
+
 	@Test
 	public void testRouteColors() {
 		TestBundle tb = loadAndValidate("route_colors");
@@ -1380,7 +1454,9 @@ public class TestGtfs {
 	@Test
 	public void testInterleavedStopTimes() {
 		for (StopTimesDaoMode daoMode : Arrays.asList(StopTimesDaoMode.AUTO,
-				StopTimesDaoMode.PACKED, StopTimesDaoMode.UNSORTED)) {
+				StopTimesDaoMode.PACKED, StopTimesDaoMode.UNSORTED,
+				StopTimesDaoMode.OFF_HEAP, StopTimesDaoMode.DISK,
+				StopTimesDaoMode.EXTERNAL_SORT)) {
 			for (int max = 3; max < 20; max += 3) {
 				// Having a small max interleaving factor will force overflow
 				// Check that this will work anyway
@@ -1388,6 +1464,8 @@ public class TestGtfs {
 						"interleaved_stoptimes");
 				scenario.maxStopTimesInterleaving = max;
 				scenario.stopTimesDaoMode = daoMode;
+				// Repack after overflow on some runs
+				scenario.repackStopTimes = max % 2 == 0;
 				TestBundle tb = scenario.run();
 				assertEquals(0,
 						tb.issuesCountOfSeverities(ReportIssueSeverity.ERROR,
@@ -1664,7 +1742,9 @@ public class TestGtfs {
 	@Test
 	public void testGoodFeedWithVariousStopTimeDaoMode() {
 		for (StopTimesDaoMode daoMode : Arrays.asList(StopTimesDaoMode.AUTO,
-				StopTimesDaoMode.PACKED, StopTimesDaoMode.UNSORTED)) {
+				StopTimesDaoMode.PACKED, StopTimesDaoMode.UNSORTED,
+				StopTimesDaoMode.OFF_HEAP, StopTimesDaoMode.DISK,
+				StopTimesDaoMode.EXTERNAL_SORT)) {
 			for (String file : Arrays.asList("good_feed", "good_feed.zip")) {
 				TestScenario testScenario = new TestScenario(file);
 				testScenario.maxStopTimesInterleaving = 5;
@@ -1675,6 +1755,83 @@ public class TestGtfs {
 		}
 	}
 
+	@Test
+	public void testMultiThreadedValidation() {
+		for (String file : Arrays.asList("verybad", "duplicate_trips",
+				"overlapping_blockid", "split_or_joined_trips",
+				"unused_stop", "interleaved_stoptimes")) {
+			TestBundle serial = new TestScenario(file).run();
+			TestScenario testScenario = new TestScenario(file);
+			testScenario.numThreads = 4;
+			TestBundle parallel = testScenario.run();
+			assertEquals(
+					serial.report.getCategories().collect(Collectors.toList()),
+					parallel.report.getCategories()
+							.collect(Collectors.toList()));
+			serial.report.getCategories()
+					.forEach(cat -> assertEquals(
+							serial.report.issuesCountOfCategory(cat)
+									.totalCount(),
+							parallel.report.issuesCountOfCategory(cat)
+									.totalCount()));
+		}
+	}
+
+	@Test
+	public void testPipelinedLoading() {
+		/*
+		 * Loading issues must be reported with the same lines, and in the
+		 * same order within a table (tables can be loaded concurrently).
+		 */
+		TestBundle serial = new TestScenario("verybad").run();
+		TestScenario testScenario = new TestScenario("verybad");
+		testScenario.numThreads = 4;
+		TestBundle pipelined = testScenario.run();
+		for (Class<? extends ReportIssue> issueClass : Arrays.asList(
+				InvalidFieldFormatError.class,
+				InconsistentNumberOfFieldsWarning.class)) {
+			List<DataObjectSourceRef> serialRefs = serial.report
+					.getReportIssues(issueClass)
+					.map(i -> i.getSourceRefs().get(0).getSourceRef())
+					.sorted(Comparator
+							.comparing(DataObjectSourceRef::getTableName))
+					.collect(Collectors.toList());
+			List<DataObjectSourceRef> pipelinedRefs = pipelined.report
+					.getReportIssues(issueClass)
+					.map(i -> i.getSourceRefs().get(0).getSourceRef())
+					.sorted(Comparator
+							.comparing(DataObjectSourceRef::getTableName))
+					.collect(Collectors.toList());
+			assertFalse(serialRefs.isEmpty());
+			assertEquals(serialRefs, pipelinedRefs);
+		}
+	}
+
+	@Test
+	public void testMemoryMappedLoading() {
+		for (String file : Arrays.asList("verybad", "good_feed")) {
+			TestBundle plain = new TestScenario(file).run();
+			TestScenario testScenario = new TestScenario(file);
+			testScenario.memoryMapped = true;
+			TestBundle mapped = testScenario.run();
+			assertEquals(
+					plain.report.getCategories().collect(Collectors.toList()),
+					mapped.report.getCategories().collect(Collectors.toList()));
+			// Order of issues with identical sort keys is not stable
+			List<String> plainFields = plain.report.getReportIssues()
+					.flatMap(i -> i.getSourceRefs().stream())
+					.map(r -> String.valueOf(plain.report
+							.getSourceInfo(r.getSourceRef()).getFields()))
+					.sorted().collect(Collectors.toList());
+			List<String> mappedFields = mapped.report.getReportIssues()
+					.flatMap(i -> i.getSourceRefs().stream())
+					.map(r -> String.valueOf(mapped.report
+							.getSourceInfo(r.getSourceRef()).getFields()))
+					.sorted().collect(Collectors.toList());
+			assertEquals(plainFields, mappedFields);
+		}
+	}
+
 	@Test
 	public void testGoodFeedWithVariousShapePointDaoMode() {
 		for (ShapePointsDaoMode daoMode : Arrays.asList(ShapePointsDaoMode.AUTO,
@@ -1714,6 +1871,68 @@ public class TestGtfs {
 		}
 	}
 
+	@Test
+	public void testIntAccessorsNeedClosedDao() {
+		InMemoryDao dao = new InMemoryDao(StopTimesDaoMode.PACKED, 3,
+				ShapePointsDaoMode.PACKED, 3);
+		try {
+			dao.getRoutesCount();
+			fail("Int-based accessors should fail while loading");
+		} catch (IllegalStateException e) {
+			// Expected
+		}
+		dao.close();
+		assertEquals(0, dao.getRoutesCount());
+	}
+
+	@Test
+	public void testParallelLinearGeometryIndex() {
+		TestBundle tb = loadAndValidate("MBTA_random_shapes");
+		LinearGeometryIndex lgi = tb.dao.getLinearGeometryIndex();
+		/*
+		 * Build the parallel index on a DAO only loaded, w/o any validation:
+		 * the indexing threads are the first to read the shapes.
+		 */
+		InMemoryDao dao = new InMemoryDao(StopTimesDaoMode.PACKED, 3,
+				ShapePointsDaoMode.PACKED, 3).withPackingThreads(4);
+		InMemoryReportLog report = new InMemoryReportLog();
+		NamedTabularDataSource dataSource = new CsvDataSource(
+				NamedInputStreamSource.autoGuess(
+						"src/test/resources/data/MBTA_random_shapes", report,
+						false));
+		report.withSourceInfoFactory(new SourceInfoDataReloader(dataSource));
+		new GtfsDataLoader(dataSource, new DefaultGtfsTableSchema())
+				.load(new DefaultDataLoaderContext(dao, dao, report,
+						(clazz, object, context) -> {
+						}));
+		LinearGeometryIndex plgi = new InMemoryLinearGeometryIndex(dao,
+				false, 4);
+		// Same patterns, in the same order
+		List<ProjectedShapePattern> psps = lgi.getProjectedPatterns()
+				.collect(Collectors.toList());
+		List<ProjectedShapePattern> ppsps = plgi.getProjectedPatterns()
+				.collect(Collectors.toList());
+		assertTrue(psps.size() > 1);
+		assertEquals(psps.size(), ppsps.size());
+		for (int i = 0; i < psps.size(); i++) {
+			assertEquals(psps.get(i).getShapeId(), ppsps.get(i).getShapeId());
+			assertEquals(
+					psps.get(i).getTripIds().collect(Collectors.toSet()),
+					ppsps.get(i).getTripIds().collect(Collectors.toSet()));
+		}
+		// Same projections, for each trip
+		tb.dao.getTrips().forEach(trip -> {
+			ProjectedShapePattern psp = lgi.getProjectedPattern(trip.getId())
+					.get();
+			ProjectedShapePattern ppsp = plgi
+					.getProjectedPattern(trip.getId()).get();
+			assertTrue(Arrays.equals(psp.getArcLengthsMeters(),
+					ppsp.getArcLengthsMeters()));
+			assertTrue(Arrays.equals(psp.getDistancesToShapeMeters(),
+					ppsp.getDistancesToShapeMeters()));
+		});
+	}
+
 	@Test
 	public void testStopAreas() {
 		TestBundle tb = loadAndValidate("stop_areas");
@@ -45,8 +45,11 @@ public class TestUtils {
 		public String gtfsFileOrDirectory;
 		public int maxStopTimesInterleaving = 3;
 		public int maxShapePointsInterleaving = 3;
+		public int numThreads = 1;
+		public boolean memoryMapped = false;
 		public boolean printIssues = false;
 		public StopTimesDaoMode stopTimesDaoMode = StopTimesDaoMode.AUTO;
+		public boolean repackStopTimes = false;
 		public ShapePointsDaoMode shapePointsDaoMode = ShapePointsDaoMode.PACKED;
 		public String htmlOutputFile = null;
 		public TestDataIO htmlDataIO = null;
@@ -97,11 +100,26 @@ public class TestUtils {
 			return maxShapePointsInterleaving;
 		}
 
+		@Override
+		public int getNumThreads() {
+			return numThreads;
+		}
+
+		@Override
+		public boolean isMemoryMapped() {
+			return memoryMapped;
+		}
+
 		@Override
 		public StopTimesDaoMode getStopTimesDaoMode() {
 			return stopTimesDaoMode;
 		}
 
+		@Override
+		public boolean isRepackStopTimes() {
+			return repackStopTimes;
+		}
+
 		@Override
 		public ShapePointsDaoMode getShapePointsDaoMode() {
 			return shapePointsDaoMode;
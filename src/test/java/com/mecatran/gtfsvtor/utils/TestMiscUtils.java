@@ -2,8 +2,16 @@ package com.mecatran.gtfsvtor.utils;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
@@ -54,4 +62,50 @@ public class TestMiscUtils {
 		assertEquals("2m00s", fmt.durationSec(120));
 		assertEquals("2h23m00s", fmt.durationSec(8580));
 	}
+
+	@Test
+	public void testGenericInterner() throws Exception {
+		GenericInterner<String> interner = new GenericInterner<>();
+		String a = new String("abc");
+		String b = new String("abc");
+		assertSame(a, interner.intern(a));
+		assertSame(a, interner.intern(b));
+		assertEquals(1, interner.getHits());
+		assertEquals(1, interner.getMisses());
+		// Concurrent interning always returns the same instance
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<List<String>>> futures = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				futures.add(executor.submit(() -> {
+					List<String> ret = new ArrayList<>();
+					for (int i = 0; i < 1000; i++)
+						ret.add(interner.intern(new String("S" + i)));
+					return ret;
+				}));
+			}
+			List<String> expected = futures.get(0).get();
+			for (Future<List<String>> future : futures) {
+				List<String> ret = future.get();
+				for (int i = 0; i < ret.size(); i++)
+					assertSame(expected.get(i), ret.get(i));
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1001, interner.size());
+		// Once frozen, lookups only
+		interner.freeze();
+		assertTrue(interner.isFrozen());
+		assertSame(a, interner.intern(new String("abc")));
+		String c = new String("xyz");
+		assertSame(c, interner.intern(c));
+		assertNotSame(c, interner.intern(new String("xyz")));
+		assertEquals(1001, interner.size());
+
+		assertEquals(GenericInterner.hash64(new byte[] { 1, 2, 3 }),
+				GenericInterner.hash64(new byte[] { 1, 2, 3 }));
+		assertNotEquals(GenericInterner.hash64(new byte[] { 1, 2, 3 }),
+				GenericInterner.hash64(new byte[] { 3, 2, 1 }));
+	}
 }